@@ -45,6 +45,7 @@ import org.junit.Test;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static com.owncloud.android.lib.resources.files.SearchRemoteOperation.SearchType.GALLERY_SEARCH;
@@ -88,6 +89,70 @@ abstract public class FileDataStorageManagerIT extends AbstractOnServerIT {
         assertEquals(0, sut.getAllFiles().size());
     }
 
+    @Test
+    public void testSaveFiles() {
+        OCFile root = sut.getFileByDecryptedRemotePath("/");
+
+        List<OCFile> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            OCFile file = new OCFile("/shared" + i + ".txt");
+            file.setParentId(root.getFileId());
+            file.setMimeType("text/plain");
+            files.add(file);
+        }
+
+        sut.saveFiles(files);
+
+        assertEquals(3, sut.getFolderContent(root, false).size());
+        OCFile stored = sut.getFileByDecryptedRemotePath("/shared1.txt");
+        assertEquals(files.get(1).getFileId(), stored.getFileId());
+        assertTrue(stored.getFileId() > 0);
+
+        // same path updates the stored file
+        OCFile updated = new OCFile("/shared1.txt");
+        updated.setParentId(root.getFileId());
+        updated.setSharedViaLink(true);
+        sut.saveFiles(Collections.singletonList(updated));
+
+        assertEquals(stored.getFileId(), updated.getFileId());
+        assertEquals(3, sut.getFolderContent(root, false).size());
+        assertTrue(sut.getFileByDecryptedRemotePath("/shared1.txt").isSharedViaLink());
+    }
+
+    @Test
+    public void testVirtualFolderContentImages() {
+        OCFile root = sut.getFileByDecryptedRemotePath("/");
+
+        String[] mimeTypes = {"image/jpeg", "IMAGE/JPEG", "application/octet-stream", "text/plain", "image/jpeg"};
+        List<OCFile> files = new ArrayList<>();
+        for (int i = 0; i < mimeTypes.length; i++) {
+            OCFile file = new OCFile(i == 3 ? "/text" + i + ".txt" : "/image" + i + ".jpg");
+            file.setParentId(root.getFileId());
+            file.setMimeType(mimeTypes[i]);
+            file.setModificationTimestamp(i * 1000L);
+            files.add(file);
+        }
+        sut.saveFiles(files);
+
+        List<ContentValues> contentValues = new ArrayList<>();
+        for (OCFile file : files) {
+            ContentValues cv = new ContentValues();
+            cv.put(ProviderMeta.ProviderTableMeta.VIRTUAL_TYPE, VirtualFolderType.GALLERY.toString());
+            cv.put(ProviderMeta.ProviderTableMeta.VIRTUAL_OCFILE_ID, file.getFileId());
+            contentValues.add(cv);
+        }
+        sut.saveVirtuals(contentValues);
+
+        assertEquals(5, sut.getVirtualFolderContent(VirtualFolderType.GALLERY, false).size());
+
+        // upper case and generic content types are images by their extension
+        List<OCFile> images = sut.getVirtualFolderContent(VirtualFolderType.GALLERY, true);
+        assertEquals(4, images.size());
+        for (OCFile image : images) {
+            assertTrue(image.getRemotePath().endsWith(".jpg"));
+        }
+    }
+
     @Test
     public void testFolderContent() throws IOException {
         assertEquals(0, sut.getAllFiles().size());
@@ -341,6 +406,51 @@ abstract public class FileDataStorageManagerIT extends AbstractOnServerIT {
         sut.saveNewFile(newFile);
     }
 
+    @Test
+    public void testSaveFolderDiff() {
+        OCFile root = sut.getFileByDecryptedRemotePath("/");
+
+        OCFile file1 = new OCFile("/1.txt");
+        file1.setEtag("etag1");
+        OCFile file2 = new OCFile("/2.txt");
+        file2.setEtag("etag2");
+
+        List<OCFile> children = new ArrayList<>();
+        children.add(file1);
+        children.add(file2);
+
+        FolderDiff diff = sut.saveFolder(root, children, new ArrayList<>());
+        assertEquals(2, diff.getInserted());
+        assertEquals(0, diff.getUpdated());
+        assertTrue(file1.fileExists());
+        assertTrue(file2.fileExists());
+
+        // nothing changed
+        diff = sut.saveFolder(root, children, new ArrayList<>());
+        assertEquals(0, diff.getInserted());
+        assertEquals(0, diff.getUpdated());
+        assertEquals(2, diff.getUnchanged());
+
+        // one changed, unknown id must be resolved by path
+        OCFile changedFile1 = new OCFile("/1.txt");
+        changedFile1.setEtag("etag1-new");
+        children.set(0, changedFile1);
+
+        diff = sut.saveFolder(root, children, new ArrayList<>());
+        assertEquals(1, diff.getUpdated());
+        assertEquals(1, diff.getUnchanged());
+        assertEquals(file1.getFileId(), changedFile1.getFileId());
+        assertEquals("etag1-new", sut.getFileByDecryptedRemotePath("/1.txt").getEtag());
+
+        // remove one
+        List<OCFile> toRemove = new ArrayList<>();
+        toRemove.add(sut.getFileByDecryptedRemotePath("/2.txt"));
+        diff = sut.saveFolder(root, children.subList(0, 1), toRemove);
+        assertEquals(1, diff.getRemoved());
+        assertEquals(1, diff.getUnchanged());
+        assertEquals(1, sut.getFolderContent(root, false).size());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void testSaveNewFile_NonExistingParent() {
         assertTrue(new CreateFolderRemoteOperation("/1/1/", true).execute(client).isSuccess());
@@ -0,0 +1,156 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FilesystemDataProviderIT extends AbstractIT {
+    private static final String TAG = FilesystemDataProviderIT.class.getSimpleName();
+    private static final long SIZE = 1024L * 1024 * 1024;
+    private static final long SYNCED_FOLDER_ID = 4242;
+    private static final int FILES = 1000;
+
+    @After
+    public void after() {
+        new FilesystemDataProvider(targetContext.getContentResolver())
+            .deleteAllEntriesForSyncedFolder(Long.toString(SYNCED_FOLDER_ID));
+    }
+
+    @Test
+    public void testIndexer() throws IOException {
+        SyncedFolder syncedFolder = new SyncedFolder(SYNCED_FOLDER_ID,
+                                                     targetContext.getCacheDir().getAbsolutePath(),
+                                                     "/",
+                                                     false,
+                                                     false,
+                                                     true,
+                                                     false,
+                                                     account.name,
+                                                     0,
+                                                     0,
+                                                     true,
+                                                     0,
+                                                     MediaFolderType.CUSTOM,
+                                                     false);
+        FilesystemDataProvider sut = new FilesystemDataProvider(targetContext.getContentResolver());
+        File indexedFile = new File(targetContext.getCacheDir(), "indexed.txt");
+        assertTrue(indexedFile.exists() || indexedFile.createNewFile());
+        String path = indexedFile.getAbsolutePath();
+
+        long start = System.currentTimeMillis();
+        FilesystemIndexer indexer = sut.createIndexer(syncedFolder, true);
+        indexer.index(path, 1, false);
+        for (int i = 0; i < FILES; i++) {
+            indexer.index(path + i, 1, false);
+        }
+        assertTrue(indexer.finish());
+        Log_OC.d(TAG, "Indexed " + (FILES + 1) + " new files in " + (System.currentTimeMillis() - start) + "ms");
+
+        assertEquals(FILES + 1, indexer.getNewCount());
+        assertEquals(0, indexer.getChangedCount());
+        assertEquals(1, sut.getFilesForUpload(path, Long.toString(SYNCED_FOLDER_ID)).size());
+
+        sut.updateFilesystemFileAsSentForUpload(path, Long.toString(SYNCED_FOLDER_ID));
+
+        // unchanged
+        indexer = sut.createIndexer(syncedFolder, true);
+        indexer.index(path, 1, false);
+        assertTrue(indexer.finish());
+
+        assertEquals(1, indexer.getScannedCount());
+        assertEquals(0, indexer.getChangedCount());
+        assertEquals(0, indexer.getNewCount());
+
+        // touched but same content
+        indexer = sut.createIndexer(syncedFolder, false);
+        indexer.index(path, 2, false);
+        assertTrue(indexer.finish());
+
+        assertEquals(1, indexer.getChangedCount());
+        assertEquals(0, sut.getFilesForUpload(path, Long.toString(SYNCED_FOLDER_ID)).size());
+
+        indexedFile.delete();
+    }
+
+    /**
+     * Compares the duration of the auto upload change detection on a large file.
+     */
+    @Test
+    public void testChecksumDuration() throws IOException {
+        File file = new File(targetContext.getCacheDir(), "checksum.bin");
+
+        try {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(SIZE);
+            }
+            String path = file.getAbsolutePath();
+
+            long start = System.currentTimeMillis();
+            long byteWise = getByteWiseChecksum(path);
+            long byteWiseDuration = System.currentTimeMillis() - start;
+
+            start = System.currentTimeMillis();
+            long blockWise = FilesystemDataProvider.getFileChecksum(path);
+            long blockWiseDuration = System.currentTimeMillis() - start;
+
+            start = System.currentTimeMillis();
+            long fingerprint = FilesystemDataProvider.getFileFingerprint(path);
+            long fingerprintDuration = System.currentTimeMillis() - start;
+
+            Log_OC.d(TAG, "1 GB: byte-wise " + byteWiseDuration + "ms, block-wise " + blockWiseDuration
+                + "ms, fingerprint " + fingerprintDuration + "ms");
+
+            assertEquals(byteWise, blockWise);
+            assertNotEquals(-1, fingerprint);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Former implementation, reading the buffered stream byte by byte.
+     */
+    private static long getByteWiseChecksum(String path) throws IOException {
+        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(path))) {
+            CRC32 crc = new CRC32();
+            int cnt;
+            while ((cnt = inputStream.read()) != -1) {
+                crc.update(cnt);
+            }
+            return crc.getValue();
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.providers;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.datamodel.VirtualFolderType;
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.utils.MimeType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class FileContentProviderIT extends AbstractIT {
+    private static final String TAG = FileContentProviderIT.class.getSimpleName();
+
+    // accounts of this test only, the data of the account of the other tests is left untouched
+    private static final String TEST_ACCOUNT = "provider@server.com";
+    private static final String OTHER_ACCOUNT = "other@server.com";
+    private static final int FOLDERS = 100;
+    private static final int FILES_PER_FOLDER = 999;
+
+    private final List<Long> virtualFileIds = new ArrayList<>();
+    private ContentResolver contentResolver;
+
+    @Before
+    public void before() {
+        contentResolver = targetContext.getContentResolver();
+        deleteAll();
+    }
+
+    @After
+    public void after() {
+        deleteAll();
+    }
+
+    @Test
+    public void testDeleteDirectory() throws Exception {
+        long rootId = insertFile(TEST_ACCOUNT, "/", 0, true);
+        long folderId = insertFile(TEST_ACCOUNT, "/folder/", rootId, true);
+        long subFolderId = insertFile(TEST_ACCOUNT, "/folder/sub/", folderId, true);
+        long fileId = insertFile(TEST_ACCOUNT, "/folder/sub/file.txt", subFolderId, false);
+
+        // same prefix, but not a descendant
+        long siblingId = insertFile(TEST_ACCOUNT, "/folder2/", rootId, true);
+        long otherAccountId = insertFile(OTHER_ACCOUNT, "/folder/sub/file.txt", 0, false);
+
+        insertShare(TEST_ACCOUNT, "/folder");
+        insertShare(TEST_ACCOUNT, "/folder/sub/file.txt");
+        insertShare(TEST_ACCOUNT, "/folder2/");
+        insertShare(OTHER_ACCOUNT, "/folder/sub/file.txt");
+
+        insertVirtual(fileId);
+        insertVirtual(siblingId);
+        insertVirtual(otherAccountId);
+
+        int deleted = contentResolver.delete(ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_DIR, folderId),
+                                             null,
+                                             null);
+
+        assertEquals(3, deleted);
+        assertEquals(0, count(ProviderTableMeta.CONTENT_URI_FILE, ProviderTableMeta.FILE_PATH + " LIKE '/folder/%'"));
+        assertEquals(3, count(ProviderTableMeta.CONTENT_URI_FILE, fileSelection()));
+
+        assertEquals(2, count(ProviderTableMeta.CONTENT_URI_SHARE, shareSelection()));
+        assertEquals(0, count(ProviderTableMeta.CONTENT_URI_SHARE,
+                              ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + "='" + TEST_ACCOUNT + "' AND "
+                                  + ProviderTableMeta.OCSHARES_PATH + " LIKE '/folder/%'"));
+
+        assertEquals(2, count(ProviderTableMeta.CONTENT_URI_VIRTUAL, virtualSelection()));
+        assertEquals(0, count(ProviderTableMeta.CONTENT_URI_VIRTUAL,
+                              ProviderTableMeta.VIRTUAL_OCFILE_ID + "=" + fileId));
+    }
+
+    @Test
+    public void testDeleteDirectoryKeepsFilesWithoutRemoteId() {
+        long rootId = insertFile(TEST_ACCOUNT, "/", 0, true);
+        long folderId = insertFile(TEST_ACCOUNT, "/folder/", rootId, true);
+        insertFile(TEST_ACCOUNT, "/folder/file.txt", folderId, false);
+
+        // not known to the server yet
+        ContentValues pending = fileValues(TEST_ACCOUNT, "/folder/pending.txt", folderId, false);
+        pending.remove(ProviderTableMeta.FILE_REMOTE_ID);
+        contentResolver.insert(ProviderTableMeta.CONTENT_URI_FILE, pending);
+        ContentValues pendingFolder = fileValues(TEST_ACCOUNT, "/folder/pending/", folderId, true);
+        pendingFolder.remove(ProviderTableMeta.FILE_REMOTE_ID);
+        contentResolver.insert(ProviderTableMeta.CONTENT_URI_FILE, pendingFolder);
+
+        int deleted = contentResolver.delete(ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_DIR, folderId),
+                                             null,
+                                             null);
+
+        assertEquals(3, deleted);
+        assertEquals(1, count(ProviderTableMeta.CONTENT_URI_FILE,
+                              ProviderTableMeta.FILE_PATH + " LIKE '/folder/%' AND " + fileSelection()));
+        assertEquals(1, count(ProviderTableMeta.CONTENT_URI_FILE,
+                              ProviderTableMeta.FILE_PATH + "='/folder/pending.txt'"));
+    }
+
+    @Test
+    public void testDeleteAllFilesOfAccount() throws Exception {
+        long rootId = insertFile(TEST_ACCOUNT, "/", 0, true);
+        insertFile(TEST_ACCOUNT, "/file.txt", rootId, false);
+        insertFile(OTHER_ACCOUNT, "/", 0, true);
+
+        int deleted = contentResolver.delete(ProviderTableMeta.CONTENT_URI_DIR,
+                                             ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND "
+                                                 + ProviderTableMeta.FILE_PATH + "=?",
+                                             new String[]{TEST_ACCOUNT, "/"});
+
+        assertEquals(2, deleted);
+        assertEquals(1, count(ProviderTableMeta.CONTENT_URI_FILE, fileSelection()));
+    }
+
+    @Test
+    public void testDeleteLargeDirectory() throws Exception {
+        long rootId = insertFile(TEST_ACCOUNT, "/", 0, true);
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI_FILE)
+                           .withValues(fileValues(TEST_ACCOUNT, "/large/", rootId, true))
+                           .build());
+
+        for (int i = 0; i < FOLDERS; i++) {
+            int folderIndex = operations.size();
+            String folderPath = "/large/folder" + i + "/";
+            operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI_FILE)
+                               .withValues(fileValues(TEST_ACCOUNT, folderPath, 0, true))
+                               .withValueBackReference(ProviderTableMeta.FILE_PARENT, 0)
+                               .build());
+
+            for (int j = 0; j < FILES_PER_FOLDER; j++) {
+                operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI_FILE)
+                                   .withValues(fileValues(TEST_ACCOUNT, folderPath + "file" + j, 0, false))
+                                   .withValueBackReference(ProviderTableMeta.FILE_PARENT, folderIndex)
+                                   .build());
+            }
+        }
+
+        ContentProviderResult[] results = contentResolver.applyBatch(ProviderTableMeta.CONTENT_URI.getAuthority(),
+                                                                     operations);
+        long largeFolderId = ContentUris.parseId(results[0].uri);
+
+        long start = System.currentTimeMillis();
+        int deleted = contentResolver.delete(ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_DIR,
+                                                                        largeFolderId),
+                                             null,
+                                             null);
+        long duration = System.currentTimeMillis() - start;
+        Log_OC.d(TAG, "Removed " + deleted + " files in " + duration + "ms");
+
+        assertEquals(operations.size(), deleted);
+        assertEquals(1, count(ProviderTableMeta.CONTENT_URI_FILE, fileSelection()));
+    }
+
+    @Test
+    public void testBatchNotifiesOnce() throws Exception {
+        long rootId = insertFile(TEST_ACCOUNT, "/", 0, true);
+
+        AtomicInteger changes = new AtomicInteger();
+        ContentObserver observer = new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changes.incrementAndGet();
+            }
+        };
+        contentResolver.registerContentObserver(ProviderTableMeta.CONTENT_URI, true, observer);
+
+        try {
+            ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI_FILE)
+                                   .withValues(fileValues(TEST_ACCOUNT, "/file" + i, rootId, false))
+                                   .build());
+            }
+            contentResolver.applyBatch(ProviderTableMeta.CONTENT_URI.getAuthority(), operations);
+
+            ContentValues[] values = new ContentValues[100];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = fileValues(TEST_ACCOUNT, "/bulk" + i, rootId, false);
+            }
+            assertEquals(values.length, contentResolver.bulkInsert(ProviderTableMeta.CONTENT_URI_FILE, values));
+
+            // notifications are delivered asynchronously
+            Thread.sleep(TimeUnit.SECONDS.toMillis(1));
+        } finally {
+            contentResolver.unregisterContentObserver(observer);
+        }
+
+        assertEquals(201, count(ProviderTableMeta.CONTENT_URI_FILE, fileSelection()));
+        assertEquals(2, changes.get());
+    }
+
+    private void deleteAll() {
+        contentResolver.delete(ProviderTableMeta.CONTENT_URI_VIRTUAL, virtualSelection(), null);
+        contentResolver.delete(ProviderTableMeta.CONTENT_URI_SHARE, shareSelection(), null);
+        contentResolver.delete(ProviderTableMeta.CONTENT_URI, fileSelection(), null);
+        virtualFileIds.clear();
+    }
+
+    private static String fileSelection() {
+        return ProviderTableMeta.FILE_ACCOUNT_OWNER + " IN ('" + TEST_ACCOUNT + "', '" + OTHER_ACCOUNT + "')";
+    }
+
+    private static String shareSelection() {
+        return ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + " IN ('" + TEST_ACCOUNT + "', '" + OTHER_ACCOUNT + "')";
+    }
+
+    private String virtualSelection() {
+        StringBuilder ids = new StringBuilder("-1");
+        for (long id : virtualFileIds) {
+            ids.append(',').append(id);
+        }
+        return ProviderTableMeta.VIRTUAL_OCFILE_ID + " IN (" + ids + ")";
+    }
+
+    private ContentValues fileValues(String accountName, String path, long parentId, boolean folder) {
+        ContentValues values = new ContentValues();
+        values.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, accountName);
+        values.put(ProviderTableMeta.FILE_PATH, path);
+        values.put(ProviderTableMeta.FILE_PARENT, parentId);
+        values.put(ProviderTableMeta.FILE_CONTENT_TYPE, folder ? MimeType.DIRECTORY : MimeType.FILE);
+        values.put(ProviderTableMeta.FILE_REMOTE_ID, accountName + path);
+        return values;
+    }
+
+    private long insertFile(String accountName, String path, long parentId, boolean folder) {
+        Uri uri = contentResolver.insert(ProviderTableMeta.CONTENT_URI_FILE,
+                                         fileValues(accountName, path, parentId, folder));
+        return ContentUris.parseId(uri);
+    }
+
+    private void insertShare(String accountName, String path) {
+        ContentValues values = new ContentValues();
+        values.put(ProviderTableMeta.OCSHARES_ACCOUNT_OWNER, accountName);
+        values.put(ProviderTableMeta.OCSHARES_PATH, path);
+        contentResolver.insert(ProviderTableMeta.CONTENT_URI_SHARE, values);
+    }
+
+    private void insertVirtual(long fileId) {
+        ContentValues values = new ContentValues();
+        values.put(ProviderTableMeta.VIRTUAL_TYPE, VirtualFolderType.GALLERY.toString());
+        values.put(ProviderTableMeta.VIRTUAL_OCFILE_ID, fileId);
+        contentResolver.insert(ProviderTableMeta.CONTENT_URI_VIRTUAL, values);
+        virtualFileIds.add(fileId);
+    }
+
+    private int count(Uri uri, String selection) {
+        try (Cursor cursor = contentResolver.query(uri, null, selection, null, null)) {
+            return cursor == null ? 0 : cursor.getCount();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+
+import com.jakewharton.disklrucache.DiskLruCache;
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.utils.BitmapUtils;
+import com.owncloud.android.utils.FileStorageUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Compares the scaled read with stored dimensions against the former read with a separate bounds decode.
+ */
+public class DiskLruImageCacheIT extends AbstractIT {
+    private static final String TAG = DiskLruImageCacheIT.class.getSimpleName();
+
+    private static final int ENTRIES = 1000;
+    private static final int CACHE_SIZE = 100 * 1024 * 1024;
+    private static final int SIZE = 256;
+    private static final int SCALED_SIZE = 128;
+
+    private File newCacheDir;
+    private File oldCacheDir;
+
+    @Before
+    public void before() {
+        newCacheDir = new File(targetContext.getCacheDir(), "benchmarkNew");
+        oldCacheDir = new File(targetContext.getCacheDir(), "benchmarkOld");
+        FileStorageUtils.deleteRecursive(newCacheDir);
+        FileStorageUtils.deleteRecursive(oldCacheDir);
+    }
+
+    @After
+    public void after() {
+        FileStorageUtils.deleteRecursive(newCacheDir);
+        FileStorageUtils.deleteRecursive(oldCacheDir);
+    }
+
+    @Test
+    public void scaledRead() throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLUE);
+
+        DiskLruImageCache newCache = new DiskLruImageCache(newCacheDir, CACHE_SIZE, Bitmap.CompressFormat.JPEG, 70);
+        DiskLruCache oldCache = DiskLruCache.open(oldCacheDir, 1, 1, CACHE_SIZE);
+        for (int i = 0; i < ENTRIES; i++) {
+            newCache.put(key(i), bitmap);
+
+            // entries as written before dimensions were stored
+            DiskLruCache.Editor editor = oldCache.edit(validKey(i));
+            try (OutputStream out = editor.newOutputStream(0)) {
+                bitmap.compress(Bitmap.CompressFormat.JPEG, 70, out);
+            }
+            editor.commit();
+        }
+        newCache.flush();
+        oldCache.flush();
+
+        // warm up
+        for (int i = 0; i < ENTRIES; i++) {
+            assertScaled(newCache.getScaledBitmap(key(i), SCALED_SIZE, SCALED_SIZE));
+            assertScaled(readScaledWithBoundsDecode(oldCache, validKey(i), SCALED_SIZE, SCALED_SIZE));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ENTRIES; i++) {
+            readScaledWithBoundsDecode(oldCache, validKey(i), SCALED_SIZE, SCALED_SIZE);
+        }
+        long oldDuration = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ENTRIES; i++) {
+            newCache.getScaledBitmap(key(i), SCALED_SIZE, SCALED_SIZE);
+        }
+        long newDuration = System.nanoTime() - start;
+
+        Log_OC.d(TAG, String.format(Locale.US, "%d scaled reads: bounds decode %d ms, stored dimensions %d ms",
+                                    ENTRIES,
+                                    oldDuration / 1_000_000,
+                                    newDuration / 1_000_000));
+        oldCache.close();
+
+        // entries without stored dimensions are still readable
+        DiskLruImageCache migratedCache = new DiskLruImageCache(oldCacheDir,
+                                                                CACHE_SIZE,
+                                                                Bitmap.CompressFormat.JPEG,
+                                                                70);
+        assertScaled(migratedCache.getScaledBitmap(key(0), SCALED_SIZE, SCALED_SIZE));
+        assertNotNull(migratedCache.getBitmap(key(0)));
+    }
+
+    private static void assertScaled(Bitmap bitmap) {
+        assertNotNull(bitmap);
+        assertEquals(SCALED_SIZE, bitmap.getWidth());
+        assertEquals(SCALED_SIZE, bitmap.getHeight());
+    }
+
+    private static String key(int i) {
+        return "t" + i;
+    }
+
+    private static String validKey(int i) {
+        return Integer.toString(key(i).hashCode());
+    }
+
+    /**
+     * Former read path: decode bounds from one snapshot, then decode the image from another.
+     */
+    private static Bitmap readScaledWithBoundsDecode(DiskLruCache cache, String validKey, int width, int height)
+        throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (DiskLruCache.Snapshot snapshot = cache.get(validKey);
+             InputStream in = new BufferedInputStream(snapshot.getInputStream(0))) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+
+        options.inSampleSize = BitmapUtils.calculateSampleFactor(options, width, height);
+        options.inJustDecodeBounds = false;
+        try (DiskLruCache.Snapshot snapshot = cache.get(validKey);
+             InputStream in = new BufferedInputStream(snapshot.getInputStream(0))) {
+            return BitmapFactory.decodeStream(in, null, options);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.widget.ImageView;
+
+import com.owncloud.android.AbstractIT;
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.datamodel.ThumbnailsCacheManager;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Binds thumbnails that are only in the disk cache, as after scrolling through a large folder, and checks that
+ * binding does not take a noticeable part of a frame.
+ */
+public class ThumbnailBindIT extends AbstractIT {
+    private static final String TAG = ThumbnailBindIT.class.getSimpleName();
+
+    private static final int FILES = 500;
+    private static final int WARM_UP = 20;
+    private static final int SIZE = 256;
+    // one frame at 60 Hz
+    private static final long FRAME_BUDGET_NS = 16_000_000;
+    private static final long PERCENTILE_95_BUDGET_NS = 4_000_000;
+
+    @Test
+    public void bindDoesNotReadDiskCache() {
+        InstrumentationRegistry.getInstrumentation()
+            .runOnMainSync(() -> new ThumbnailsCacheManager.InitDiskCacheTask().execute());
+        // waits until the disk cache is started
+        ThumbnailsCacheManager.getBitmapFromDiskCache(ThumbnailsCacheManager.PREFIX_THUMBNAIL + "none");
+
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(Color.BLUE);
+
+        List<OCFile> files = new ArrayList<>(FILES);
+        for (int i = 0; i < FILES; i++) {
+            OCFile file = new OCFile("/bind/IMG_" + i + ".jpg");
+            file.setFileId(i + 1);
+            file.setRemoteId("bindIT" + i);
+            file.setMimeType("image/jpeg");
+            file.setPreviewAvailable(true);
+            files.add(file);
+
+            String key = ThumbnailsCacheManager.PREFIX_THUMBNAIL + file.getRemoteId();
+            ThumbnailsCacheManager.addBitmapToCache(key, bitmap);
+            ThumbnailsCacheManager.removeBitmapFromMemoryCache(key);
+        }
+
+        List<ThumbnailsCacheManager.ThumbnailGenerationTask> asyncTasks = new ArrayList<>();
+        List<ImageView> views = new ArrayList<>(FILES);
+        long[] durations = new long[FILES];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            for (int i = 0; i < FILES; i++) {
+                OCFile file = files.get(i);
+                ImageView thumbnail = new ImageView(targetContext);
+                thumbnail.setTag(file.getFileId());
+                views.add(thumbnail);
+
+                long start = System.nanoTime();
+                OCFileListAdapter.setThumbnail(file,
+                                               thumbnail,
+                                               user,
+                                               fileDataStorageManager,
+                                               asyncTasks,
+                                               true,
+                                               targetContext);
+                durations[i] = System.nanoTime() - start;
+            }
+
+            for (ImageView view : views) {
+                ThumbnailsCacheManager.cancelThumbnailWork(view);
+            }
+        });
+
+        long[] measured = Arrays.copyOfRange(durations, WARM_UP, FILES);
+        Arrays.sort(measured);
+        long max = measured[measured.length - 1];
+        long percentile95 = measured[measured.length * 95 / 100];
+
+        Log_OC.d(TAG, String.format(Locale.US, "%d binds: 95th percentile %d µs, max %d µs",
+                                    measured.length,
+                                    percentile95 / 1000,
+                                    max / 1000));
+
+        assertTrue("95th percentile of bind took " + percentile95 / 1000 + " µs",
+                   percentile95 < PERCENTILE_95_BUDGET_NS);
+        assertTrue("Slowest bind took " + max / 1000 + " µs", max < FRAME_BUDGET_NS);
+    }
+
+    @Test
+    public void videoOverlayIsComposedOnce() {
+        String key = ThumbnailsCacheManager.PREFIX_THUMBNAIL + "bindITVideo";
+        Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        ThumbnailsCacheManager.addBitmapToCache(key, bitmap);
+
+        Bitmap withOverlay = ThumbnailsCacheManager.getVideoThumbnail(key, bitmap);
+        assertNotSame(bitmap, withOverlay);
+        assertSame(withOverlay, ThumbnailsCacheManager.getVideoThumbnail(key, bitmap));
+
+        // a new thumbnail of the key gets a new overlay
+        Bitmap updated = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        ThumbnailsCacheManager.addBitmapToCache(key, updated);
+        assertNotSame(withOverlay, ThumbnailsCacheManager.getVideoThumbnail(key, updated));
+    }
+}
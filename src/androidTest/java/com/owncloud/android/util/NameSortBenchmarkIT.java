@@ -0,0 +1,115 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.util;
+
+import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.lib.common.utils.Log_OC;
+import com.owncloud.android.utils.FileSortOrder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import third_parties.daveKoeller.AlphanumComparator;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares sorting by name with precomputed keys to sorting with a comparator per comparison.
+ */
+public class NameSortBenchmarkIT {
+    private static final String TAG = NameSortBenchmarkIT.class.getSimpleName();
+
+    @Test
+    public void sort10k() {
+        benchmark(10_000);
+    }
+
+    @Test
+    public void sort50k() {
+        benchmark(50_000);
+    }
+
+    @Test
+    public void sort100k() {
+        benchmark(100_000);
+    }
+
+    private void benchmark(int count) {
+        List<OCFile> files = createFiles(count);
+
+        List<OCFile> comparatorSorted = new ArrayList<>(files);
+        long start = System.currentTimeMillis();
+        // previous implementation of FileSortOrderByName
+        Collections.sort(comparatorSorted, (o1, o2) -> {
+            if (o1.isFolder() && o2.isFolder()) {
+                return new AlphanumComparator().compare(o1, o2);
+            } else if (o1.isFolder()) {
+                return -1;
+            } else if (o2.isFolder()) {
+                return 1;
+            }
+            return new AlphanumComparator().compare(o1, o2);
+        });
+        long comparatorDuration = System.currentTimeMillis() - start;
+
+        List<OCFile> keySorted = new ArrayList<>(files);
+        start = System.currentTimeMillis();
+        keySorted = FileSortOrder.sort_a_to_z.sortCloudFiles(keySorted);
+        long keyDuration = System.currentTimeMillis() - start;
+
+        Log_OC.d(TAG, count + " files: comparator " + comparatorDuration + "ms, sort keys " + keyDuration + "ms");
+
+        for (int i = 0; i < count; i++) {
+            assertEquals(comparatorSorted.get(i).getFileName(), keySorted.get(i).getFileName());
+        }
+    }
+
+    private List<OCFile> createFiles(int count) {
+        Random random = new Random(count);
+        List<OCFile> files = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            OCFile file;
+            switch (random.nextInt(4)) {
+                case 0:
+                    file = new OCFile("/IMG_" + random.nextInt(count) + ".jpg");
+                    break;
+                case 1:
+                    file = new OCFile("/Scan " + (2000 + random.nextInt(30)) + "-0" + (1 + random.nextInt(9)) + " "
+                                          + i + ".pdf");
+                    break;
+                case 2:
+                    file = new OCFile("/Folder " + i).setFolder();
+                    break;
+                default:
+                    file = new OCFile("/Dokument_" + Integer.toHexString(random.nextInt()) + "_Übersicht_" + i +
+                                          ".odt");
+                    break;
+            }
+            files.add(file);
+        }
+
+        return files;
+    }
+}
@@ -35,6 +35,7 @@ import com.nextcloud.client.etm.pages.EtmBackgroundJobsFragment
 import com.nextcloud.client.etm.pages.EtmFileTransferFragment
 import com.nextcloud.client.etm.pages.EtmMigrations
 import com.nextcloud.client.etm.pages.EtmPreferencesFragment
+import com.nextcloud.client.etm.pages.EtmThumbnailsFragment
 import com.nextcloud.client.files.downloader.TransferManagerConnection
 import com.nextcloud.client.jobs.BackgroundJobManager
 import com.nextcloud.client.jobs.JobInfo
@@ -107,6 +108,11 @@ class EtmViewModel @Inject constructor(
             iconRes = R.drawable.ic_cloud_download,
             titleRes = R.string.etm_transfer,
             pageClass = EtmFileTransferFragment::class
+        ),
+        EtmMenuEntry(
+            iconRes = R.drawable.ic_image_outline,
+            titleRes = R.string.etm_thumbnails,
+            pageClass = EtmThumbnailsFragment::class
         )
     )
     val transferManagerConnection = TransferManagerConnection(context, accountManager.user)
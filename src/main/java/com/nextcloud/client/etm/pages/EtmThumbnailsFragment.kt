@@ -0,0 +1,73 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.nextcloud.client.etm.pages
+
+import android.os.Bundle
+import android.view.LayoutInflater
+import android.view.View
+import android.view.ViewGroup
+import com.nextcloud.client.etm.EtmBaseFragment
+import com.owncloud.android.databinding.FragmentEtmThumbnailsBinding
+import com.owncloud.android.datamodel.ThumbnailPrefetcher
+import com.owncloud.android.datamodel.ThumbnailsCacheManager
+import java.util.Locale
+
+class EtmThumbnailsFragment : EtmBaseFragment() {
+    private var _binding: FragmentEtmThumbnailsBinding? = null
+    private val binding get() = _binding!!
+
+    override fun onCreateView(inflater: LayoutInflater, container: ViewGroup?, savedInstanceState: Bundle?): View? {
+        _binding = FragmentEtmThumbnailsBinding.inflate(inflater, container, false)
+        return binding.root
+    }
+
+    override fun onResume() {
+        super.onResume()
+        showStatus()
+    }
+
+    private fun showStatus() {
+        val prefetched = ThumbnailPrefetcher.getPrefetchedCount()
+        val hits = ThumbnailPrefetcher.getHitCount()
+        val memoryHits = ThumbnailsCacheManager.getMemoryCacheHitCount()
+        val memoryMisses = ThumbnailsCacheManager.getMemoryCacheMissCount()
+
+        val builder = StringBuilder()
+        builder.append("Prefetched thumbnails: $prefetched\n")
+        builder.append("Prefetched thumbnails shown: $hits\n")
+        builder.append("Prefetch hit rate: ${percent(hits, prefetched)}\n")
+        builder.append("Memory cache hits: $memoryHits\n")
+        builder.append("Memory cache misses: $memoryMisses\n")
+        builder.append("Memory cache hit rate: ${percent(memoryHits, memoryHits + memoryMisses)}\n")
+        binding.etmThumbnailsText.text = builder.toString()
+    }
+
+    private fun percent(part: Int, total: Int): String {
+        return if (total > 0) {
+            String.format(Locale.US, "%.1f %%", part * 100.0 / total)
+        } else {
+            "-"
+        }
+    }
+
+    override fun onDestroyView() {
+        super.onDestroyView()
+        _binding = null
+    }
+}
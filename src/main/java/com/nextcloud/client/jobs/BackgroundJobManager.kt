@@ -92,6 +92,14 @@ interface BackgroundJobManager {
 
     fun schedulePeriodicFilesSyncJob()
     fun startImmediateFilesSyncJob(skipCustomFolders: Boolean = false, overridePowerSaving: Boolean = false)
+
+    /**
+     * Start auto upload of media folders, indexing only new media and the given changed media.
+     * Runs after an already running sync, so no change is missed.
+     *
+     * @param changedContentUris media store URIs reported as changed
+     */
+    fun startIncrementalFilesSyncJob(changedContentUris: List<String>)
     fun scheduleOfflineSync()
 
     fun scheduleMediaFoldersDetectionJob()
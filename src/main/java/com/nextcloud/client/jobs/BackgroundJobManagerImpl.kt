@@ -70,6 +70,7 @@ internal class BackgroundJobManagerImpl(
         const val JOB_IMMEDIATE_CONTACTS_IMPORT = "immediate_contacts_import"
         const val JOB_PERIODIC_FILES_SYNC = "periodic_files_sync"
         const val JOB_IMMEDIATE_FILES_SYNC = "immediate_files_sync"
+        const val JOB_INCREMENTAL_FILES_SYNC = "incremental_files_sync"
         const val JOB_PERIODIC_OFFLINE_SYNC = "periodic_offline_sync"
         const val JOB_PERIODIC_MEDIA_FOLDER_DETECTION = "periodic_media_folder_detection"
         const val JOB_IMMEDIATE_MEDIA_FOLDER_DETECTION = "immediate_media_folder_detection"
@@ -79,6 +80,7 @@ internal class BackgroundJobManagerImpl(
         const val JOB_TEST = "test_job"
 
         const val MAX_CONTENT_TRIGGER_DELAY_MS = 1500L
+        const val MAX_CHANGED_CONTENT_URIS = 100
 
         const val TAG_PREFIX_NAME = "name"
         const val TAG_PREFIX_USER = "user"
@@ -306,6 +308,29 @@ internal class BackgroundJobManagerImpl(
         workManager.enqueueUniqueWork(JOB_IMMEDIATE_FILES_SYNC, ExistingWorkPolicy.KEEP, request)
     }
 
+    override fun startIncrementalFilesSyncJob(changedContentUris: List<String>) {
+        // input data is limited in size; new media are found by the watermark anyway
+        val uris = if (changedContentUris.size > MAX_CHANGED_CONTENT_URIS) {
+            emptyList()
+        } else {
+            changedContentUris
+        }
+        val arguments = Data.Builder()
+            .putBoolean(FilesSyncWork.SKIP_CUSTOM, true)
+            .putBoolean(FilesSyncWork.INCREMENTAL, true)
+            .putStringArray(FilesSyncWork.CHANGED_CONTENT_URIS, uris.toTypedArray())
+            .build()
+
+        val request = oneTimeRequestBuilder(
+            jobClass = FilesSyncWork::class,
+            jobName = JOB_INCREMENTAL_FILES_SYNC
+        )
+            .setInputData(arguments)
+            .build()
+
+        workManager.enqueueUniqueWork(JOB_INCREMENTAL_FILES_SYNC, ExistingWorkPolicy.APPEND_OR_REPLACE, request)
+    }
+
     override fun scheduleOfflineSync() {
         val constrains = Constraints.Builder()
             .setRequiredNetworkType(NetworkType.UNMETERED)
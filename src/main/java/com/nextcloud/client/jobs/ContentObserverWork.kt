@@ -59,7 +59,7 @@ class ContentObserverWork(
     private fun checkAndStartFileSyncJob() {
         val syncFolders = syncerFolderProvider.countEnabledSyncedFolders() > 0
         if (!powerManagementService.isPowerSavingEnabled && syncFolders) {
-            backgroundJobManager.startImmediateFilesSyncJob(true, false)
+            backgroundJobManager.startIncrementalFilesSyncJob(params.triggeredContentUris.map { it.toString() })
         }
     }
 }
@@ -25,6 +25,7 @@ package com.nextcloud.client.jobs
 import android.content.ContentResolver
 import android.content.Context
 import android.content.res.Resources
+import android.net.Uri
 import android.os.PowerManager.WakeLock
 import android.text.TextUtils
 import androidx.exifinterface.media.ExifInterface
@@ -74,8 +75,16 @@ class FilesSyncWork(
         const val TAG = "FilesSyncJob"
         const val SKIP_CUSTOM = "skipCustom"
         const val OVERRIDE_POWER_SAVING = "overridePowerSaving"
+        const val INCREMENTAL = "incremental"
+        const val CHANGED_CONTENT_URIS = "changedContentUris"
         private const val WAKELOCK_TAG_SEPARATION = ":"
         private const val WAKELOCK_ACQUIRE_TIMEOUT_MS = 10L * 60L * 1000L
+
+        /**
+         * Immediate, incremental and periodic syncs run as separate unique works, but all of them update the media
+         * watermarks, so their scans must not overlap.
+         */
+        private val SCAN_LOCK = Any()
     }
 
     override fun doWork(): Result {
@@ -95,7 +104,14 @@ class FilesSyncWork(
             connectivityService,
             powerManagementService
         )
-        FilesSyncHelper.insertAllDBEntries(preferences, clock, skipCustom)
+        synchronized(SCAN_LOCK) {
+            if (inputData.getBoolean(INCREMENTAL, false)) {
+                val changedContentUris = inputData.getStringArray(CHANGED_CONTENT_URIS)?.map { Uri.parse(it) }
+                FilesSyncHelper.insertChangedDBEntries(preferences, clock, changedContentUris ?: emptyList())
+            } else {
+                FilesSyncHelper.insertAllDBEntries(preferences, clock, skipCustom)
+            }
+        }
         // Create all the providers we'll needq
         val filesystemDataProvider = FilesystemDataProvider(contentResolver)
         val syncedFolderProvider = SyncedFolderProvider(contentResolver, preferences, clock)
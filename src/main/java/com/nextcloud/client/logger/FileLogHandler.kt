@@ -19,11 +19,15 @@
  */
 package com.nextcloud.client.logger
 
+import java.io.BufferedOutputStream
 import java.io.File
 import java.io.FileNotFoundException
 import java.io.FileOutputStream
 import java.io.IOException
-import java.nio.charset.Charset
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.CharBuffer
+import java.nio.charset.CodingErrorAction
 
 /**
  * Very simple log writer with file rotations.
@@ -31,6 +35,9 @@ import java.nio.charset.Charset
  * Files are rotated when writing entry causes log file to exceed it's maximum size.
  * Last entry is not truncated and final log file can exceed max file size, but
  * no further entries will be written to it.
+ *
+ * Writes are buffered; entries reach the file on [flush], [close] or when the
+ * buffer is full.
  */
 internal class FileLogHandler(private val logDir: File, private val logFilename: String, private val maxSize: Long) {
 
@@ -38,10 +45,19 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
 
     companion object {
         const val ROTATED_LOGS_COUNT = 3
+        const val BUFFER_SIZE = 16 * 1024
+        private const val INITIAL_ENTRY_SIZE = 1024
+        private const val MAX_REUSED_ENTRY_SIZE = 64 * 1024
     }
 
-    private var writer: FileOutputStream? = null
+    private var writer: OutputStream? = null
     private var size: Long = 0
+
+    // reused for every entry; malformed text, e.g. a split surrogate pair, is replaced instead of failing the write
+    private val encoder = Charsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE)
+    private var encoded = ByteBuffer.allocate(INITIAL_ENTRY_SIZE)
     private val rotationList = listOf(
         "$logFilename.2",
         "$logFilename.1",
@@ -62,25 +78,29 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
     val maxLogFilesCount get() = rotationList.size
 
     fun open() {
-        try {
-            writer = FileOutputStream(logFile, true)
-            size = logFile.length()
+        val stream = try {
+            FileOutputStream(logFile, true)
         } catch (ex: FileNotFoundException) {
             logFile.parentFile.mkdirs()
-            writer = FileOutputStream(logFile, true)
-            size = logFile.length()
+            FileOutputStream(logFile, true)
         }
+        writer = BufferedOutputStream(stream, BUFFER_SIZE)
+        size = logFile.length()
     }
 
-    fun write(logEntry: String) {
-        val rawLogEntry = logEntry.toByteArray(Charset.forName("UTF-8"))
-        writer?.write(rawLogEntry)
-        size += rawLogEntry.size
+    fun write(logEntry: CharSequence) {
+        val rawLogEntry = encode(logEntry)
+        writer?.write(rawLogEntry.array(), 0, rawLogEntry.position())
+        size += rawLogEntry.position()
         if (size > maxSize) {
             rotateLogs()
         }
     }
 
+    fun flush() {
+        writer?.flush()
+    }
+
     fun close() {
         writer?.close()
         writer = null
@@ -132,4 +152,18 @@ internal class FileLogHandler(private val logDir: File, private val logFilename:
         }
         return RawLogs(lines = allLines, logSize = size)
     }
+
+    private fun encode(logEntry: CharSequence): ByteBuffer {
+        val maxEntrySize = (logEntry.length * encoder.maxBytesPerChar()).toInt()
+        val buffer = when {
+            maxEntrySize > MAX_REUSED_ENTRY_SIZE -> ByteBuffer.allocate(maxEntrySize) // do not keep huge buffers
+            encoded.capacity() < maxEntrySize -> ByteBuffer.allocate(maxEntrySize).also { encoded = it }
+            else -> encoded
+        }
+        buffer.clear()
+        encoder.reset()
+        encoder.encode(CharBuffer.wrap(logEntry), buffer, true)
+        encoder.flush(buffer)
+        return buffer
+    }
 }
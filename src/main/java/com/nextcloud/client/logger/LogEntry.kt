@@ -45,6 +45,14 @@ data class LogEntry(val timestamp: Date, val level: Level, val tag: String, val
             """(\d{4}-\d{2}-\d{2}T\d{2}:\d{2}:\d{2}\.\d{3}Z);([ADEIVW]);([^;]+);(.*)"""
         )
 
+        /**
+         * UTC date format is used for every written and parsed entry; [SimpleDateFormat]
+         * is not thread-safe and expensive to create, so it is kept per thread.
+         */
+        private val UTC_DATE_FORMAT_CACHE = object : ThreadLocal<SimpleDateFormat>() {
+            override fun initialValue(): SimpleDateFormat = buildDateFormat()
+        }
+
         @JvmStatic
         fun buildDateFormat(tz: TimeZone? = null): SimpleDateFormat {
             return if (tz == null) {
@@ -66,7 +74,7 @@ data class LogEntry(val timestamp: Date, val level: Level, val tag: String, val
             val result = ENTRY_PARSE_REGEXP.matchEntire(s) ?: return null
 
             val date = try {
-                buildDateFormat().parse(result.groupValues[DATE_GROUP_INDEX])
+                UTC_DATE_FORMAT_CACHE.get()!!.parse(result.groupValues[DATE_GROUP_INDEX])
             } catch (ex: ParseException) {
                 return null
             }
@@ -86,10 +94,17 @@ data class LogEntry(val timestamp: Date, val level: Level, val tag: String, val
 
     override fun toString(): String {
         val sb = StringBuilder()
-        format(sb, buildDateFormat())
+        appendTo(sb)
         return sb.toString()
     }
 
+    /**
+     * Append entry in log file format, as returned by [toString], without creating intermediate strings.
+     */
+    fun appendTo(sb: StringBuilder) {
+        format(sb, UTC_DATE_FORMAT_CACHE.get()!!)
+    }
+
     fun toString(tz: TimeZone): String {
         val sb = StringBuilder()
         format(sb, buildDateFormat(tz))
@@ -101,8 +116,12 @@ data class LogEntry(val timestamp: Date, val level: Level, val tag: String, val
         sb.append(';')
         sb.append(level.tag)
         sb.append(';')
-        sb.append(tag.replace(';', ' '))
+        for (c in tag) {
+            sb.append(if (c == ';') ' ' else c)
+        }
         sb.append(';')
-        sb.append(message.replace("\n", "\\n"))
+        for (c in message) {
+            if (c == '\n') sb.append("\\n") else sb.append(c)
+        }
     }
 }
@@ -37,6 +37,14 @@ internal class LoggerImpl(
     queueCapacity: Int
 ) : Logger, LogsRepository {
 
+    companion object {
+        /**
+         * Buffered entries are flushed to the log file at least this often
+         * while logging and as soon as the logger becomes idle for this long.
+         */
+        const val FLUSH_INTERVAL_MS = 1000L
+    }
+
     data class Load(val onResult: (List<LogEntry>, Long) -> Unit)
     class Delete
 
@@ -45,14 +53,28 @@ internal class LoggerImpl(
 
     private val processedEvents = mutableListOf<Any>()
     private val otherEvents = mutableListOf<Any>()
+    private val line = StringBuilder()
+    private var unflushedWrites = false
+    private var lastFlushTime = 0L
     private val missedLogs = AtomicBoolean()
     private val missedLogsCount = AtomicLong()
+    private val totalMissedLogsCount = AtomicLong()
 
     override val lostEntries: Boolean
         get() {
             return missedLogs.get()
         }
 
+    override val lostEntriesCount: Long
+        get() {
+            return totalMissedLogsCount.get()
+        }
+
+    override val queuedEntries: Int
+        get() {
+            return eventQueue.size
+        }
+
     fun start() {
         looper.start(this::eventLoop)
     }
@@ -101,17 +123,13 @@ internal class LoggerImpl(
     }
 
     private fun enqueue(level: Level, tag: String, message: String) {
-        try {
-            val entry = LogEntry(timestamp = clock.currentDate, level = level, tag = tag, message = message)
-            val enqueued = eventQueue.offer(entry, 1, TimeUnit.SECONDS)
-            if (!enqueued) {
-                missedLogs.set(true)
-                missedLogsCount.incrementAndGet()
-            }
-        } catch (ex: InterruptedException) {
-            // since interrupted flag is consumed now, we need to re-set the flag so
-            // the caller can continue handling the thread interruption in it's own way
-            Thread.currentThread().interrupt()
+        val entry = LogEntry(timestamp = clock.currentDate, level = level, tag = tag, message = message)
+        // never block the caller; a full queue means the writer cannot keep up anyway
+        val enqueued = eventQueue.offer(entry)
+        if (!enqueued) {
+            missedLogs.set(true)
+            missedLogsCount.incrementAndGet()
+            totalMissedLogsCount.incrementAndGet()
         }
     }
 
@@ -120,55 +138,93 @@ internal class LoggerImpl(
             processedEvents.clear()
             otherEvents.clear()
 
-            processedEvents.add(eventQueue.take())
+            val event = if (unflushedWrites) {
+                eventQueue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS)
+            } else {
+                eventQueue.take()
+            }
+            if (event == null) {
+                // idle - make sure everything logged so far is in the file
+                flush()
+                return
+            }
+            processedEvents.add(event)
             eventQueue.drainTo(processedEvents)
 
-            // process all writes in bulk - this is most frequest use case and we can
-            // assume handler must be opened 99.999% of time; anything that is not a log
-            // write should be deferred
-            handler.open()
-            for (event in processedEvents) {
-                if (event is LogEntry) {
-                    handler.write(event.toString() + "\n")
+            // process all writes in bulk - this is most frequest use case and the log
+            // file is kept open between batches; anything that is not a log write
+            // should be deferred
+            for (processed in processedEvents) {
+                if (processed is LogEntry) {
+                    write(processed)
                 } else {
-                    otherEvents.add(event)
+                    otherEvents.add(processed)
                 }
             }
-            handler.close()
 
-            // Those events are very sporadic and we don't have to be clever here
-            for (event in otherEvents) {
-                when (event) {
-                    is Load -> {
-                        val loaded = handler.loadLogFiles()
-                        val entries = loaded.lines.mapNotNull { LogEntry.parse(it) }
-                        mainThreadHandler.post {
-                            event.onResult(entries, loaded.logSize)
-                        }
-                    }
-                    is Delete -> handler.deleteAll()
-                }
+            checkAndLogLostMessages()
+
+            if (otherEvents.isNotEmpty()) {
+                // loaded logs must contain all entries written so far
+                flush()
+            } else if (unflushedWrites && clock.currentTime - lastFlushTime >= FLUSH_INTERVAL_MS) {
+                flush()
             }
 
-            checkAndLogLostMessages()
+            // Those events are very sporadic and we don't have to be clever here
+            for (other in otherEvents) {
+                process(other)
+            }
         } catch (ex: InterruptedException) {
             handler.close()
             throw ex
         }
     }
 
+    private fun process(event: Any) {
+        when (event) {
+            is Load -> {
+                val loaded = handler.loadLogFiles()
+                val entries = loaded.lines.mapNotNull { LogEntry.parse(it) }
+                mainThreadHandler.post {
+                    event.onResult(entries, loaded.logSize)
+                }
+            }
+            is Delete -> {
+                handler.close()
+                handler.deleteAll()
+            }
+        }
+    }
+
+    private fun write(entry: LogEntry) {
+        if (!handler.isOpened) {
+            handler.open()
+        }
+        line.setLength(0)
+        entry.appendTo(line)
+        line.append('\n')
+        handler.write(line)
+        unflushedWrites = true
+    }
+
+    private fun flush() {
+        handler.flush()
+        unflushedWrites = false
+        lastFlushTime = clock.currentTime
+    }
+
     private fun checkAndLogLostMessages() {
         val lastMissedLogsCount = missedLogsCount.getAndSet(0)
         if (lastMissedLogsCount > 0) {
-            handler.open()
-            val warning = LogEntry(
-                timestamp = Date(),
-                level = Level.WARNING,
-                tag = "Logger",
-                message = "Logger queue overflow. Approx $lastMissedLogsCount entries lost. You write too much."
-            ).toString()
-            handler.write(warning)
-            handler.close()
+            write(
+                LogEntry(
+                    timestamp = Date(),
+                    level = Level.WARNING,
+                    tag = "Logger",
+                    message = "Logger queue overflow. Approx $lastMissedLogsCount entries lost. You write too much."
+                )
+            )
         }
     }
 }
@@ -35,6 +35,20 @@ interface LogsRepository {
      */
     val lostEntries: Boolean
 
+    /**
+     * Number of messages the logger was unable to handle since start.
+     *
+     * This property is thread-safe.
+     */
+    val lostEntriesCount: Long
+
+    /**
+     * Number of messages waiting to be written.
+     *
+     * This property is thread-safe.
+     */
+    val queuedEntries: Int
+
     /**
      * Asynchronously load available logs. Load can be scheduled on any thread,
      * but the listener will be called on main thread.
@@ -112,7 +112,12 @@ class LogsViewModel @Inject constructor(
     private fun formatStatus(): String {
         val displayedEntries = entries.value?.size ?: allEntries.size
         val sizeKb = logsSize / KILOBYTE
-        return when {
+        val queue = context.getString(
+            R.string.logs_status_queue,
+            logsRepository.queuedEntries,
+            logsRepository.lostEntriesCount
+        )
+        val status = when {
             isLoading.value == true -> context.getString(R.string.logs_status_loading)
             isFiltered -> context.getString(
                 R.string.logs_status_filtered,
@@ -124,5 +129,6 @@ class LogsViewModel @Inject constructor(
             !isFiltered -> context.getString(R.string.logs_status_not_filtered, sizeKb)
             else -> ""
         }
+        return "$status\n$queue"
     }
 }
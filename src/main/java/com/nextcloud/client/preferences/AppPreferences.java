@@ -210,6 +210,16 @@ public interface AppPreferences {
     boolean isAutoUploadInitialized();
     void setAutoUploadInit(boolean autoUploadInit);
 
+    /**
+     * Gets whether auto upload detects changed files by a fingerprint of size, first and last block instead of a
+     * checksum of the whole file.
+     *
+     * @return fast fingerprint flag, default is false
+     */
+    boolean isAutoUploadFastFingerprintEnabled();
+
+    void setAutoUploadFastFingerprintEnabled(boolean fastFingerprint);
+
     /**
      * Get preferred folder sort order.
      *
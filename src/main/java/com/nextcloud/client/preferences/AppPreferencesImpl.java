@@ -79,6 +79,7 @@ public final class AppPreferencesImpl implements AppPreferences {
     private static final String PREF__PUSH_TOKEN = "pushToken";
     private static final String PREF__AUTO_UPLOAD_SPLIT_OUT = "autoUploadEntriesSplitOut";
     private static final String PREF__AUTO_UPLOAD_INIT = "autoUploadInit";
+    private static final String PREF__AUTO_UPLOAD_FAST_FINGERPRINT = "autoUploadFastFingerprint";
     private static final String PREF__FOLDER_SORT_ORDER = "folder_sort_order";
     private static final String PREF__FOLDER_LAYOUT = "folder_layout";
 
@@ -91,6 +92,9 @@ public final class AppPreferencesImpl implements AppPreferences {
     private static final String PREF__POWER_CHECK_DISABLED = "power_check_disabled";
     private static final String PREF__PIN_BRUTE_FORCE_COUNT = "pin_brute_force_count";
 
+    // shared, as instances are created in many places
+    private static final FolderPreferenceResolver FOLDER_PREFERENCES = new FolderPreferenceResolver();
+
     private final Context context;
     private final SharedPreferences preferences;
     private final CurrentAccountProvider currentAccountProvider;
@@ -404,6 +408,16 @@ public final class AppPreferencesImpl implements AppPreferences {
         preferences.edit().putBoolean(PREF__AUTO_UPLOAD_INIT, autoUploadInit).apply();
     }
 
+    @Override
+    public boolean isAutoUploadFastFingerprintEnabled() {
+        return preferences.getBoolean(PREF__AUTO_UPLOAD_FAST_FINGERPRINT, false);
+    }
+
+    @Override
+    public void setAutoUploadFastFingerprintEnabled(boolean fastFingerprint) {
+        preferences.edit().putBoolean(PREF__AUTO_UPLOAD_FAST_FINGERPRINT, fastFingerprint).apply();
+    }
+
     @Override
     public int getUploaderBehaviour() {
         return preferences.getInt(AUTO_PREF__UPLOADER_BEHAVIOR, 1);
@@ -598,15 +612,10 @@ public final class AppPreferencesImpl implements AppPreferences {
             return defaultValue;
         }
 
-        ArbitraryDataProvider dataProvider = new ArbitraryDataProvider(context.getContentResolver());
-        FileDataStorageManager storageManager = new FileDataStorageManager(user.toPlatformAccount(), context.getContentResolver());
-
-        String value = dataProvider.getValue(user.getAccountName(), getKeyFromFolder(preferenceName, folder));
-        OCFile prefFolder = folder;
-        while (prefFolder != null && value.isEmpty()) {
-            prefFolder = storageManager.getFileById(prefFolder.getParentId());
-            value = dataProvider.getValue(user.getAccountName(), getKeyFromFolder(preferenceName, prefFolder));
-        }
+        String value = FOLDER_PREFERENCES.get(new FolderPreferenceStorage(context, user),
+                                             user.getAccountName(),
+                                             preferenceName,
+                                             folder);
         return value.isEmpty() ? defaultValue : value;
     }
 
@@ -624,14 +633,42 @@ public final class AppPreferencesImpl implements AppPreferences {
                                             @Nullable final OCFile folder,
                                             final String value) {
         ArbitraryDataProvider dataProvider = new ArbitraryDataProvider(context.getContentResolver());
-        dataProvider.storeOrUpdateKeyValue(user.getAccountName(), getKeyFromFolder(preferenceName, folder), value);
+        dataProvider.storeOrUpdateKeyValue(user.getAccountName(),
+                                           FolderPreferenceResolver.getKey(preferenceName, folder),
+                                           value);
+        FOLDER_PREFERENCES.onSet(user.getAccountName(), preferenceName, folder, value);
     }
 
-    private static String getKeyFromFolder(String preferenceName, @Nullable OCFile folder) {
-        final String folderIdString = String.valueOf(folder != null ? folder.getFileId() :
-            FileDataStorageManager.ROOT_PARENT_ID);
+    /**
+     * Creates the providers only when the resolver misses its cache.
+     */
+    private static class FolderPreferenceStorage implements FolderPreferenceResolver.Storage {
+        private final Context context;
+        private final User user;
+        private ArbitraryDataProvider dataProvider;
+        private FileDataStorageManager storageManager;
+
+        FolderPreferenceStorage(Context context, User user) {
+            this.context = context;
+            this.user = user;
+        }
+
+        @Override
+        public String getValue(String accountName, String key) {
+            if (dataProvider == null) {
+                dataProvider = new ArbitraryDataProvider(context.getContentResolver());
+            }
+            return dataProvider.getValue(accountName, key);
+        }
 
-        return preferenceName + "_" + folderIdString;
+        @Nullable
+        @Override
+        public OCFile getFileById(String accountName, long fileId) {
+            if (storageManager == null) {
+                storageManager = new FileDataStorageManager(user.toPlatformAccount(), context.getContentResolver());
+            }
+            return storageManager.getFileById(fileId);
+        }
     }
 
     @Override
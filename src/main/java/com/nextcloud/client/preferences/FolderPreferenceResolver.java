@@ -0,0 +1,166 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.client.preferences;
+
+import com.owncloud.android.datamodel.FileDataStorageManager;
+import com.owncloud.android.datamodel.OCFile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Resolves folder preferences inherited from the closest ancestor that has the preference set, caching per account
+ * both the stored values and the folder hierarchy. Once a folder has been resolved, further lookups do not query the
+ * database until a preference is set again.
+ * <p>
+ * Folders are identified by file id, {@link FileDataStorageManager#ROOT_PARENT_ID} stands for "no folder" and ends
+ * the lookup. Moved folders keep their cached ancestors until a preference is set again.
+ */
+class FolderPreferenceResolver {
+
+    /**
+     * Database access, only used on cache misses.
+     */
+    interface Storage {
+        /**
+         * @return stored value of the key, empty if not set
+         */
+        String getValue(String accountName, String key);
+
+        @Nullable
+        OCFile getFileById(String accountName, long fileId);
+    }
+
+    private static final long NO_FOLDER = FileDataStorageManager.ROOT_PARENT_ID;
+
+    private final Map<String, AccountCache> accounts = new HashMap<>();
+
+    /**
+     * @param folder folder to resolve the preference for, null for the value set without folder
+     * @return preference value, empty if neither the folder nor any of its ancestors has the preference set
+     */
+    synchronized String get(Storage storage, String accountName, String preferenceName, @Nullable OCFile folder) {
+        AccountCache cache = getAccountCache(accountName);
+        Map<Long, String> effectiveValues = cache.getEffectiveValues(preferenceName);
+        Map<Long, String> storedValues = cache.getStoredValues(preferenceName);
+
+        long folderId = folder == null ? NO_FOLDER : folder.getFileId();
+        OCFile current = folder;
+        List<Long> visited = new ArrayList<>();
+        String value;
+
+        while (true) {
+            value = effectiveValues.get(folderId);
+            if (value != null) {
+                break;
+            }
+
+            visited.add(folderId);
+
+            value = storedValues.get(folderId);
+            if (value == null) {
+                value = storage.getValue(accountName, getKey(preferenceName, folderId));
+                storedValues.put(folderId, value);
+            }
+
+            if (!value.isEmpty() || folderId == NO_FOLDER) {
+                break;
+            }
+
+            Long parentId = cache.parentIds.get(folderId);
+            if (parentId == null) {
+                if (current == null || current.getFileId() != folderId) {
+                    current = storage.getFileById(accountName, folderId);
+                }
+
+                // an unknown parent ends the lookup, as it does for the root folder
+                OCFile parent = current == null ? null : storage.getFileById(accountName, current.getParentId());
+                parentId = parent == null ? NO_FOLDER : parent.getFileId();
+                cache.parentIds.put(folderId, parentId);
+                current = parent;
+            }
+            folderId = parentId;
+        }
+
+        for (Long visitedId : visited) {
+            effectiveValues.put(visitedId, value);
+        }
+
+        return value;
+    }
+
+    /**
+     * Updates the cache after a preference has been stored.
+     */
+    synchronized void onSet(String accountName, String preferenceName, @Nullable OCFile folder, String value) {
+        AccountCache cache = getAccountCache(accountName);
+
+        cache.getStoredValues(preferenceName).put(folder == null ? NO_FOLDER : folder.getFileId(), value);
+        // descendants inherit the value, they are not known here
+        cache.getEffectiveValues(preferenceName).clear();
+        cache.parentIds.clear();
+    }
+
+    static String getKey(String preferenceName, @Nullable OCFile folder) {
+        return getKey(preferenceName, folder == null ? NO_FOLDER : folder.getFileId());
+    }
+
+    private static String getKey(String preferenceName, long folderId) {
+        return preferenceName + "_" + folderId;
+    }
+
+    private AccountCache getAccountCache(String accountName) {
+        AccountCache cache = accounts.get(accountName);
+        if (cache == null) {
+            cache = new AccountCache();
+            accounts.put(accountName, cache);
+        }
+
+        return cache;
+    }
+
+    private static class AccountCache {
+        final Map<Long, Long> parentIds = new HashMap<>();
+        final Map<String, Map<Long, String>> storedValues = new HashMap<>();
+        final Map<String, Map<Long, String>> effectiveValues = new HashMap<>();
+
+        Map<Long, String> getStoredValues(String preferenceName) {
+            return getOrCreate(storedValues, preferenceName);
+        }
+
+        Map<Long, String> getEffectiveValues(String preferenceName) {
+            return getOrCreate(effectiveValues, preferenceName);
+        }
+
+        private static Map<Long, String> getOrCreate(Map<String, Map<Long, String>> values, String preferenceName) {
+            Map<Long, String> map = values.get(preferenceName);
+            if (map == null) {
+                map = new HashMap<>();
+                values.put(preferenceName, map);
+            }
+
+            return map;
+        }
+    }
+}
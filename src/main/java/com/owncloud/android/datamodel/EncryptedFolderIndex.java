@@ -0,0 +1,151 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Remote paths of the encrypted folders of every account, so that checking for an encrypted ancestor is a lookup per
+ * path segment instead of a database query per level.
+ * <p>
+ * The paths of an account are loaded on first use and kept up to date by {@link FileDataStorageManager}, which is
+ * the only writer of the file table. Dropping an account makes its paths load again on next use.
+ */
+final class EncryptedFolderIndex {
+
+    interface Loader {
+        /**
+         * @return remote paths of all encrypted folders of the account, null if they could not be loaded
+         */
+        Collection<String> loadEncryptedFolderPaths();
+    }
+
+    interface AncestorWalk {
+        /**
+         * Checks the containing folders one by one, used when the paths could not be loaded.
+         *
+         * @return true if any folder containing the path is encrypted or could not be checked
+         */
+        boolean hasEncryptedAncestor();
+    }
+
+    private final Map<String, Set<String>> accounts = new HashMap<>();
+
+    /**
+     * @param remotePath remote path of a file or folder
+     * @param walk       checks the ancestors if the paths could not be loaded, the answer must not fail open
+     * @return true if any folder containing the path, not the path itself nor the root folder, is encrypted
+     */
+    synchronized boolean hasEncryptedAncestor(String accountName, String remotePath, Loader loader,
+                                              AncestorWalk walk) {
+        Set<String> paths = accounts.get(accountName);
+        if (paths == null) {
+            Collection<String> loaded = loader.loadEncryptedFolderPaths();
+            if (loaded == null) {
+                return walk.hasEncryptedAncestor();
+            }
+            paths = new HashSet<>(loaded);
+            accounts.put(accountName, paths);
+        }
+
+        if (paths.isEmpty()) {
+            return false;
+        }
+
+        // ancestors end with a separator; the last character belongs to the path itself for folders
+        int end = remotePath.length() - 1;
+        for (int i = remotePath.indexOf(OCFile.PATH_SEPARATOR, 1); i >= 0 && i < end;
+             i = remotePath.indexOf(OCFile.PATH_SEPARATOR, i + 1)) {
+            if (paths.contains(remotePath.substring(0, i + 1))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Records the encryption state of a saved file; only folders are kept.
+     */
+    synchronized void update(String accountName, OCFile file) {
+        Set<String> paths = accounts.get(accountName);
+        if (paths == null || !file.isFolder()) {
+            return;
+        }
+
+        if (file.isEncrypted()) {
+            paths.add(file.getRemotePath());
+        } else {
+            paths.remove(file.getRemotePath());
+        }
+    }
+
+    /**
+     * Forgets a removed folder and all its descendants.
+     */
+    synchronized void remove(String accountName, String remotePath) {
+        Set<String> paths = accounts.get(accountName);
+        if (paths == null) {
+            return;
+        }
+
+        Iterator<String> iterator = paths.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(remotePath)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Moves a folder and all its descendants, as done in the database.
+     */
+    synchronized void move(String accountName, String remotePath, String targetPath) {
+        Set<String> paths = accounts.get(accountName);
+        if (paths == null) {
+            return;
+        }
+
+        List<String> moved = new ArrayList<>();
+        Iterator<String> iterator = paths.iterator();
+        while (iterator.hasNext()) {
+            String path = iterator.next();
+            if (path.startsWith(remotePath)) {
+                iterator.remove();
+                moved.add(targetPath + path.substring(remotePath.length()));
+            }
+        }
+        paths.addAll(moved);
+    }
+
+    /**
+     * Drops the paths of the account, e.g. when the database could not be updated as expected.
+     */
+    synchronized void clear(String accountName) {
+        accounts.remove(accountName);
+    }
+}
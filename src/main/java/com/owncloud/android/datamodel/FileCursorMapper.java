@@ -0,0 +1,269 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.database.Cursor;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+import com.owncloud.android.lib.common.network.WebdavEntry;
+import com.owncloud.android.lib.resources.shares.ShareeUser;
+import com.owncloud.android.utils.FileStorageUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Maps rows of the file table to {@link OCFile}s.
+ * <p>
+ * Column indices are resolved once per cursor, so one mapper should be used for all rows of a cursor. Columns that
+ * are not part of the cursor's projection are left at the defaults of {@link OCFile}, which allows to use light
+ * projections like {@link #LIGHT_PROJECTION}.
+ */
+public class FileCursorMapper {
+
+    /**
+     * Projection for callers that only need to identify files: id, parent, path, mimetype and etag
+     */
+    public static final String[] LIGHT_PROJECTION = new String[]{
+        ProviderTableMeta._ID,
+        ProviderTableMeta.FILE_PARENT,
+        ProviderTableMeta.FILE_PATH,
+        ProviderTableMeta.FILE_CONTENT_TYPE,
+        ProviderTableMeta.FILE_ETAG
+    };
+
+    /**
+     * Gson is thread safe, no need to create one per row
+     */
+    static final Gson GSON = new Gson();
+
+    private static final int MISSING = -1;
+
+    private final String accountName;
+    private final boolean probeLocalFile;
+
+    private final int idIndex;
+    private final int pathIndex;
+    private final int pathDecryptedIndex;
+    private final int parentIndex;
+    private final int contentTypeIndex;
+    private final int storagePathIndex;
+    private final int contentLengthIndex;
+    private final int creationIndex;
+    private final int modifiedIndex;
+    private final int modifiedAtLastSyncForDataIndex;
+    private final int lastSyncDateIndex;
+    private final int lastSyncDateForDataIndex;
+    private final int etagIndex;
+    private final int etagOnServerIndex;
+    private final int sharedViaLinkIndex;
+    private final int sharedWithShareeIndex;
+    private final int permissionsIndex;
+    private final int remoteIdIndex;
+    private final int updateThumbnailIndex;
+    private final int isDownloadingIndex;
+    private final int etagInConflictIndex;
+    private final int favoriteIndex;
+    private final int isEncryptedIndex;
+    private final int mountTypeIndex;
+    private final int hasPreviewIndex;
+    private final int unreadCommentsCountIndex;
+    private final int ownerIdIndex;
+    private final int ownerDisplayNameIndex;
+    private final int noteIndex;
+    private final int richWorkspaceIndex;
+    private final int shareesIndex;
+
+    /**
+     * @param cursor         cursor whose rows are mapped
+     * @param accountName    account owning the files
+     * @param probeLocalFile if true, files without storage path are looked up in the default save path of the
+     *                       account; costs one file system access per row
+     */
+    public FileCursorMapper(@NonNull Cursor cursor, String accountName, boolean probeLocalFile) {
+        this.accountName = accountName;
+        this.probeLocalFile = probeLocalFile;
+
+        idIndex = cursor.getColumnIndex(ProviderTableMeta._ID);
+        pathIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_PATH);
+        pathDecryptedIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_PATH_DECRYPTED);
+        parentIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_PARENT);
+        contentTypeIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE);
+        storagePathIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH);
+        contentLengthIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH);
+        creationIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_CREATION);
+        modifiedIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED);
+        modifiedAtLastSyncForDataIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA);
+        lastSyncDateIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE);
+        lastSyncDateForDataIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA);
+        etagIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG);
+        etagOnServerIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_ON_SERVER);
+        sharedViaLinkIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_VIA_LINK);
+        sharedWithShareeIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_WITH_SHAREE);
+        permissionsIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_PERMISSIONS);
+        remoteIdIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID);
+        updateThumbnailIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_UPDATE_THUMBNAIL);
+        isDownloadingIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_IS_DOWNLOADING);
+        etagInConflictIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_IN_CONFLICT);
+        favoriteIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_FAVORITE);
+        isEncryptedIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_IS_ENCRYPTED);
+        mountTypeIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_MOUNT_TYPE);
+        hasPreviewIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_HAS_PREVIEW);
+        unreadCommentsCountIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT);
+        ownerIdIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_ID);
+        ownerDisplayNameIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME);
+        noteIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_NOTE);
+        richWorkspaceIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_RICH_WORKSPACE);
+        shareesIndex = cursor.getColumnIndex(ProviderTableMeta.FILE_SHAREES);
+    }
+
+    /**
+     * Creates a file from the current row of the cursor.
+     */
+    public OCFile map(@NonNull Cursor cursor) {
+        OCFile ocFile = new OCFile(cursor.getString(pathIndex));
+
+        if (pathDecryptedIndex != MISSING) {
+            ocFile.setDecryptedRemotePath(cursor.getString(pathDecryptedIndex));
+        }
+        if (idIndex != MISSING) {
+            ocFile.setFileId(cursor.getLong(idIndex));
+        }
+        if (parentIndex != MISSING) {
+            ocFile.setParentId(cursor.getLong(parentIndex));
+        }
+        if (contentTypeIndex != MISSING) {
+            ocFile.setMimeType(cursor.getString(contentTypeIndex));
+        }
+        if (storagePathIndex != MISSING) {
+            ocFile.setStoragePath(cursor.getString(storagePathIndex));
+            if (ocFile.getStoragePath() == null && probeLocalFile) {
+                // try to find existing file and bind it with current account;
+                // with the current update of SynchronizeFolderOperation, this won't be
+                // necessary anymore after a full synchronization of the account
+                File file = new File(FileStorageUtils.getDefaultSavePathFor(accountName, ocFile));
+                if (file.exists()) {
+                    ocFile.setStoragePath(file.getAbsolutePath());
+                    ocFile.setLastSyncDateForData(file.lastModified());
+                }
+            }
+        }
+        if (contentLengthIndex != MISSING) {
+            ocFile.setFileLength(cursor.getLong(contentLengthIndex));
+        }
+        if (creationIndex != MISSING) {
+            ocFile.setCreationTimestamp(cursor.getLong(creationIndex));
+        }
+        if (modifiedIndex != MISSING) {
+            ocFile.setModificationTimestamp(cursor.getLong(modifiedIndex));
+        }
+        if (modifiedAtLastSyncForDataIndex != MISSING) {
+            ocFile.setModificationTimestampAtLastSyncForData(cursor.getLong(modifiedAtLastSyncForDataIndex));
+        }
+        if (lastSyncDateIndex != MISSING) {
+            ocFile.setLastSyncDateForProperties(cursor.getLong(lastSyncDateIndex));
+        }
+        if (lastSyncDateForDataIndex != MISSING) {
+            ocFile.setLastSyncDateForData(cursor.getLong(lastSyncDateForDataIndex));
+        }
+        if (etagIndex != MISSING) {
+            ocFile.setEtag(cursor.getString(etagIndex));
+        }
+        if (etagOnServerIndex != MISSING) {
+            ocFile.setEtagOnServer(cursor.getString(etagOnServerIndex));
+        }
+        if (sharedViaLinkIndex != MISSING) {
+            ocFile.setSharedViaLink(cursor.getInt(sharedViaLinkIndex) == 1);
+        }
+        if (sharedWithShareeIndex != MISSING) {
+            ocFile.setSharedWithSharee(cursor.getInt(sharedWithShareeIndex) == 1);
+        }
+        if (permissionsIndex != MISSING) {
+            ocFile.setPermissions(cursor.getString(permissionsIndex));
+        }
+        if (remoteIdIndex != MISSING) {
+            ocFile.setRemoteId(cursor.getString(remoteIdIndex));
+        }
+        if (updateThumbnailIndex != MISSING) {
+            ocFile.setUpdateThumbnailNeeded(cursor.getInt(updateThumbnailIndex) == 1);
+        }
+        if (isDownloadingIndex != MISSING) {
+            ocFile.setDownloading(cursor.getInt(isDownloadingIndex) == 1);
+        }
+        if (etagInConflictIndex != MISSING) {
+            ocFile.setEtagInConflict(cursor.getString(etagInConflictIndex));
+        }
+        if (favoriteIndex != MISSING) {
+            ocFile.setFavorite(cursor.getInt(favoriteIndex) == 1);
+        }
+        if (isEncryptedIndex != MISSING) {
+            ocFile.setEncrypted(cursor.getInt(isEncryptedIndex) == 1);
+        }
+        if (mountTypeIndex != MISSING) {
+            ocFile.setMountType(WebdavEntry.MountType.values()[cursor.getInt(mountTypeIndex)]);
+        }
+        if (hasPreviewIndex != MISSING) {
+            ocFile.setPreviewAvailable(cursor.getInt(hasPreviewIndex) == 1);
+        }
+        if (unreadCommentsCountIndex != MISSING) {
+            ocFile.setUnreadCommentsCount(cursor.getInt(unreadCommentsCountIndex));
+        }
+        if (ownerIdIndex != MISSING) {
+            ocFile.setOwnerId(cursor.getString(ownerIdIndex));
+        }
+        if (ownerDisplayNameIndex != MISSING) {
+            ocFile.setOwnerDisplayName(cursor.getString(ownerDisplayNameIndex));
+        }
+        if (noteIndex != MISSING) {
+            ocFile.setNote(cursor.getString(noteIndex));
+        }
+        if (richWorkspaceIndex != MISSING) {
+            ocFile.setRichWorkspace(cursor.getString(richWorkspaceIndex));
+        }
+
+        if (shareesIndex == MISSING) {
+            ocFile.setSharees(new ArrayList<>());
+        } else {
+            ocFile.setSharees(parseSharees(cursor.getString(shareesIndex)));
+        }
+
+        return ocFile;
+    }
+
+    static ArrayList<ShareeUser> parseSharees(String sharees) {
+        if (sharees == null || FileDataStorageManager.NULL_STRING.equals(sharees) || sharees.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        try {
+            ShareeUser[] shareesArray = GSON.fromJson(sharees, ShareeUser[].class);
+
+            return new ArrayList<>(Arrays.asList(shareesArray));
+        } catch (JsonSyntaxException e) {
+            // ignore saved value due to api change
+            return new ArrayList<>();
+        }
+    }
+}
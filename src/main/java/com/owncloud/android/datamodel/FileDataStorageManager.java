@@ -30,25 +30,23 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.net.Uri;
 import android.os.Build;
 import android.os.RemoteException;
 import android.provider.MediaStore;
 import android.text.TextUtils;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
 import com.nextcloud.client.account.User;
 import com.owncloud.android.MainApp;
+import com.owncloud.android.db.PrefixSelection;
 import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
-import com.owncloud.android.lib.common.network.WebdavEntry;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.resources.files.ReadFileRemoteOperation;
 import com.owncloud.android.lib.resources.files.model.RemoteFile;
 import com.owncloud.android.lib.resources.shares.OCShare;
 import com.owncloud.android.lib.resources.shares.ShareType;
-import com.owncloud.android.lib.resources.shares.ShareeUser;
 import com.owncloud.android.lib.resources.status.CapabilityBooleanType;
 import com.owncloud.android.lib.resources.status.OCCapability;
 import com.owncloud.android.operations.RemoteOperationFailedException;
@@ -61,10 +59,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 
 import androidx.annotation.NonNull;
@@ -83,6 +83,55 @@ public class FileDataStorageManager {
     public static final int ROOT_PARENT_ID = 0;
     public static final String NULL_STRING = "null";
 
+    /**
+     * SQLite refuses more than 999 bound parameters per statement
+     */
+    private static final int MAX_SELECTION_ARGS = 900;
+
+    /**
+     * Columns written by {@link #createContentValueForFile(OCFile, OCFile)} plus the id, used to detect unchanged
+     * children when saving a folder
+     */
+    private static final String[] FOLDER_DIFF_PROJECTION = new String[]{
+        ProviderTableMeta._ID,
+        ProviderTableMeta.FILE_MODIFIED,
+        ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
+        ProviderTableMeta.FILE_CREATION,
+        ProviderTableMeta.FILE_CONTENT_LENGTH,
+        ProviderTableMeta.FILE_CONTENT_TYPE,
+        ProviderTableMeta.FILE_NAME,
+        ProviderTableMeta.FILE_ENCRYPTED_NAME,
+        ProviderTableMeta.FILE_PARENT,
+        ProviderTableMeta.FILE_PATH,
+        ProviderTableMeta.FILE_PATH_DECRYPTED,
+        ProviderTableMeta.FILE_STORAGE_PATH,
+        ProviderTableMeta.FILE_ACCOUNT_OWNER,
+        ProviderTableMeta.FILE_LAST_SYNC_DATE,
+        ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA,
+        ProviderTableMeta.FILE_ETAG,
+        ProviderTableMeta.FILE_ETAG_ON_SERVER,
+        ProviderTableMeta.FILE_SHARED_VIA_LINK,
+        ProviderTableMeta.FILE_SHARED_WITH_SHAREE,
+        ProviderTableMeta.FILE_PERMISSIONS,
+        ProviderTableMeta.FILE_REMOTE_ID,
+        ProviderTableMeta.FILE_UPDATE_THUMBNAIL,
+        ProviderTableMeta.FILE_IS_DOWNLOADING,
+        ProviderTableMeta.FILE_ETAG_IN_CONFLICT,
+        ProviderTableMeta.FILE_FAVORITE,
+        ProviderTableMeta.FILE_IS_ENCRYPTED,
+        ProviderTableMeta.FILE_MOUNT_TYPE,
+        ProviderTableMeta.FILE_HAS_PREVIEW,
+        ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT,
+        ProviderTableMeta.FILE_OWNER_ID,
+        ProviderTableMeta.FILE_OWNER_DISPLAY_NAME,
+        ProviderTableMeta.FILE_NOTE,
+        ProviderTableMeta.FILE_SHAREES,
+        ProviderTableMeta.FILE_RICH_WORKSPACE
+    };
+
+    // shared, as instances are created for every operation
+    private static final EncryptedFolderIndex ENCRYPTED_FOLDERS = new EncryptedFolderIndex();
+
     private ContentResolver contentResolver;
     private ContentProviderClient contentProviderClient;
     private Account account;
@@ -182,7 +231,19 @@ public class FileDataStorageManager {
 
     public List<OCFile> getFolderContent(OCFile ocFile, boolean onlyOnDevice) {
         if (ocFile != null && ocFile.isFolder() && ocFile.fileExists()) {
-            return getFolderContent(ocFile.getFileId(), onlyOnDevice);
+            return getFolderContent(ocFile.getFileId(), onlyOnDevice, null);
+        } else {
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * Returns the content of a folder with only id, parent, path, mimetype and etag filled in, see {@link
+     * FileCursorMapper#LIGHT_PROJECTION}.
+     */
+    public List<OCFile> getFolderContentLight(OCFile ocFile) {
+        if (ocFile != null && ocFile.isFolder() && ocFile.fileExists()) {
+            return getFolderContent(ocFile.getFileId(), false, FileCursorMapper.LIGHT_PROJECTION);
         } else {
             return new ArrayList<>();
         }
@@ -208,43 +269,7 @@ public class FileDataStorageManager {
 
     public boolean saveFile(OCFile ocFile) {
         boolean overridden = false;
-        ContentValues cv = new ContentValues();
-        cv.put(ProviderTableMeta.FILE_MODIFIED, ocFile.getModificationTimestamp());
-        cv.put(
-            ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
-            ocFile.getModificationTimestampAtLastSyncForData()
-        );
-        cv.put(ProviderTableMeta.FILE_CREATION, ocFile.getCreationTimestamp());
-        cv.put(ProviderTableMeta.FILE_CONTENT_LENGTH, ocFile.getFileLength());
-        cv.put(ProviderTableMeta.FILE_CONTENT_TYPE, ocFile.getMimeType());
-        cv.put(ProviderTableMeta.FILE_NAME, ocFile.getFileName());
-        cv.put(ProviderTableMeta.FILE_ENCRYPTED_NAME, ocFile.getEncryptedFileName());
-        cv.put(ProviderTableMeta.FILE_PARENT, ocFile.getParentId());
-        cv.put(ProviderTableMeta.FILE_PATH, ocFile.getRemotePath());
-        cv.put(ProviderTableMeta.FILE_PATH_DECRYPTED, ocFile.getDecryptedRemotePath());
-        cv.put(ProviderTableMeta.FILE_IS_ENCRYPTED, ocFile.isEncrypted());
-        if (!ocFile.isFolder()) {
-            cv.put(ProviderTableMeta.FILE_STORAGE_PATH, ocFile.getStoragePath());
-        }
-        cv.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, account.name);
-        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE, ocFile.getLastSyncDateForProperties());
-        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA, ocFile.getLastSyncDateForData());
-        cv.put(ProviderTableMeta.FILE_ETAG, ocFile.getEtag());
-        cv.put(ProviderTableMeta.FILE_ETAG_ON_SERVER, ocFile.getEtagOnServer());
-        cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, ocFile.isSharedViaLink() ? 1 : 0);
-        cv.put(ProviderTableMeta.FILE_SHARED_WITH_SHAREE, ocFile.isSharedWithSharee() ? 1 : 0);
-        cv.put(ProviderTableMeta.FILE_PERMISSIONS, ocFile.getPermissions());
-        cv.put(ProviderTableMeta.FILE_REMOTE_ID, ocFile.getRemoteId());
-        cv.put(ProviderTableMeta.FILE_UPDATE_THUMBNAIL, ocFile.isUpdateThumbnailNeeded());
-        cv.put(ProviderTableMeta.FILE_IS_DOWNLOADING, ocFile.isDownloading());
-        cv.put(ProviderTableMeta.FILE_ETAG_IN_CONFLICT, ocFile.getEtagInConflict());
-        cv.put(ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT, ocFile.getUnreadCommentsCount());
-        cv.put(ProviderTableMeta.FILE_OWNER_ID, ocFile.getOwnerId());
-        cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, ocFile.getOwnerDisplayName());
-        cv.put(ProviderTableMeta.FILE_NOTE, ocFile.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(ocFile.getSharees()));
-        cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, ocFile.getRichWorkspace());
-        cv.put(ProviderTableMeta.FILE_HAS_PREVIEW, ocFile.isPreviewAvailable() ? 1 : 0);
+        ContentValues cv = createContentValueForSavedFile(ocFile);
 
         boolean sameRemotePath = fileExists(ocFile.getRemotePath());
         if (sameRemotePath ||
@@ -285,10 +310,141 @@ public class FileDataStorageManager {
                 ocFile.setFileId(new_id);
             }
         }
+        ENCRYPTED_FOLDERS.update(account.name, ocFile);
 
         return overridden;
     }
 
+    /**
+     * Saves files whose parents are already stored like {@link #saveFile(OCFile)}, but with one lookup of the
+     * existing files and in one batch.
+     *
+     * @param files files to save; new ids are set on them
+     */
+    public void saveFiles(List<OCFile> files) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(files.size());
+        // inserted file for every operation, null for all other operations; used to map back new ids
+        List<OCFile> insertedFiles = new ArrayList<>(files.size());
+
+        Map<Long, ContentValues> existingById = new HashMap<>();
+        Map<String, ContentValues> existingByPath = new HashMap<>();
+        loadMissingFiles(files, existingById, existingByPath);
+
+        for (OCFile ocFile : files) {
+            ContentValues contentValues = createContentValueForSavedFile(ocFile);
+
+            // same remote path first, then same id for renamed files
+            ContentValues existing = existingByPath.get(ocFile.getRemotePath());
+            if (existing == null) {
+                existing = existingById.get(ocFile.getFileId());
+            }
+
+            if (existing != null) {
+                long fileId = existing.getAsLong(ProviderTableMeta._ID);
+                ocFile.setFileId(fileId);
+
+                operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI)
+                                   .withValues(contentValues)
+                                   .withSelection(ProviderTableMeta._ID + " = ?", new String[]{String.valueOf(fileId)})
+                                   .build());
+                insertedFiles.add(null);
+            } else {
+                operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI_FILE)
+                                   .withValues(contentValues)
+                                   .build());
+                insertedFiles.add(ocFile);
+            }
+        }
+
+        if (operations.isEmpty()) {
+            return;
+        }
+
+        ContentProviderResult[] results = null;
+        Log_OC.d(TAG, String.format(Locale.ENGLISH, SENDING_TO_FILECONTENTPROVIDER_MSG, operations.size()));
+
+        try {
+            if (getContentResolver() != null) {
+                results = getContentResolver().applyBatch(MainApp.getAuthority(), operations);
+            } else {
+                results = getContentProviderClient().applyBatch(operations);
+            }
+        } catch (OperationApplicationException | RemoteException e) {
+            Log_OC.e(TAG, EXCEPTION_MSG + e.getMessage(), e);
+        }
+
+        if (results != null) {
+            for (int i = 0; i < insertedFiles.size() && i < results.length; i++) {
+                OCFile ocFile = insertedFiles.get(i);
+                if (ocFile != null && results[i].uri != null) {
+                    ocFile.setFileId(Long.parseLong(results[i].uri.getPathSegments().get(1)));
+                }
+            }
+        }
+        updateEncryptedFolders(files, Collections.emptyList(), results != null);
+    }
+
+    /**
+     * Keeps the index of encrypted folders in line with saved and removed files, dropping it if the batch failed.
+     */
+    private void updateEncryptedFolders(List<OCFile> savedFiles, Collection<OCFile> removedFiles, boolean success) {
+        if (!success) {
+            ENCRYPTED_FOLDERS.clear(account.name);
+            return;
+        }
+
+        for (OCFile ocFile : removedFiles) {
+            if (ocFile.isFolder()) {
+                ENCRYPTED_FOLDERS.remove(account.name, ocFile.getRemotePath());
+            }
+        }
+        for (OCFile ocFile : savedFiles) {
+            ENCRYPTED_FOLDERS.update(account.name, ocFile);
+        }
+    }
+
+    private ContentValues createContentValueForSavedFile(OCFile ocFile) {
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderTableMeta.FILE_MODIFIED, ocFile.getModificationTimestamp());
+        cv.put(
+            ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA,
+            ocFile.getModificationTimestampAtLastSyncForData()
+        );
+        cv.put(ProviderTableMeta.FILE_CREATION, ocFile.getCreationTimestamp());
+        cv.put(ProviderTableMeta.FILE_CONTENT_LENGTH, ocFile.getFileLength());
+        cv.put(ProviderTableMeta.FILE_CONTENT_TYPE, ocFile.getMimeType());
+        cv.put(ProviderTableMeta.FILE_NAME, ocFile.getFileName());
+        cv.put(ProviderTableMeta.FILE_ENCRYPTED_NAME, ocFile.getEncryptedFileName());
+        cv.put(ProviderTableMeta.FILE_PARENT, ocFile.getParentId());
+        cv.put(ProviderTableMeta.FILE_PATH, ocFile.getRemotePath());
+        cv.put(ProviderTableMeta.FILE_PATH_DECRYPTED, ocFile.getDecryptedRemotePath());
+        cv.put(ProviderTableMeta.FILE_IS_ENCRYPTED, ocFile.isEncrypted());
+        if (!ocFile.isFolder()) {
+            cv.put(ProviderTableMeta.FILE_STORAGE_PATH, ocFile.getStoragePath());
+        }
+        cv.put(ProviderTableMeta.FILE_ACCOUNT_OWNER, account.name);
+        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE, ocFile.getLastSyncDateForProperties());
+        cv.put(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA, ocFile.getLastSyncDateForData());
+        cv.put(ProviderTableMeta.FILE_ETAG, ocFile.getEtag());
+        cv.put(ProviderTableMeta.FILE_ETAG_ON_SERVER, ocFile.getEtagOnServer());
+        cv.put(ProviderTableMeta.FILE_SHARED_VIA_LINK, ocFile.isSharedViaLink() ? 1 : 0);
+        cv.put(ProviderTableMeta.FILE_SHARED_WITH_SHAREE, ocFile.isSharedWithSharee() ? 1 : 0);
+        cv.put(ProviderTableMeta.FILE_PERMISSIONS, ocFile.getPermissions());
+        cv.put(ProviderTableMeta.FILE_REMOTE_ID, ocFile.getRemoteId());
+        cv.put(ProviderTableMeta.FILE_UPDATE_THUMBNAIL, ocFile.isUpdateThumbnailNeeded());
+        cv.put(ProviderTableMeta.FILE_IS_DOWNLOADING, ocFile.isDownloading());
+        cv.put(ProviderTableMeta.FILE_ETAG_IN_CONFLICT, ocFile.getEtagInConflict());
+        cv.put(ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT, ocFile.getUnreadCommentsCount());
+        cv.put(ProviderTableMeta.FILE_OWNER_ID, ocFile.getOwnerId());
+        cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, ocFile.getOwnerDisplayName());
+        cv.put(ProviderTableMeta.FILE_NOTE, ocFile.getNote());
+        cv.put(ProviderTableMeta.FILE_SHAREES, FileCursorMapper.GSON.toJson(ocFile.getSharees()));
+        cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, ocFile.getRichWorkspace());
+        cv.put(ProviderTableMeta.FILE_HAS_PREVIEW, ocFile.isPreviewAvailable() ? 1 : 0);
+
+        return cv;
+    }
+
     /**
      * traverses a files parent tree to be able to store a file with its parents. Throws a
      * RemoteOperationFailedException in case the parent can't be retrieved.
@@ -299,41 +455,50 @@ public class FileDataStorageManager {
      */
     public OCFile saveFileWithParent(OCFile ocFile, Context context) {
         if (ocFile.getParentId() == 0 && !OCFile.ROOT_PATH.equals(ocFile.getRemotePath())) {
-            String remotePath = ocFile.getRemotePath();
-            String parentPath = remotePath.substring(0, remotePath.lastIndexOf(ocFile.getFileName()));
+            ocFile.setParentId(saveParent(ocFile, context).getFileId());
+            saveFile(ocFile);
+        }
+
+        return ocFile;
+    }
+
+    /**
+     * Makes sure the parent tree of a file is stored, fetching missing folders from the server. Throws a
+     * RemoteOperationFailedException in case the parent can't be retrieved.
+     *
+     * @param ocFile  the file, not the root folder
+     * @param context the app context
+     * @return the stored parent
+     */
+    public OCFile saveParent(OCFile ocFile, Context context) {
+        String remotePath = ocFile.getRemotePath();
+        String parentPath = remotePath.substring(0, remotePath.lastIndexOf(ocFile.getFileName()));
 
-            OCFile parentFile = getFileByPath(parentPath);
-            OCFile returnFile;
+        OCFile parentFile = getFileByPath(parentPath);
 
-            if (parentFile == null) {
-                // remote request
-                ReadFileRemoteOperation operation = new ReadFileRemoteOperation(parentPath);
-                // TODO Deprecated
-                RemoteOperationResult result = operation.execute(getAccount(), context);
-                if (result.isSuccess()) {
-                    OCFile remoteFolder = FileStorageUtils.fillOCFile((RemoteFile) result.getData().get(0));
+        if (parentFile == null) {
+            // remote request
+            ReadFileRemoteOperation operation = new ReadFileRemoteOperation(parentPath);
+            // TODO Deprecated
+            RemoteOperationResult result = operation.execute(getAccount(), context);
+            if (result.isSuccess()) {
+                OCFile remoteFolder = FileStorageUtils.fillOCFile((RemoteFile) result.getData().get(0));
 
-                    returnFile = saveFileWithParent(remoteFolder, context);
-                } else {
-                    Exception exception = result.getException();
-                    String message = "Error during saving file with parents: " + ocFile.getRemotePath() + " / "
-                        + result.getLogMessage();
+                return saveFileWithParent(remoteFolder, context);
+            } else {
+                Exception exception = result.getException();
+                String message = "Error during saving file with parents: " + ocFile.getRemotePath() + " / "
+                    + result.getLogMessage();
 
-                    if (exception != null) {
-                        throw new RemoteOperationFailedException(message, exception);
-                    } else {
-                        throw new RemoteOperationFailedException(message);
-                    }
+                if (exception != null) {
+                    throw new RemoteOperationFailedException(message, exception);
+                } else {
+                    throw new RemoteOperationFailedException(message);
                 }
-            } else {
-                returnFile = saveFileWithParent(parentFile, context);
             }
-
-            ocFile.setParentId(returnFile.getFileId());
-            saveFile(ocFile);
+        } else {
+            return saveFileWithParent(parentFile, context);
         }
-
-        return ocFile;
     }
 
     public void saveNewFile(OCFile newFile) {
@@ -352,41 +517,68 @@ public class FileDataStorageManager {
 
     /**
      * Inserts or updates the list of files contained in a given folder.
-     *
+     * <p>
+     * Existing children are loaded with a single projected query and compared in memory against the new state, so
+     * that only rows that really changed end up in the batch sent to the content provider.
+     * <p>
      * CALLER IS RESPONSIBLE FOR GRANTING RIGHT UPDATE OF INFORMATION, NOT THIS METHOD. HERE ONLY DATA CONSISTENCY
      * SHOULD BE GRANTED
      *
      * @param folder
      * @param updatedFiles
      * @param filesToRemove
+     * @return counts of inserted, updated, unchanged and removed children
      */
-    public void saveFolder(OCFile folder, List<OCFile> updatedFiles, Collection<OCFile> filesToRemove) {
+    public FolderDiff saveFolder(OCFile folder, List<OCFile> updatedFiles, Collection<OCFile> filesToRemove) {
         Log_OC.d(TAG, "Saving folder " + folder.getRemotePath() + " with " + updatedFiles.size()
             + " children and " + filesToRemove.size() + " files to remove");
 
+        FolderDiff diff = new FolderDiff();
         ArrayList<ContentProviderOperation> operations = new ArrayList<>(updatedFiles.size());
+        // inserted file for every operation, null for all other operations; used to map back new ids
+        List<OCFile> insertedFiles = new ArrayList<>(updatedFiles.size());
+
+        // load existing state of children in one go; files moved into this folder are looked up afterwards
+        Map<Long, ContentValues> existingById = new HashMap<>();
+        Map<String, ContentValues> existingByPath = new HashMap<>();
+        loadExistingFiles(ProviderTableMeta.FILE_PARENT,
+                          Collections.singletonList(String.valueOf(folder.getFileId())),
+                          existingById,
+                          existingByPath);
+        loadMissingFiles(updatedFiles, existingById, existingByPath);
 
         // prepare operations to insert or update files to save in the given folder
         for (OCFile ocFile : updatedFiles) {
             ContentValues contentValues = createContentValueForFile(ocFile, folder);
 
-            if (fileExists(ocFile.getFileId()) || fileExists(ocFile.getRemotePath())) {
-                long fileId;
-                if (ocFile.getFileId() != -1) {
-                    fileId = ocFile.getFileId();
-                } else {
-                    fileId = getFileByPath(ocFile.getRemotePath()).getFileId();
+            ContentValues existing = existingById.get(ocFile.getFileId());
+            if (existing == null) {
+                existing = existingByPath.get(ocFile.getRemotePath());
+            }
+
+            if (existing != null) {
+                long fileId = existing.getAsLong(ProviderTableMeta._ID);
+                ocFile.setFileId(fileId);
+
+                if (isSameContent(contentValues, existing)) {
+                    diff.addUnchanged();
+                    continue;
                 }
+
                 // updating an existing file
                 operations.add(ContentProviderOperation.newUpdate(ProviderTableMeta.CONTENT_URI)
                                    .withValues(contentValues)
                                    .withSelection(ProviderTableMeta._ID + " = ?", new String[]{String.valueOf(fileId)})
                                    .build());
+                insertedFiles.add(null);
+                diff.addUpdated();
             } else {
                 // adding a new file
                 operations.add(ContentProviderOperation.newInsert(ProviderTableMeta.CONTENT_URI)
                                    .withValues(contentValues)
                                    .build());
+                insertedFiles.add(ocFile);
+                diff.addInserted();
             }
         }
 
@@ -397,6 +589,7 @@ public class FileDataStorageManager {
         for (OCFile ocFile : filesToRemove) {
             if (ocFile.getParentId() == folder.getFileId()) {
                 whereArgs[1] = ocFile.getRemotePath();
+                diff.addRemoved();
                 if (ocFile.isFolder()) {
                     operations.add(ContentProviderOperation.newDelete(
                         ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_DIR, ocFile.getFileId()))
@@ -447,25 +640,148 @@ public class FileDataStorageManager {
 
         // update new id in file objects for insertions
         if (results != null) {
-            long newId;
-            Iterator<OCFile> fileIterator = updatedFiles.iterator();
-            OCFile ocFile;
-            for (ContentProviderResult result : results) {
-                if (fileIterator.hasNext()) {
-                    ocFile = fileIterator.next();
-                } else {
-                    ocFile = null;
+            for (int i = 0; i < insertedFiles.size() && i < results.length; i++) {
+                OCFile ocFile = insertedFiles.get(i);
+                if (ocFile != null && results[i].uri != null) {
+                    ocFile.setFileId(Long.parseLong(results[i].uri.getPathSegments().get(1)));
                 }
-                if (result.uri != null) {
-                    newId = Long.parseLong(result.uri.getPathSegments().get(1));
-                    if (ocFile != null) {
-                        ocFile.setFileId(newId);
-                    }
+            }
+        }
+
+        List<OCFile> removedFiles = new ArrayList<>(filesToRemove.size());
+        for (OCFile ocFile : filesToRemove) {
+            if (ocFile.getParentId() == folder.getFileId()) {
+                removedFiles.add(ocFile);
+            }
+        }
+        List<OCFile> savedFiles = new ArrayList<>(updatedFiles);
+        savedFiles.add(folder);
+        updateEncryptedFolders(savedFiles, removedFiles, results != null);
+
+        Log_OC.d(TAG, "Saved folder " + folder.getRemotePath() + ": " + diff);
+
+        return diff;
+    }
+
+    /**
+     * Looks up files that are not yet known as children of the folder, e.g. because they were moved into it, by
+     * their id or remote path.
+     */
+    private void loadMissingFiles(List<OCFile> files,
+                                  Map<Long, ContentValues> existingById,
+                                  Map<String, ContentValues> existingByPath) {
+        List<String> missingIds = new ArrayList<>();
+        List<String> missingPaths = new ArrayList<>();
+
+        for (OCFile ocFile : files) {
+            if (existingById.containsKey(ocFile.getFileId()) || existingByPath.containsKey(ocFile.getRemotePath())) {
+                continue;
+            }
+
+            if (ocFile.getFileId() != -1) {
+                missingIds.add(String.valueOf(ocFile.getFileId()));
+            }
+            missingPaths.add(ocFile.getRemotePath());
+        }
+
+        loadExistingFiles(ProviderTableMeta._ID, missingIds, existingById, existingByPath);
+        loadExistingFiles(ProviderTableMeta.FILE_PATH, missingPaths, existingById, existingByPath);
+    }
+
+    /**
+     * Loads the columns compared by {@link #saveFolder} of all files of the current account whose column matches one
+     * of the given values. Values are queried in chunks to stay below the SQLite limit of bound parameters.
+     */
+    private void loadExistingFiles(String column,
+                                   List<String> values,
+                                   Map<Long, ContentValues> existingById,
+                                   Map<String, ContentValues> existingByPath) {
+        for (int start = 0; start < values.size(); start += MAX_SELECTION_ARGS) {
+            List<String> chunk = values.subList(start, Math.min(values.size(), start + MAX_SELECTION_ARGS));
+
+            String[] selectionArgs = new String[chunk.size() + 1];
+            selectionArgs[0] = account.name;
+            for (int i = 0; i < chunk.size(); i++) {
+                selectionArgs[i + 1] = chunk.get(i);
+            }
+
+            String selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + " = ? AND " + column + " IN ("
+                + TextUtils.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+
+            Cursor cursor;
+            if (getContentResolver() != null) {
+                cursor = getContentResolver().query(ProviderTableMeta.CONTENT_URI,
+                                                    FOLDER_DIFF_PROJECTION,
+                                                    selection,
+                                                    selectionArgs,
+                                                    null);
+            } else {
+                try {
+                    cursor = getContentProviderClient().query(ProviderTableMeta.CONTENT_URI,
+                                                              FOLDER_DIFF_PROJECTION,
+                                                              selection,
+                                                              selectionArgs,
+                                                              null);
+                } catch (RemoteException e) {
+                    Log_OC.e(TAG, "Could not load existing files: " + e.getMessage(), e);
+                    cursor = null;
+                }
+            }
+
+            if (cursor != null) {
+                while (cursor.moveToNext()) {
+                    ContentValues row = new ContentValues();
+                    DatabaseUtils.cursorRowToContentValues(cursor, row);
+                    existingById.put(row.getAsLong(ProviderTableMeta._ID), row);
+                    existingByPath.put(row.getAsString(ProviderTableMeta.FILE_PATH), row);
+                }
+                cursor.close();
+            }
+        }
+    }
+
+    /**
+     * Resets the flag requesting a new thumbnail for the given files of the current account, with one update per
+     * chunk of ids instead of saving every file.
+     */
+    public void setThumbnailsUpdated(Collection<Long> fileIds) {
+        List<Long> ids = new ArrayList<>(fileIds);
+        ContentValues cv = new ContentValues();
+        cv.put(ProviderTableMeta.FILE_UPDATE_THUMBNAIL, false);
+
+        for (int start = 0; start < ids.size(); start += MAX_SELECTION_ARGS) {
+            List<Long> chunk = ids.subList(start, Math.min(ids.size(), start + MAX_SELECTION_ARGS));
+
+            String[] selectionArgs = new String[chunk.size() + 1];
+            selectionArgs[0] = account.name;
+            for (int i = 0; i < chunk.size(); i++) {
+                selectionArgs[i + 1] = String.valueOf(chunk.get(i));
+            }
+
+            String selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + " = ? AND " + ProviderTableMeta._ID + " IN ("
+                + TextUtils.join(",", Collections.nCopies(chunk.size(), "?")) + ")";
+
+            if (getContentResolver() != null) {
+                getContentResolver().update(ProviderTableMeta.CONTENT_URI, cv, selection, selectionArgs);
+            } else {
+                try {
+                    getContentProviderClient().update(ProviderTableMeta.CONTENT_URI, cv, selection, selectionArgs);
+                } catch (RemoteException e) {
+                    Log_OC.e(TAG, "Could not reset thumbnail flags: " + e.getMessage(), e);
                 }
             }
         }
     }
 
+    private static boolean isSameContent(ContentValues newValues, ContentValues existing) {
+        for (String key : newValues.keySet()) {
+            if (!existing.containsKey(key) || !FolderDiff.isSameValue(newValues.get(key), existing.getAsString(key))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private ContentValues createContentValueForFile(OCFile folder) {
         ContentValues cv = new ContentValues();
         cv.put(ProviderTableMeta.FILE_MODIFIED, folder.getModificationTimestamp());
@@ -495,7 +811,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, folder.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, folder.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, folder.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(folder.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, FileCursorMapper.GSON.toJson(folder.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, folder.getRichWorkspace());
 
         return cv;
@@ -534,7 +850,7 @@ public class FileDataStorageManager {
         cv.put(ProviderTableMeta.FILE_OWNER_ID, file.getOwnerId());
         cv.put(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME, file.getOwnerDisplayName());
         cv.put(ProviderTableMeta.FILE_NOTE, file.getNote());
-        cv.put(ProviderTableMeta.FILE_SHAREES, new Gson().toJson(file.getSharees()));
+        cv.put(ProviderTableMeta.FILE_SHAREES, FileCursorMapper.GSON.toJson(file.getSharees()));
         cv.put(ProviderTableMeta.FILE_RICH_WORKSPACE, file.getRichWorkspace());
 
         return cv;
@@ -621,6 +937,7 @@ public class FileDataStorageManager {
         } else {
             deleted = getContentResolver().delete(folderUri, where, whereArgs);
         }
+        ENCRYPTED_FOLDERS.remove(account.name, folder.getRemotePath());
         return deleted > 0;
     }
 
@@ -631,7 +948,7 @@ public class FileDataStorageManager {
 
         if (localFolder.exists()) {
             // stage 1: remove the local files already registered in the files database
-            List<OCFile> files = getFolderContent(folder.getFileId(), false);
+            List<OCFile> files = getFolderContent(folder.getFileId(), false, null);
             for (OCFile ocFile : files) {
                 if (ocFile.isFolder()) {
                     success &= removeLocalFolder(ocFile);
@@ -688,14 +1005,16 @@ public class FileDataStorageManager {
             }
 
             /// 1. get all the descendants of the moved element in a single QUERY
+            String[] pathArgs = PrefixSelection.args(ocFile.getRemotePath());
+            String[] descendantsArgs = new String[]{account.name, pathArgs[0], pathArgs[1]};
             Cursor cursor = null;
             if (getContentProviderClient() != null) {
                 try {
                     cursor = getContentProviderClient().query(
                         ProviderTableMeta.CONTENT_URI,
                         null,
-                        ProviderTableMeta.FILE_ACCOUNT_OWNER + AND + ProviderTableMeta.FILE_PATH + " LIKE ? ",
-                        new String[]{account.name, ocFile.getRemotePath() + "%"},
+                        ProviderTableMeta.FILE_ACCOUNT_OWNER + " = ? AND " + PrefixSelection.selection(ProviderTableMeta.FILE_PATH),
+                        descendantsArgs,
                         ProviderTableMeta.FILE_PATH + " ASC "
                     );
                 } catch (RemoteException e) {
@@ -706,8 +1025,8 @@ public class FileDataStorageManager {
                 cursor = getContentResolver().query(
                     ProviderTableMeta.CONTENT_URI,
                     null,
-                    ProviderTableMeta.FILE_ACCOUNT_OWNER + AND + ProviderTableMeta.FILE_PATH + " LIKE ? ",
-                    new String[]{account.name, ocFile.getRemotePath() + "%"},
+                    ProviderTableMeta.FILE_ACCOUNT_OWNER + " = ? AND " + PrefixSelection.selection(ProviderTableMeta.FILE_PATH),
+                    descendantsArgs,
                     ProviderTableMeta.FILE_PATH + " ASC "
                 );
             }
@@ -721,9 +1040,10 @@ public class FileDataStorageManager {
             if (cursor.moveToFirst()) {
                 int lengthOfOldPath = ocFile.getRemotePath().length();
                 int lengthOfOldStoragePath = defaultSavePath.length() + lengthOfOldPath;
+                FileCursorMapper mapper = new FileCursorMapper(cursor, account.name, true);
                 do {
                     ContentValues contentValues = new ContentValues(); // keep construction in the loop
-                    OCFile childFile = createFileInstance(cursor);
+                    OCFile childFile = mapper.map(cursor);
                     contentValues.put(
                         ProviderTableMeta.FILE_PATH,
                         targetPath + childFile.getRemotePath().substring(lengthOfOldPath)
@@ -765,8 +1085,12 @@ public class FileDataStorageManager {
                     getContentProviderClient().applyBatch(operations);
                 }
 
+                if (ocFile.isFolder()) {
+                    ENCRYPTED_FOLDERS.move(account.name, ocFile.getRemotePath(), targetPath);
+                }
             } catch (Exception e) {
                 Log_OC.e(TAG, "Fail to update " + ocFile.getFileId() + " and descendants in database", e);
+                ENCRYPTED_FOLDERS.clear(account.name);
             }
 
             /// 4. move in local file system
@@ -874,7 +1198,7 @@ public class FileDataStorageManager {
         }
     }
 
-    private List<OCFile> getFolderContent(long parentId, boolean onlyOnDevice) {
+    private List<OCFile> getFolderContent(long parentId, boolean onlyOnDevice, @Nullable String[] projection) {
         List<OCFile> folderContent = new ArrayList<>();
 
         Uri requestURI = Uri.withAppendedPath(ProviderTableMeta.CONTENT_URI_DIR, String.valueOf(parentId));
@@ -884,7 +1208,7 @@ public class FileDataStorageManager {
             try {
                 cursor = getContentProviderClient().query(
                     requestURI,
-                    null,
+                    projection,
                     ProviderTableMeta.FILE_PARENT + "=?",
                     new String[]{String.valueOf(parentId)},
                     null
@@ -896,7 +1220,7 @@ public class FileDataStorageManager {
         } else {
             cursor = getContentResolver().query(
                 requestURI,
-                null,
+                projection,
                 ProviderTableMeta.FILE_PARENT + "=?",
                 new String[]{String.valueOf(parentId)},
                 null
@@ -905,8 +1229,10 @@ public class FileDataStorageManager {
 
         if (cursor != null) {
             if (cursor.moveToFirst()) {
+                // local files are only looked up if needed to filter
+                FileCursorMapper mapper = new FileCursorMapper(cursor, account.name, onlyOnDevice);
                 do {
-                    OCFile child = createFileInstance(cursor);
+                    OCFile child = mapper.map(cursor);
                     if (!onlyOnDevice || child.existsOnDevice()) {
                         folderContent.add(child);
                     }
@@ -969,76 +1295,10 @@ public class FileDataStorageManager {
         return cursor;
     }
 
-    @Nullable
-    private OCFile createFileInstanceFromVirtual(Cursor cursor) {
-        long fileId = cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.VIRTUAL_OCFILE_ID));
-
-        return getFileById(fileId);
-    }
-
     private OCFile createFileInstance(Cursor cursor) {
         OCFile ocFile = null;
         if (cursor != null) {
-            ocFile = new OCFile(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_PATH)));
-            ocFile.setDecryptedRemotePath(getString(cursor, ProviderTableMeta.FILE_PATH_DECRYPTED));
-            ocFile.setFileId(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta._ID)));
-            ocFile.setParentId(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_PARENT)));
-            ocFile.setMimeType(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)));
-            ocFile.setStoragePath(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_STORAGE_PATH)));
-            if (ocFile.getStoragePath() == null) {
-                // try to find existing file and bind it with current account;
-                // with the current update of SynchronizeFolderOperation, this won't be
-                // necessary anymore after a full synchronization of the account
-                File file = new File(FileStorageUtils.getDefaultSavePathFor(account.name, ocFile));
-                if (file.exists()) {
-                    ocFile.setStoragePath(file.getAbsolutePath());
-                    ocFile.setLastSyncDateForData(file.lastModified());
-                }
-            }
-            ocFile.setFileLength(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_LENGTH)));
-            ocFile.setCreationTimestamp(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_CREATION)));
-            ocFile.setModificationTimestamp(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED)));
-            ocFile.setModificationTimestampAtLastSyncForData(cursor.getLong(
-                cursor.getColumnIndex(ProviderTableMeta.FILE_MODIFIED_AT_LAST_SYNC_FOR_DATA)));
-            ocFile.setLastSyncDateForProperties(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE)));
-            ocFile.setLastSyncDateForData(cursor.getLong(cursor.getColumnIndex(ProviderTableMeta.FILE_LAST_SYNC_DATE_FOR_DATA)));
-            ocFile.setEtag(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG)));
-            ocFile.setEtagOnServer(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_ON_SERVER)));
-            ocFile.setSharedViaLink(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_VIA_LINK)) == 1);
-            ocFile.setSharedWithSharee(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_SHARED_WITH_SHAREE)) == 1);
-            ocFile.setPermissions(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_PERMISSIONS)));
-            ocFile.setRemoteId(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_REMOTE_ID)));
-            ocFile.setUpdateThumbnailNeeded(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_UPDATE_THUMBNAIL)) == 1);
-            ocFile.setDownloading(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_IS_DOWNLOADING)) == 1);
-            ocFile.setEtagInConflict(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG_IN_CONFLICT)));
-            ocFile.setFavorite(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_FAVORITE)) == 1);
-            ocFile.setEncrypted(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_IS_ENCRYPTED)) == 1);
-//            if (ocFile.isEncrypted()) {
-//                ocFile.setFileName(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_NAME)));
-//            }
-            ocFile.setMountType(WebdavEntry.MountType.values()[cursor.getInt(
-                cursor.getColumnIndex(ProviderTableMeta.FILE_MOUNT_TYPE))]);
-            ocFile.setPreviewAvailable(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_HAS_PREVIEW)) == 1);
-            ocFile.setUnreadCommentsCount(cursor.getInt(cursor.getColumnIndex(ProviderTableMeta.FILE_UNREAD_COMMENTS_COUNT)));
-            ocFile.setOwnerId(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_ID)));
-            ocFile.setOwnerDisplayName(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_OWNER_DISPLAY_NAME)));
-            ocFile.setNote(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_NOTE)));
-            ocFile.setRichWorkspace(cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_RICH_WORKSPACE)));
-
-            String sharees = cursor.getString(cursor.getColumnIndex(ProviderTableMeta.FILE_SHAREES));
-
-            if (sharees == null || NULL_STRING.equals(sharees) || sharees.isEmpty()) {
-                ocFile.setSharees(new ArrayList<>());
-            } else {
-                try {
-                    ShareeUser[] shareesArray = new Gson().fromJson(sharees, ShareeUser[].class);
-
-                    ocFile.setSharees(new ArrayList<>(Arrays.asList(shareesArray)));
-                } catch (JsonSyntaxException e) {
-                    // ignore saved value due to api change
-                    ocFile.setSharees(new ArrayList<>());
-                }
-            }
+            ocFile = new FileCursorMapper(cursor, account.name, true).map(cursor);
         }
 
         return ocFile;
@@ -1872,14 +2132,16 @@ public class FileDataStorageManager {
                         ProviderTableMeta.FILE_ETAG_IN_CONFLICT + " IS NOT NULL AND " +
                             ProviderTableMeta.FILE_CONTENT_TYPE + " != 'DIR' AND " +
                             ProviderTableMeta.FILE_ACCOUNT_OWNER + AND +
-                            ProviderTableMeta.FILE_PATH + " LIKE ?";
+                            PrefixSelection.selection(ProviderTableMeta.FILE_PATH);
+                    String[] pathArgs = PrefixSelection.args(parentPath);
+                    String[] descendantsArgs = new String[]{account.name, pathArgs[0], pathArgs[1]};
                     Cursor descendentsInConflict = null;
                     if (getContentResolver() != null) {
                         descendentsInConflict = getContentResolver().query(
                             ProviderTableMeta.CONTENT_URI_FILE,
                             projection,
                             whereForDescencentsInConflict,
-                            new String[]{account.name, parentPath + "%"},
+                            descendantsArgs,
                             null
                         );
                     } else {
@@ -1888,7 +2150,7 @@ public class FileDataStorageManager {
                                 ProviderTableMeta.CONTENT_URI_FILE,
                                 projection,
                                 whereForDescencentsInConflict,
-                                new String[]{account.name, parentPath + "%"},
+                                descendantsArgs,
                                 null
                             );
                         } catch (RemoteException e) {
@@ -2270,38 +2532,32 @@ public class FileDataStorageManager {
 
     public List<OCFile> getVirtualFolderContent(VirtualFolderType type, boolean onlyImages) {
         List<OCFile> ocFiles = new ArrayList<>();
-        Uri req_uri = ProviderTableMeta.CONTENT_URI_VIRTUAL;
-        Cursor c;
+        Uri uri = ProviderTableMeta.CONTENT_URI_VIRTUAL_FILES;
+
+        String selection = ProviderTableMeta.VIRTUAL_TABLE_NAME + "." + ProviderTableMeta.VIRTUAL_TYPE + "=? AND " +
+            ProviderTableMeta.FILE_ACCOUNT_OWNER + "=?";
+        String[] selectionArgs = new String[]{String.valueOf(type), account.name};
 
+        Cursor c;
         if (getContentProviderClient() != null) {
             try {
-                c = getContentProviderClient().query(
-                    req_uri,
-                    null,
-                    ProviderTableMeta.VIRTUAL_TYPE + "=?",
-                    new String[]{String.valueOf(type)},
-                    null
-                );
+                c = getContentProviderClient().query(uri, null, selection, selectionArgs, null);
             } catch (RemoteException e) {
                 Log_OC.e(TAG, e.getMessage(), e);
                 return ocFiles;
             }
         } else {
-            c = getContentResolver().query(
-                req_uri,
-                null,
-                ProviderTableMeta.VIRTUAL_TYPE + "=?",
-                new String[]{String.valueOf(type)},
-                null
-            );
+            c = getContentResolver().query(uri, null, selection, selectionArgs, null);
         }
 
         if (c != null) {
             if (c.moveToFirst()) {
+                FileCursorMapper mapper = new FileCursorMapper(c, account.name, true);
                 do {
-                    OCFile child = createFileInstanceFromVirtual(c);
+                    OCFile child = mapper.map(c);
 
-                    if (child != null) {
+                    // also checks the extension, content types may be generic or upper case
+                    if (!onlyImages || MimeTypeUtil.isImage(child)) {
                         ocFiles.add(child);
                     }
                 } while (c.moveToNext());
@@ -2310,17 +2566,6 @@ public class FileDataStorageManager {
             c.close();
         }
 
-        if (onlyImages) {
-            List<OCFile> temp = new ArrayList<>();
-
-            for (OCFile file : ocFiles) {
-                if (MimeTypeUtil.isImage(file)) {
-                    temp.add(file);
-                }
-            }
-            ocFiles = temp;
-        }
-
         if (ocFiles.size() > 0) {
             Collections.sort(ocFiles);
         }
@@ -2342,6 +2587,82 @@ public class FileDataStorageManager {
                 Log_OC.e(TAG, "Exception in deleteAllFiles for account " + account.name + ": " + e.getMessage(), e);
             }
         }
+        ENCRYPTED_FOLDERS.clear(account.name);
+    }
+
+    /**
+     * Checks the folders containing a file for encryption without walking up the database, see
+     * {@link EncryptedFolderIndex}.
+     *
+     * @return true if any folder containing the file is encrypted; the file itself is not checked
+     */
+    public boolean hasEncryptedAncestor(OCFile ocFile) {
+        return ENCRYPTED_FOLDERS.hasEncryptedAncestor(account.name,
+                                                      ocFile.getRemotePath(),
+                                                      this::loadEncryptedFolderPaths,
+                                                      () -> walkEncryptedAncestors(ocFile));
+    }
+
+    /**
+     * Walks up the database from the parent of the file, one query per level.
+     *
+     * @return true if any folder containing the file is encrypted, or if a parent could not be found; a file under an
+     * encrypted folder must never be taken for a plain one
+     */
+    private boolean walkEncryptedAncestors(OCFile ocFile) {
+        OCFile file = ocFile;
+        while (!OCFile.ROOT_PATH.equals(file.getDecryptedRemotePath())) {
+            file = getFileById(file.getParentId());
+            if (file == null) {
+                Log_OC.e(TAG, "Could not check encryption of the parents of " + ocFile.getRemotePath());
+                return true;
+            }
+            if (file.isEncrypted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private List<String> loadEncryptedFolderPaths() {
+        String selection = ProviderTableMeta.FILE_ACCOUNT_OWNER + AND +
+            ProviderTableMeta.FILE_CONTENT_TYPE + AND +
+            ProviderTableMeta.FILE_IS_ENCRYPTED + " = 1";
+        String[] selectionArgs = new String[]{account.name, MimeType.DIRECTORY};
+        String[] projection = new String[]{ProviderTableMeta.FILE_PATH};
+
+        Cursor cursor;
+        if (getContentProviderClient() != null) {
+            try {
+                cursor = getContentProviderClient().query(ProviderTableMeta.CONTENT_URI,
+                                                          projection,
+                                                          selection,
+                                                          selectionArgs,
+                                                          null);
+            } catch (RemoteException e) {
+                Log_OC.e(TAG, "Could not load encrypted folders: " + e.getMessage(), e);
+                return null;
+            }
+        } else {
+            cursor = getContentResolver().query(ProviderTableMeta.CONTENT_URI,
+                                                projection,
+                                                selection,
+                                                selectionArgs,
+                                                null);
+        }
+
+        if (cursor == null) {
+            return null;
+        }
+
+        List<String> paths = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            paths.add(cursor.getString(0));
+        }
+        cursor.close();
+
+        return paths;
     }
 
     public List<OCFile> getAllFiles() {
@@ -2366,8 +2687,9 @@ public class FileDataStorageManager {
 
         if (cursor != null) {
             if (cursor.moveToFirst()) {
+                FileCursorMapper mapper = new FileCursorMapper(cursor, account.name, false);
                 do {
-                    folderContent.add(createFileInstance(cursor));
+                    folderContent.add(mapper.map(cursor));
                 } while (cursor.moveToNext());
             }
             cursor.close();
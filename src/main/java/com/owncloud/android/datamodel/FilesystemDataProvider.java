@@ -24,19 +24,25 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.net.Uri;
 
+import com.owncloud.android.db.PrefixSelection;
 import com.owncloud.android.db.ProviderMeta;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.utils.SyncedFolderUtils;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.zip.CRC32;
 
+import androidx.annotation.Nullable;
+
 /**
  * Provider for stored filesystem data.
  */
@@ -44,13 +50,27 @@ public class FilesystemDataProvider {
 
     static private final String TAG = FilesystemDataProvider.class.getSimpleName();
 
+    private static final int CHECKSUM_BUFFER_SIZE = 64 * 1024;
+    static final int FINGERPRINT_BLOCK_SIZE = 64 * 1024;
+    static final String FINGERPRINT_PREFIX = "fp";
+
     private ContentResolver contentResolver;
+    private boolean fastFingerprint;
 
     public FilesystemDataProvider(ContentResolver contentResolver) {
+        this(contentResolver, false);
+    }
+
+    /**
+     * @param fastFingerprint detect changed files by size and the first and last blocks only, instead of a checksum
+     *                        of the whole file
+     */
+    public FilesystemDataProvider(ContentResolver contentResolver, boolean fastFingerprint) {
         if (contentResolver == null) {
             throw new IllegalArgumentException("Cannot create an instance with a NULL contentResolver");
         }
         this.contentResolver = contentResolver;
+        this.fastFingerprint = fastFingerprint;
     }
 
     public int deleteAllEntriesForSyncedFolder(String syncedFolderId) {
@@ -77,16 +97,16 @@ public class FilesystemDataProvider {
     public Set<String> getFilesForUpload(String localPath, String syncedFolderId) {
         Set<String> localPathsToUpload = new HashSet<>();
 
-        String likeParam = localPath + "%";
+        String[] pathArgs = PrefixSelection.args(localPath);
 
         Cursor cursor = contentResolver.query(
                 ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
                 null,
-                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH + " LIKE ? and " +
+                PrefixSelection.selection(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH) + " and " +
                         ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " = ? and " +
                         ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD + " = ? and " +
                         ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER + " = ?",
-                new String[]{likeParam, syncedFolderId, "0", "0"},
+                new String[]{pathArgs[0], pathArgs[1], syncedFolderId, "0", "0"},
                 null);
 
         if (cursor != null) {
@@ -120,10 +140,52 @@ public class FilesystemDataProvider {
     public void storeOrUpdateFileValue(String localPath, long modifiedAt, boolean isFolder, SyncedFolder syncedFolder) {
 
         FileSystemDataSet data = getFilesystemDataSet(localPath, syncedFolder);
+        ContentValues cv = getChangedValues(data, localPath, modifiedAt, isFolder, syncedFolder);
+
+        if (cv == null) {
+            return;
+        }
+
+        if (data == null) {
+            Uri result = contentResolver.insert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM, cv);
+
+            if (result == null) {
+                Log_OC.v(TAG, "Failed to insert filesystem data with local path: " + localPath);
+            }
+        } else {
+            int result = contentResolver.update(
+                    ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
+                    cv,
+                    ProviderMeta.ProviderTableMeta._ID + "=?",
+                    new String[]{String.valueOf(data.getId())}
+            );
+
+            if (result == 0) {
+                Log_OC.v(TAG, "Failed to update filesystem data with local path: " + localPath);
+            }
+        }
+    }
 
-        int isFolderValue = 0;
-        if (isFolder) {
-            isFolderValue = 1;
+    /**
+     * @param preload load all stored rows of the synced folder at once, for scans of the whole folder
+     * @return indexer writing new and changed files of the synced folder in batches
+     */
+    public FilesystemIndexer createIndexer(SyncedFolder syncedFolder, boolean preload) {
+        return new FilesystemIndexer(this, contentResolver, syncedFolder, preload);
+    }
+
+    /**
+     * @param data stored row of the file, null if there is none
+     * @return values to insert or update, null if the stored row is up to date
+     */
+    @Nullable
+    ContentValues getChangedValues(@Nullable FileSystemDataSet data,
+                                   String localPath,
+                                   long modifiedAt,
+                                   boolean isFolder,
+                                   SyncedFolder syncedFolder) {
+        if (data != null && data.getModifiedAt() == modifiedAt) {
+            return null;
         }
 
         ContentValues cv = new ContentValues();
@@ -131,47 +193,62 @@ public class FilesystemDataProvider {
         cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED, modifiedAt);
 
         if (data == null) {
-
             cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH, localPath);
-            cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER, isFolderValue);
+            cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER, isFolder ? 1 : 0);
             cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, Boolean.FALSE);
             cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID, syncedFolder.getId());
 
-            long newCrc32 = getFileChecksum(localPath);
-            if (newCrc32 != -1) {
-                cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
-            }
-
-            Uri result = contentResolver.insert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM, cv);
-
-            if (result == null) {
-                Log_OC.v(TAG, "Failed to insert filesystem data with local path: " + localPath);
+            String checksum = getChecksum(localPath);
+            if (checksum != null) {
+                cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, checksum);
             }
         } else {
+            String checksum = getChecksum(localPath);
+            String storedChecksum = data.getCrc32();
+            if (storedChecksum == null || (checksum != null && !storedChecksum.equals(checksum))) {
+                cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, checksum);
 
-            if (data.getModifiedAt() != modifiedAt) {
-                long newCrc32 = getFileChecksum(localPath);
-                if (data.getCrc32() == null || (newCrc32 != -1 && !data.getCrc32().equals(Long.toString(newCrc32)))) {
-                    cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32, Long.toString(newCrc32));
+                // after switching between checksum and fingerprint the values cannot be compared
+                if (storedChecksum == null || isFingerprint(storedChecksum) == isFingerprint(checksum)) {
                     cv.put(ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD, 0);
                 }
             }
+        }
 
+        return cv;
+    }
 
-            int result = contentResolver.update(
-                    ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
-                    cv,
-                    ProviderMeta.ProviderTableMeta._ID + "=?",
-                    new String[]{String.valueOf(data.getId())}
-            );
+    /**
+     * @return all stored rows of the synced folder by local path
+     */
+    Map<String, FileSystemDataSet> getFilesystemDataSets(SyncedFolder syncedFolder) {
+        Map<String, FileSystemDataSet> dataSets = new HashMap<>();
 
-            if (result == 0) {
-                Log_OC.v(TAG, "Failed to update filesystem data with local path: " + localPath);
+        Cursor cursor = contentResolver.query(
+                ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
+                null,
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " = ?",
+                new String[]{Long.toString(syncedFolder.getId())},
+                null
+        );
+
+        if (cursor != null) {
+            while (cursor.moveToNext()) {
+                FileSystemDataSet dataSet = createFilesystemDataSet(cursor, syncedFolder);
+                if (dataSet != null) {
+                    dataSets.put(dataSet.getLocalPath(), dataSet);
+                }
             }
+            cursor.close();
+        } else {
+            Log_OC.e(TAG, "DB error restoring filesystem values.");
         }
+
+        return dataSets;
     }
 
-    private FileSystemDataSet getFilesystemDataSet(String localPathParam, SyncedFolder syncedFolder) {
+    @Nullable
+    FileSystemDataSet getFilesystemDataSet(String localPathParam, SyncedFolder syncedFolder) {
 
         Cursor cursor = contentResolver.query(
                 ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM,
@@ -185,33 +262,7 @@ public class FilesystemDataProvider {
         FileSystemDataSet dataSet = null;
         if (cursor != null) {
             if (cursor.moveToFirst()) {
-                int id = cursor.getInt(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta._ID));
-                String localPath = cursor.getString(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH));
-                long modifiedAt = cursor.getLong(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED));
-                boolean isFolder = false;
-                if (cursor.getInt(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER)) != 0) {
-                    isFolder = true;
-                }
-                long foundAt = cursor.getLong(cursor.getColumnIndex(ProviderMeta.
-                        ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY));
-
-                boolean isSentForUpload = false;
-                if (cursor.getInt(cursor.getColumnIndex(
-                        ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD)) != 0) {
-                    isSentForUpload = true;
-                }
-
-                String crc32 = cursor.getString(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32));
-
-                if (id == -1) {
-                    Log_OC.e(TAG, "Arbitrary value could not be created from cursor");
-                } else {
-                    dataSet = new FileSystemDataSet(id, localPath, modifiedAt, isFolder, isSentForUpload, foundAt,
-                            syncedFolder.getId(), crc32);
-                }
+                dataSet = createFilesystemDataSet(cursor, syncedFolder);
             }
             cursor.close();
         } else {
@@ -221,13 +272,90 @@ public class FilesystemDataProvider {
         return dataSet;
     }
 
-    private long getFileChecksum(String filepath) {
+    @Nullable
+    private FileSystemDataSet createFilesystemDataSet(Cursor cursor, SyncedFolder syncedFolder) {
+        int id = cursor.getInt(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta._ID));
+        String localPath = cursor.getString(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH));
+        long modifiedAt = cursor.getLong(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_MODIFIED));
+        boolean isFolder = false;
+        if (cursor.getInt(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_IS_FOLDER)) != 0) {
+            isFolder = true;
+        }
+        long foundAt = cursor.getLong(cursor.getColumnIndex(ProviderMeta.
+                ProviderTableMeta.FILESYSTEM_FILE_FOUND_RECENTLY));
+
+        boolean isSentForUpload = false;
+        if (cursor.getInt(cursor.getColumnIndex(
+                ProviderMeta.ProviderTableMeta.FILESYSTEM_FILE_SENT_FOR_UPLOAD)) != 0) {
+            isSentForUpload = true;
+        }
+
+        String crc32 = cursor.getString(cursor.getColumnIndex(ProviderMeta.ProviderTableMeta.FILESYSTEM_CRC32));
+
+        if (id == -1) {
+            Log_OC.e(TAG, "Arbitrary value could not be created from cursor");
+            return null;
+        }
 
-        try (InputStream inputStream = new BufferedInputStream(new FileInputStream(filepath))){
+        return new FileSystemDataSet(id, localPath, modifiedAt, isFolder, isSentForUpload, foundAt,
+                syncedFolder.getId(), crc32);
+    }
+
+    /**
+     * @return checksum or fingerprint of the file, depending on the mode, null if the file cannot be read
+     */
+    private String getChecksum(String localPath) {
+        if (fastFingerprint) {
+            long fingerprint = getFileFingerprint(localPath);
+            return fingerprint == -1 ? null : FINGERPRINT_PREFIX + fingerprint;
+        } else {
+            long crc32 = getFileChecksum(localPath);
+            return crc32 == -1 ? null : Long.toString(crc32);
+        }
+    }
+
+    static boolean isFingerprint(String checksum) {
+        return checksum != null && checksum.startsWith(FINGERPRINT_PREFIX);
+    }
+
+    /**
+     * @return CRC32 of the whole file, -1 if it cannot be read
+     */
+    static long getFileChecksum(String filepath) {
+        try (InputStream inputStream = new FileInputStream(filepath)) {
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[CHECKSUM_BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+
+            return crc.getValue();
+
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Fingerprint reading at most two blocks of the file: CRC32 over its size, first and last block. Changes in the
+     * middle of a file of unchanged size are missed; the modification time is already compared by the caller.
+     *
+     * @return fingerprint, -1 if the file cannot be read
+     */
+    static long getFileFingerprint(String filepath) {
+        try (RandomAccessFile file = new RandomAccessFile(filepath, "r")) {
+            long length = file.length();
             CRC32 crc = new CRC32();
-            int cnt;
-            while ((cnt = inputStream.read()) != -1) {
-                crc.update(cnt);
+            crc.update(ByteBuffer.allocate(Long.SIZE / Byte.SIZE).putLong(length).array());
+
+            byte[] buffer = new byte[FINGERPRINT_BLOCK_SIZE];
+            updateChecksum(crc, file, 0, buffer);
+            if (length > FINGERPRINT_BLOCK_SIZE) {
+                updateChecksum(crc, file, Math.max(FINGERPRINT_BLOCK_SIZE, length - FINGERPRINT_BLOCK_SIZE), buffer);
             }
 
             return crc.getValue();
@@ -236,4 +364,15 @@ public class FilesystemDataProvider {
             return -1;
         }
     }
+
+    private static void updateChecksum(CRC32 crc, RandomAccessFile file, long position, byte[] buffer)
+        throws IOException {
+        file.seek(position);
+        int total = 0;
+        int read;
+        while (total < buffer.length && (read = file.read(buffer, total, buffer.length - total)) != -1) {
+            total += read;
+        }
+        crc.update(buffer, 0, total);
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+import android.os.RemoteException;
+
+import com.owncloud.android.MainApp;
+import com.owncloud.android.db.ProviderMeta;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Indexes the files of a synced folder for auto upload. Only new and changed files are written, in batches of
+ * {@link #BATCH_SIZE} rows per transaction.
+ */
+public class FilesystemIndexer {
+    private static final String TAG = FilesystemIndexer.class.getSimpleName();
+
+    static final int BATCH_SIZE = 300;
+
+    private final FilesystemDataProvider filesystemDataProvider;
+    private final ContentResolver contentResolver;
+    private final SyncedFolder syncedFolder;
+    @Nullable private final Map<String, FileSystemDataSet> storedFiles;
+    private final Set<String> insertedPaths = new HashSet<>();
+    private final ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+    private int scannedCount;
+    private int changedCount;
+    private int newCount;
+    private boolean failed;
+
+    FilesystemIndexer(FilesystemDataProvider filesystemDataProvider,
+                      ContentResolver contentResolver,
+                      SyncedFolder syncedFolder,
+                      boolean preload) {
+        this.filesystemDataProvider = filesystemDataProvider;
+        this.contentResolver = contentResolver;
+        this.syncedFolder = syncedFolder;
+        this.storedFiles = preload ? filesystemDataProvider.getFilesystemDataSets(syncedFolder) : null;
+    }
+
+    public void index(String localPath, long modifiedAt, boolean isFolder) {
+        scannedCount++;
+
+        if (insertedPaths.contains(localPath)) {
+            // found twice, e.g. via internal and external media store, or not yet written
+            return;
+        }
+
+        FileSystemDataSet data;
+        if (storedFiles == null) {
+            data = filesystemDataProvider.getFilesystemDataSet(localPath, syncedFolder);
+        } else {
+            data = storedFiles.get(localPath);
+        }
+
+        ContentValues values = filesystemDataProvider.getChangedValues(data,
+                                                                       localPath,
+                                                                       modifiedAt,
+                                                                       isFolder,
+                                                                       syncedFolder);
+        if (values == null) {
+            return;
+        }
+
+        if (data == null) {
+            newCount++;
+            insertedPaths.add(localPath);
+            operations.add(ContentProviderOperation.newInsert(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM)
+                               .withValues(values)
+                               .build());
+        } else {
+            changedCount++;
+            operations.add(ContentProviderOperation.newUpdate(ProviderMeta.ProviderTableMeta.CONTENT_URI_FILESYSTEM)
+                               .withValues(values)
+                               .withSelection(ProviderMeta.ProviderTableMeta._ID + "=?",
+                                              new String[]{String.valueOf(data.getId())})
+                               .build());
+        }
+
+        if (operations.size() >= BATCH_SIZE) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the remaining changes, to be called once the folder has been scanned.
+     *
+     * @return true if all changes have been stored, false if a batch failed
+     */
+    public boolean finish() {
+        boolean stored = flush();
+
+        Log_OC.d(TAG, "Indexed synced folder " + syncedFolder.getId() + ": " + scannedCount + " scanned, "
+            + changedCount + " changed, " + newCount + " new" + (stored ? "" : ", not all stored"));
+
+        return stored;
+    }
+
+    public int getScannedCount() {
+        return scannedCount;
+    }
+
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    public int getNewCount() {
+        return newCount;
+    }
+
+    /**
+     * Writes the pending changes.
+     *
+     * @return true if all changes indexed so far have been stored, false if this or an earlier batch failed
+     */
+    public boolean flush() {
+        if (!operations.isEmpty()) {
+            try {
+                contentResolver.applyBatch(MainApp.getAuthority(), operations);
+            } catch (OperationApplicationException | RemoteException e) {
+                Log_OC.e(TAG, "Failed to store filesystem data of synced folder " + syncedFolder.getId(), e);
+                failed = true;
+            }
+
+            operations.clear();
+        }
+
+        return !failed;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import java.util.Locale;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Outcome of storing the content of a folder via {@link FileDataStorageManager#saveFolder}: how many children were
+ * inserted, updated, left untouched because nothing changed, or removed.
+ */
+public class FolderDiff {
+    private int inserted;
+    private int updated;
+    private int unchanged;
+    private int removed;
+
+    void addInserted() {
+        inserted++;
+    }
+
+    void addUpdated() {
+        updated++;
+    }
+
+    void addUnchanged() {
+        unchanged++;
+    }
+
+    void addRemoved() {
+        removed++;
+    }
+
+    public int getInserted() {
+        return inserted;
+    }
+
+    public int getUpdated() {
+        return updated;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return number of children that caused a write to the database
+     */
+    public int getChanged() {
+        return inserted + updated + removed;
+    }
+
+    /**
+     * Compares a value about to be written with the value stored in the database, as read back as string from a
+     * cursor. Booleans are stored by SQLite as 0/1 and numbers are read back in their decimal representation.
+     *
+     * @param newValue    value put into the {@link android.content.ContentValues} of the pending write
+     * @param storedValue value currently stored in the database
+     * @return true if writing newValue would not change the stored row
+     */
+    static boolean isSameValue(@Nullable Object newValue, @Nullable String storedValue) {
+        if (newValue == null) {
+            return storedValue == null;
+        }
+
+        if (storedValue == null) {
+            return false;
+        }
+
+        if (newValue instanceof Boolean) {
+            return ((Boolean) newValue ? "1" : "0").equals(storedValue);
+        }
+
+        return newValue.toString().equals(storedValue);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                             "inserted: %d, updated: %d, unchanged: %d, removed: %d",
+                             inserted,
+                             updated,
+                             unchanged,
+                             removed);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Runs at most one load per key at a time. Concurrent requests for the same key, e.g. two list items showing the
+ * thumbnail of the same file, wait for the running load and share its result. If the request that runs the load is
+ * cancelled, waiting requests load again on their own instead of sharing its missing result.
+ */
+final class InFlightLoads<T> {
+
+    interface Loader<T> {
+        @Nullable
+        T load();
+    }
+
+    interface Cancellation {
+        boolean isCancelled();
+    }
+
+    private static final Cancellation NEVER_CANCELLED = () -> false;
+
+    private static final class Load<T> {
+        final FutureTask<T> task;
+        final Cancellation cancellation;
+
+        Load(FutureTask<T> task, Cancellation cancellation) {
+            this.task = task;
+            this.cancellation = cancellation;
+        }
+    }
+
+    private final Map<String, Load<T>> running = new HashMap<>();
+
+    /**
+     * Loads on the calling thread, unless a load of the key is already running on another thread.
+     *
+     * @return loaded value, null if the load returned null or the waiting thread was interrupted
+     */
+    @Nullable
+    T load(String key, Loader<T> loader) {
+        return load(key, loader, NEVER_CANCELLED);
+    }
+
+    /**
+     * @param cancellation tells if the request has been cancelled, e.g. because its view has been recycled
+     * @see #load(String, Loader)
+     */
+    @Nullable
+    T load(String key, Loader<T> loader, Cancellation cancellation) {
+        while (true) {
+            Load<T> load;
+            boolean owner = false;
+
+            synchronized (running) {
+                load = running.get(key);
+                if (load == null) {
+                    load = new Load<>(new FutureTask<>(loader::load), cancellation);
+                    running.put(key, load);
+                    owner = true;
+                }
+            }
+
+            if (owner) {
+                try {
+                    load.task.run();
+                } finally {
+                    synchronized (running) {
+                        running.remove(key);
+                    }
+                }
+            }
+
+            T result;
+            try {
+                result = load.task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (CancellationException e) {
+                return null;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                // loaders do not throw checked exceptions
+                throw (RuntimeException) cause;
+            }
+
+            if (owner || result != null || !load.cancellation.isCancelled() || cancellation.isCancelled()) {
+                return result;
+            }
+            // the load was given up together with the request running it, not because there is nothing to load
+        }
+    }
+
+    /**
+     * @return number of keys currently loading
+     */
+    int size() {
+        synchronized (running) {
+            return running.size();
+        }
+    }
+}
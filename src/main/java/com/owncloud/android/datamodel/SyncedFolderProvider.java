@@ -30,6 +30,7 @@ import android.net.Uri;
 import com.nextcloud.client.core.Clock;
 import com.nextcloud.client.preferences.AppPreferences;
 import com.nextcloud.client.preferences.AppPreferencesImpl;
+import com.owncloud.android.db.PrefixSelection;
 import com.owncloud.android.db.ProviderMeta;
 import com.owncloud.android.lib.common.utils.Log_OC;
 
@@ -189,12 +190,13 @@ public class SyncedFolderProvider extends Observable {
 
     public SyncedFolder findByLocalPathAndAccount(String localPath, Account account) {
         SyncedFolder result = null;
+        String[] pathArgs = PrefixSelection.args(localPath);
         Cursor cursor = mContentResolver.query(
             ProviderMeta.ProviderTableMeta.CONTENT_URI_SYNCED_FOLDERS,
             null,
-            ProviderMeta.ProviderTableMeta.SYNCED_FOLDER_LOCAL_PATH + " LIKE ? AND " +
+            PrefixSelection.selection(ProviderMeta.ProviderTableMeta.SYNCED_FOLDER_LOCAL_PATH) + " AND " +
                 ProviderMeta.ProviderTableMeta.SYNCED_FOLDER_ACCOUNT + " =? ",
-            new String[]{localPath + "%", account.name},
+            new String[]{pathArgs[0], pathArgs[1], account.name},
             null
         );
 
@@ -0,0 +1,79 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.graphics.Bitmap;
+
+import androidx.annotation.NonNull;
+import androidx.collection.LruCache;
+
+/**
+ * In-memory tier in front of the thumbnail disk cache, keyed by the same keys. Sizes are counted in bytes.
+ * <p>
+ * Evicted bitmaps are not reused for decoding, as image views may still show them.
+ */
+class ThumbnailMemoryCache extends LruCache<String, Bitmap> {
+    private final int maxEntrySize;
+
+    /**
+     * @param maxSize maximum size of all cached bitmaps in bytes; single bitmaps larger than an eighth of it, e.g.
+     *                resized images at screen size, are not cached at all
+     */
+    ThumbnailMemoryCache(int maxSize) {
+        super(maxSize);
+        maxEntrySize = maxSize / 8;
+    }
+
+    /**
+     * @return cache size for the given maximum heap size, an eighth of the heap
+     */
+    static int sizeForHeap(long maxHeap) {
+        return (int) Math.min(Integer.MAX_VALUE, maxHeap / 8);
+    }
+
+    /**
+     * Caches the bitmap if it is small enough, otherwise drops any older entry of the key.
+     */
+    void putBitmap(@NonNull String key, @NonNull Bitmap bitmap) {
+        if (bitmap.getAllocationByteCount() > maxEntrySize) {
+            remove(key);
+        } else {
+            put(key, bitmap);
+        }
+    }
+
+    /**
+     * @return true if the very same bitmap instance is cached
+     */
+    boolean containsBitmap(@NonNull Bitmap bitmap) {
+        for (Bitmap cached : snapshot().values()) {
+            if (cached == bitmap) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    protected int sizeOf(@NonNull String key, @NonNull Bitmap value) {
+        return value.getAllocationByteCount();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.content.Context;
+
+import com.nextcloud.client.account.User;
+import com.nextcloud.client.network.Connectivity;
+import com.nextcloud.client.network.ConnectivityService;
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.OwnCloudClientManagerFactory;
+import com.owncloud.android.lib.common.utils.Log_OC;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads the thumbnails of a folder shown as grid before their items are bound, so that scrolling through the
+ * first pages does not wait for one request per item.
+ * <p>
+ * Thumbnails are fetched through the client of the account, reusing its connections, by at most
+ * {@link #THREADS_PER_HOST} threads per server, and only stored in the disk cache, so that they do not evict the
+ * thumbnails shown from the memory cache. Nothing is fetched on metered networks. Opening another folder drops the
+ * prefetches still waiting for the previous one.
+ */
+public final class ThumbnailPrefetcher {
+    private static final String TAG = ThumbnailPrefetcher.class.getSimpleName();
+
+    /**
+     * Items prefetched per folder, about the first screen and the next page of a grid.
+     */
+    static final int PREFETCH_ITEMS = 60;
+    private static final int THREADS_PER_HOST = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final Map<String, ThreadPoolExecutor> HOST_EXECUTORS = new HashMap<>();
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+    private static final Stats STATS = new Stats();
+
+    private final ConnectivityService connectivityService;
+    private final Context context;
+
+    public ThumbnailPrefetcher(ConnectivityService connectivityService, Context context) {
+        this.connectivityService = connectivityService;
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Enqueues the thumbnails of the first items of a folder, replacing the prefetches of the previous folder.
+     *
+     * @param files content of the folder in the order shown
+     */
+    public void prefetch(User user, List<OCFile> files) {
+        int generation = GENERATION.incrementAndGet();
+
+        Connectivity connectivity = connectivityService.getConnectivity();
+        if (!connectivity.isConnected() || connectivity.isMetered()) {
+            return;
+        }
+
+        List<OCFile> candidates = selectCandidates(files, PREFETCH_ITEMS);
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        ThreadPoolExecutor executor = getExecutor(user.getServer().getUri().getHost());
+        for (OCFile file : candidates) {
+            executor.execute(() -> {
+                if (generation != GENERATION.get()) {
+                    return;
+                }
+
+                try {
+                    OwnCloudClient client = OwnCloudClientManagerFactory.getDefaultSingleton()
+                        .getClientFor(user.toOwnCloudAccount(), context);
+                    if (ThumbnailsCacheManager.prefetchThumbnail(file, client)) {
+                        STATS.onPrefetched(ThumbnailsCacheManager.PREFIX_THUMBNAIL + file.getRemoteId());
+                    }
+                } catch (Exception e) {
+                    Log_OC.d(TAG, "Could not prefetch thumbnail: " + e.getMessage(), e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops the prefetches still waiting, e.g. when another folder is opened.
+     */
+    public void cancel() {
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * Records that a thumbnail is shown, counting a hit if it has been prefetched.
+     */
+    public static void onThumbnailShown(String imageKey) {
+        STATS.onShown(imageKey);
+    }
+
+    public static int getPrefetchedCount() {
+        return STATS.getPrefetched();
+    }
+
+    public static int getHitCount() {
+        return STATS.getHits();
+    }
+
+    /**
+     * @return files of the list that have a thumbnail, at most max
+     */
+    static List<OCFile> selectCandidates(List<OCFile> files, int max) {
+        List<OCFile> candidates = new ArrayList<>();
+        for (OCFile file : files) {
+            if (candidates.size() >= max) {
+                break;
+            }
+            if (!file.isFolder() && file.isPreviewAvailable()) {
+                candidates.add(file);
+            }
+        }
+        return candidates;
+    }
+
+    private static ThreadPoolExecutor getExecutor(String host) {
+        synchronized (HOST_EXECUTORS) {
+            ThreadPoolExecutor executor = HOST_EXECUTORS.get(host);
+            if (executor == null) {
+                executor = new ThreadPoolExecutor(THREADS_PER_HOST,
+                                                  THREADS_PER_HOST,
+                                                  KEEP_ALIVE_SECONDS,
+                                                  TimeUnit.SECONDS,
+                                                  new LinkedBlockingQueue<>());
+                executor.allowCoreThreadTimeOut(true);
+                HOST_EXECUTORS.put(host, executor);
+            }
+            return executor;
+        }
+    }
+
+    /**
+     * Counts prefetched thumbnails and how many of them have been shown afterwards.
+     */
+    static class Stats {
+        private static final int MAX_TRACKED_KEYS = 1000;
+
+        private final Map<String, Boolean> unshownKeys = new LinkedHashMap<String, Boolean>() {
+            private static final long serialVersionUID = -2861407395470312417L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_TRACKED_KEYS;
+            }
+        };
+        private int prefetched;
+        private int hits;
+
+        synchronized void onPrefetched(String imageKey) {
+            if (unshownKeys.put(imageKey, Boolean.TRUE) == null) {
+                prefetched++;
+            }
+        }
+
+        synchronized void onShown(String imageKey) {
+            if (unshownKeys.remove(imageKey) != null) {
+                hits++;
+            }
+        }
+
+        synchronized int getPrefetched() {
+            return prefetched;
+        }
+
+        synchronized int getHits() {
+            return hits;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects files whose thumbnail has been regenerated and resets their {@link OCFile#isUpdateThumbnailNeeded()} flag
+ * with one database update per account after a burst of thumbnail generations, instead of saving every file.
+ */
+final class ThumbnailUpdateBatch {
+    static final long DELAY_MS = 500;
+
+    private final ScheduledExecutorService executor;
+    private final Map<String, Pending> pending = new HashMap<>();
+    private boolean scheduled;
+
+    private static class Pending {
+        FileDataStorageManager storageManager;
+        final List<Long> fileIds = new ArrayList<>();
+    }
+
+    ThumbnailUpdateBatch(ScheduledExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Marks the thumbnail of the file as updated, in memory right away and in the database with the next batch.
+     */
+    synchronized void add(FileDataStorageManager storageManager, OCFile file) {
+        file.setUpdateThumbnailNeeded(false);
+
+        String accountName = storageManager.getAccount().name;
+        Pending accountPending = pending.get(accountName);
+        if (accountPending == null) {
+            accountPending = new Pending();
+            pending.put(accountName, accountPending);
+        }
+        accountPending.storageManager = storageManager;
+        accountPending.fileIds.add(file.getFileId());
+
+        if (!scheduled) {
+            scheduled = true;
+            executor.schedule(this::flush, DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void flush() {
+        List<Pending> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(pending.values());
+            pending.clear();
+            scheduled = false;
+        }
+
+        for (Pending accountPending : batch) {
+            accountPending.storageManager.setThumbnailsUpdated(accountPending.fileIds);
+        }
+    }
+}
@@ -77,8 +77,14 @@ import java.lang.ref.WeakReference;
 import java.net.URLEncoder;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.res.ResourcesCompat;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
@@ -91,6 +97,8 @@ public final class ThumbnailsCacheManager {
 
     public static final String PREFIX_RESIZED_IMAGE = "r";
     public static final String PREFIX_THUMBNAIL = "t";
+    // memory cache only, followed by the key of the thumbnail without overlay
+    private static final String PREFIX_VIDEO_OVERLAY = "v";
 
     private static final String TAG = ThumbnailsCacheManager.class.getSimpleName();
     private static final String PNG_MIMETYPE = "image/png";
@@ -100,13 +108,36 @@ public final class ThumbnailsCacheManager {
     private static final String ETAG = "ETag";
 
     private static final Object mThumbnailsDiskCacheLock = new Object();
-    private static DiskLruImageCache mThumbnailCache;
-    private static boolean mThumbnailCacheStarting = true;
+    private static volatile DiskLruImageCache mThumbnailCache;
+    private static volatile boolean mThumbnailCacheStarting = true;
 
     private static final int DISK_CACHE_SIZE = 1024 * 1024 * 200; // 200MB
+    private static final ThumbnailMemoryCache mThumbnailMemoryCache =
+        new ThumbnailMemoryCache(ThumbnailMemoryCache.sizeForHeap(Runtime.getRuntime().maxMemory()));
     private static final CompressFormat mCompressFormat = CompressFormat.JPEG;
     private static final int mCompressQuality = 70;
     private static OwnCloudClient mClient;
+    private static Bitmap mPlayButton;
+
+    /**
+     * Thumbnails shown in lists are loaded by a few threads, so that a slow download does not hold back the disk
+     * cache lookups of other files nor occupy the serial executor shared by all AsyncTasks. Waiting requests are
+     * taken newest first: the newest request belongs to the item just scrolled into view, while requests of items
+     * scrolled away are cancelled when their view is recycled.
+     */
+    private static final int THUMBNAIL_THREADS = 3;
+    public static final Executor THUMBNAIL_EXECUTOR = new ThreadPoolExecutor(THUMBNAIL_THREADS,
+                                                                             THUMBNAIL_THREADS,
+                                                                             0L,
+                                                                             TimeUnit.MILLISECONDS,
+                                                                             new LifoQueue());
+
+    /**
+     * Files shown twice, e.g. in the list and in a gallery row, share one thumbnail generation.
+     */
+    private static final InFlightLoads<Bitmap> THUMBNAILS_IN_FLIGHT = new InFlightLoads<>();
+    private static final ThumbnailUpdateBatch THUMBNAIL_UPDATES =
+        new ThumbnailUpdateBatch(Executors.newSingleThreadScheduledExecutor());
 
     public static final Bitmap mDefaultImg = BitmapFactory.decodeResource(MainApp.getAppContext().getResources(),
             R.drawable.file_image);
@@ -117,6 +148,18 @@ public final class ThumbnailsCacheManager {
     private ThumbnailsCacheManager() {
     }
 
+    /**
+     * Queue of a thread pool handing out the most recently added task first.
+     */
+    private static class LifoQueue extends LinkedBlockingDeque<Runnable> {
+        private static final long serialVersionUID = 8736915208386713573L;
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            return offerFirst(runnable);
+        }
+    }
+
     public static class InitDiskCacheTask extends AsyncTask<File, Void, Void> {
         @Override
         protected Void doInBackground(File... params) {
@@ -206,49 +249,118 @@ public final class ThumbnailsCacheManager {
     }
 
     public static void addBitmapToCache(String key, Bitmap bitmap) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            if (mThumbnailCache != null) {
-                mThumbnailCache.put(key, bitmap);
+        mThumbnailMemoryCache.remove(PREFIX_VIDEO_OVERLAY + key);
+        if (bitmap != null) {
+            mThumbnailMemoryCache.putBitmap(key, bitmap);
+        }
+
+        DiskLruImageCache diskCache = mThumbnailCache;
+        if (diskCache != null) {
+            diskCache.put(key, bitmap);
+        }
+    }
+
+    /**
+     * Stores the bitmap in the disk cache only, dropping an outdated entry of the key from the memory cache.
+     */
+    private static void addBitmapToDiskCache(String key, Bitmap bitmap) {
+        removeBitmapFromMemoryCache(key);
+
+        DiskLruImageCache diskCache = getDiskCache();
+        if (diskCache != null) {
+            diskCache.put(key, bitmap);
+        }
+    }
+
+    /**
+     * Waits while the disk cache is started from background thread. The lock is only needed during initialization,
+     * afterwards the disk cache handles concurrent access on its own.
+     *
+     * @return disk cache, null if it could not be opened
+     */
+    @Nullable
+    private static DiskLruImageCache getDiskCache() {
+        if (mThumbnailCacheStarting) {
+            synchronized (mThumbnailsDiskCacheLock) {
+                while (mThumbnailCacheStarting) {
+                    try {
+                        mThumbnailsDiskCacheLock.wait();
+                    } catch (InterruptedException e) {
+                        Log_OC.e(TAG, "Wait in mThumbnailsDiskCacheLock was interrupted", e);
+                    }
+                }
             }
         }
+        return mThumbnailCache;
     }
 
     public static boolean containsBitmap(String key) {
-        return mThumbnailCache.containsKey(key);
+        DiskLruImageCache diskCache = mThumbnailCache;
+        return diskCache != null && diskCache.containsKey(key);
+    }
+
+    /**
+     * Drops the bitmap from the memory cache, e.g. if {@link OCFile#isUpdateThumbnailNeeded()} is set. The disk cache
+     * is left untouched, its entry is replaced once the new thumbnail is generated.
+     */
+    public static void removeBitmapFromMemoryCache(String key) {
+        mThumbnailMemoryCache.remove(key);
+        mThumbnailMemoryCache.remove(PREFIX_VIDEO_OVERLAY + key);
+    }
+
+    /**
+     * @return true if the bitmap is held by the memory cache and must not be recycled
+     */
+    public static boolean isBitmapInMemoryCache(Bitmap bitmap) {
+        return mThumbnailMemoryCache.containsBitmap(bitmap);
+    }
+
+    public static int getMemoryCacheHitCount() {
+        return mThumbnailMemoryCache.hitCount();
+    }
+
+    public static int getMemoryCacheMissCount() {
+        return mThumbnailMemoryCache.missCount();
+    }
+
+    /**
+     * Only checks the memory cache, so it can be called while binding list items.
+     *
+     * @return cached bitmap, null if not in memory
+     */
+    @Nullable
+    public static Bitmap getBitmapFromMemoryCache(String key) {
+        return mThumbnailMemoryCache.get(key);
     }
 
     public static Bitmap getScaledBitmapFromDiskCache(String key, int width, int height) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            // Wait while disk cache is started from background thread
-            while (mThumbnailCacheStarting) {
-                try {
-                    mThumbnailsDiskCacheLock.wait();
-                } catch (InterruptedException e) {
-                    Log_OC.e(TAG, "Wait in mThumbnailsDiskCacheLock was interrupted", e);
-                }
-            }
-            if (mThumbnailCache != null) {
-                return mThumbnailCache.getScaledBitmap(key, width, height);
-            }
+        Bitmap cached = mThumbnailMemoryCache.get(key);
+        if (cached != null && cached.getWidth() <= width && cached.getHeight() <= height) {
+            return cached;
+        }
+
+        DiskLruImageCache diskCache = getDiskCache();
+        if (diskCache != null) {
+            return diskCache.getScaledBitmap(key, width, height);
         }
         return null;
     }
 
     public static Bitmap getBitmapFromDiskCache(String key) {
-        synchronized (mThumbnailsDiskCacheLock) {
-            // Wait while disk cache is started from background thread
-            while (mThumbnailCacheStarting) {
-                try {
-                    mThumbnailsDiskCacheLock.wait();
-                } catch (InterruptedException e) {
-                    Log_OC.e(TAG, "Wait in mThumbnailsDiskCacheLock was interrupted", e);
-                }
-            }
-            if (mThumbnailCache != null) {
-                return mThumbnailCache.getBitmap(key);
-            }
+        Bitmap bitmap = mThumbnailMemoryCache.get(key);
+        if (bitmap != null) {
+            return bitmap;
         }
-        return null;
+
+        DiskLruImageCache diskCache = getDiskCache();
+        if (diskCache != null) {
+            bitmap = diskCache.getBitmap(key);
+        }
+
+        if (bitmap != null) {
+            mThumbnailMemoryCache.putBitmap(key, bitmap);
+        }
+        return bitmap;
     }
 
     public static class ResizedImageGenerationTask extends AsyncTask<Object, Void, Bitmap> {
@@ -313,6 +425,10 @@ public final class ThumbnailsCacheManager {
 
             String imageKey = PREFIX_RESIZED_IMAGE + file.getRemoteId();
 
+            if (file.isUpdateThumbnailNeeded()) {
+                removeBitmapFromMemoryCache(imageKey);
+            }
+
             // Check disk cache in background thread
             thumbnail = getBitmapFromDiskCache(imageKey);
 
@@ -333,8 +449,7 @@ public final class ThumbnailsCacheManager {
 
                         thumbnail = addThumbnailToCache(imageKey, bitmap, file.getStoragePath(), pxW, pxH);
 
-                        file.setUpdateThumbnailNeeded(false);
-                        storageManager.saveFile(file);
+                        THUMBNAIL_UPDATES.add(storageManager, file);
                     }
 
                 } else {
@@ -445,7 +560,7 @@ public final class ThumbnailsCacheManager {
         private Object mFile;
         private String mImageKey;
         private FileDataStorageManager mStorageManager;
-        private GetMethod getMethod;
+        private volatile GetMethod getMethod;
         private Listener mListener;
         private boolean gridViewEnabled = false;
 
@@ -479,6 +594,17 @@ public final class ThumbnailsCacheManager {
             return getMethod;
         }
 
+        /**
+         * Cancels the task, aborting a running download of the thumbnail.
+         */
+        public void abort() {
+            cancel(true);
+            GetMethod method = getMethod;
+            if (method != null) {
+                method.abort();
+            }
+        }
+
         public ThumbnailGenerationTask(FileDataStorageManager storageManager, User user){
             if (storageManager == null) {
                 throw new IllegalArgumentException("storageManager must not be NULL");
@@ -498,9 +624,11 @@ public final class ThumbnailsCacheManager {
         protected Bitmap doInBackground(ThumbnailGenerationTaskObject... params) {
             Bitmap thumbnail = null;
             try {
+                // tasks of several accounts run in parallel, the client must not be shared
+                OwnCloudClient client = null;
                 if (user != null) {
                     OwnCloudAccount ocAccount = user.toOwnCloudAccount();
-                    mClient = OwnCloudClientManagerFactory.getDefaultSingleton().
+                    client = OwnCloudClientManagerFactory.getDefaultSingleton().
                             getClientFor(ocAccount, MainApp.getAppContext());
                 }
 
@@ -509,10 +637,14 @@ public final class ThumbnailsCacheManager {
                 mImageKey = object.getImageKey();
 
                 if (mFile instanceof ServerFileInterface) {
-                    thumbnail = doThumbnailFromOCFileInBackground();
+                    String imageKey = PREFIX_THUMBNAIL + ((ServerFileInterface) mFile).getRemoteId();
+                    OwnCloudClient taskClient = client;
+                    thumbnail = THUMBNAILS_IN_FLIGHT.load(imageKey,
+                                                          () -> doThumbnailFromOCFileInBackground(taskClient),
+                                                          this::isCancelled);
 
                     if (MimeTypeUtil.isVideo((ServerFileInterface) mFile) && thumbnail != null) {
-                        thumbnail = addVideoOverlay(thumbnail);
+                        thumbnail = getVideoThumbnail(imageKey, thumbnail);
                     }
                 } else if (mFile instanceof File) {
                     thumbnail = doFileInBackground();
@@ -573,15 +705,30 @@ public final class ThumbnailsCacheManager {
             }
         }
 
+        @Override
+        protected void onCancelled(Bitmap bitmap) {
+            if (mListener != null) {
+                mListener.onError();
+            }
+
+            if (mAsyncTasks != null) {
+                mAsyncTasks.remove(this);
+            }
+        }
+
         public void setListener(Listener listener){
             mListener = listener;
         }
 
-        private Bitmap doThumbnailFromOCFileInBackground() {
+        private Bitmap doThumbnailFromOCFileInBackground(@Nullable OwnCloudClient client) {
             Bitmap thumbnail;
             ServerFileInterface file = (ServerFileInterface) mFile;
             String imageKey = PREFIX_THUMBNAIL + file.getRemoteId();
 
+            if (file instanceof OCFile && ((OCFile) file).isUpdateThumbnailNeeded()) {
+                removeBitmapFromMemoryCache(imageKey);
+            }
+
             // Check disk cache in background thread
             thumbnail = getBitmapFromDiskCache(imageKey);
 
@@ -610,31 +757,30 @@ public final class ThumbnailsCacheManager {
 
                             thumbnail = addThumbnailToCache(imageKey, bitmap, ocFile.getStoragePath(), pxW, pxH);
 
-                            ocFile.setUpdateThumbnailNeeded(false);
-                            mStorageManager.saveFile(ocFile);
+                            THUMBNAIL_UPDATES.add(mStorageManager, ocFile);
                         }
                     }
                 }
 
-                if (thumbnail == null) {
+                if (thumbnail == null && !isCancelled()) {
                     // check if resized version is available
                     String resizedImageKey = PREFIX_RESIZED_IMAGE + file.getRemoteId();
                     Bitmap resizedImage = getBitmapFromDiskCache(resizedImageKey);
 
                     if (resizedImage != null) {
                         thumbnail = ThumbnailUtils.extractThumbnail(resizedImage, pxW, pxH);
-                    } else {
+                    } else if (!isCancelled()) {
                         // Download thumbnail from server
-                        if (mClient != null) {
+                        if (client != null) {
                             getMethod = null;
                             try {
                                 // thumbnail
                                 String uri;
                                 if (file instanceof OCFile) {
-                                    uri = mClient.getBaseUri() + "/index.php/apps/files/api/v1/thumbnail/" +
+                                    uri = client.getBaseUri() + "/index.php/apps/files/api/v1/thumbnail/" +
                                         pxW + "/" + pxH + Uri.encode(file.getRemotePath(), "/");
                                 } else {
-                                    uri = mClient.getBaseUri() + "/index.php/apps/files_trashbin/preview?fileId=" +
+                                    uri = client.getBaseUri() + "/index.php/apps/files_trashbin/preview?fileId=" +
                                             file.getLocalId() + "&x=" + pxW + "&y=" + pxH;
                                 }
 
@@ -646,13 +792,13 @@ public final class ThumbnailsCacheManager {
                                 getMethod.setRequestHeader(RemoteOperation.OCS_API_HEADER,
                                         RemoteOperation.OCS_API_HEADER_VALUE);
 
-                                int status = mClient.executeMethod(getMethod, READ_TIMEOUT, CONNECTION_TIMEOUT);
+                                int status = client.executeMethod(getMethod, READ_TIMEOUT, CONNECTION_TIMEOUT);
                                 if (status == HttpStatus.SC_OK) {
                                     InputStream inputStream = getMethod.getResponseBodyAsStream();
                                     Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
                                     thumbnail = ThumbnailUtils.extractThumbnail(bitmap, pxW, pxH);
                                 } else {
-                                    mClient.exhaustResponse(getMethod.getResponseBodyAsStream());
+                                    client.exhaustResponse(getMethod.getResponseBodyAsStream());
                                 }
 
                                 // Handle PNG
@@ -1052,6 +1198,17 @@ public final class ThumbnailsCacheManager {
         return true;
     }
 
+    /**
+     * Cancels the thumbnail generation for the image view, e.g. when its list item is recycled.
+     */
+    public static void cancelThumbnailWork(ImageView imageView) {
+        final ThumbnailGenerationTask bitmapWorkerTask = getBitmapWorkerTask(imageView);
+
+        if (bitmapWorkerTask != null) {
+            bitmapWorkerTask.abort();
+        }
+    }
+
     public static ThumbnailGenerationTask getBitmapWorkerTask(ImageView imageView) {
         if (imageView != null) {
             final Drawable drawable = imageView.getDrawable();
@@ -1074,11 +1231,45 @@ public final class ThumbnailsCacheManager {
         return null;
     }
 
+    /**
+     * Returns the thumbnail of a video with the play button on top. The result is composited once and kept in the
+     * memory cache until the thumbnail of the key changes, so binding a video item does not allocate bitmaps.
+     *
+     * @param imageKey key of the thumbnail in the cache
+     * @param thumbnail thumbnail of the key without overlay
+     */
+    public static Bitmap getVideoThumbnail(String imageKey, Bitmap thumbnail) {
+        String overlayKey = PREFIX_VIDEO_OVERLAY + imageKey;
+
+        Bitmap cached = mThumbnailMemoryCache.get(overlayKey);
+        if (cached != null && cached.getWidth() == thumbnail.getWidth() &&
+            cached.getHeight() == thumbnail.getHeight()) {
+            return cached;
+        }
+
+        Bitmap withOverlay = addVideoOverlay(thumbnail);
+
+        // cached immutable, so that it is never drawn into while shown
+        Bitmap immutable = withOverlay.copy(withOverlay.getConfig(), false);
+        if (immutable == null) {
+            return withOverlay;
+        }
+        mThumbnailMemoryCache.putBitmap(overlayKey, immutable);
+        return immutable;
+    }
+
+    private static synchronized Bitmap getPlayButton() {
+        if (mPlayButton == null) {
+            Drawable playButtonDrawable = ResourcesCompat.getDrawable(MainApp.getAppContext().getResources(),
+                                                                      R.drawable.view_play,
+                                                                      null);
+            mPlayButton = BitmapUtils.drawableToBitmap(playButtonDrawable);
+        }
+        return mPlayButton;
+    }
+
     public static Bitmap addVideoOverlay(Bitmap thumbnail) {
-        Drawable playButtonDrawable = ResourcesCompat.getDrawable(MainApp.getAppContext().getResources(),
-                                                                  R.drawable.view_play,
-                                                                  null);
-        Bitmap playButton = BitmapUtils.drawableToBitmap(playButtonDrawable);
+        Bitmap playButton = getPlayButton();
 
         Bitmap resizedPlayButton = Bitmap.createScaledBitmap(playButton,
                                                              (int) (thumbnail.getWidth() * 0.3),
@@ -1203,23 +1394,53 @@ public final class ThumbnailsCacheManager {
         }
     }
 
-    public static void generateThumbnailFromOCFile(OCFile file, Account account, Context context) {
+    @Nullable
+    public static Bitmap generateThumbnailFromOCFile(OCFile file, Account account, Context context) {
+        // the shared client may belong to another account
+        OwnCloudClient client;
+        try {
+            OwnCloudAccount ocAccount = new OwnCloudAccount(account, context);
+            client = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount, context);
+        } catch (Exception e) {
+            Log_OC.d(TAG, e.getMessage(), e);
+            return null;
+        }
+
+        return downloadThumbnail(file, client, true);
+    }
+
+    /**
+     * Downloads the thumbnail of the file for a list item unless it is in the disk cache already. A generation of
+     * the same thumbnail that is already running is waited for instead. Prefetched thumbnails are only added to the
+     * disk cache; they are moved to the memory cache once shown.
+     *
+     * @return true if the thumbnail has been added to the cache
+     */
+    static boolean prefetchThumbnail(OCFile file, OwnCloudClient client) {
+        String imageKey = PREFIX_THUMBNAIL + file.getRemoteId();
+
+        DiskLruImageCache diskCache = getDiskCache();
+        if (diskCache != null && diskCache.containsKey(imageKey) && !file.isUpdateThumbnailNeeded()) {
+            return false;
+        }
+
+        return THUMBNAILS_IN_FLIGHT.load(imageKey, () -> downloadThumbnail(file, client, false)) != null;
+    }
+
+    /**
+     * @param addToMemoryCache false to only add the downloaded thumbnail to the disk cache
+     */
+    @Nullable
+    private static Bitmap downloadThumbnail(OCFile file, OwnCloudClient client, boolean addToMemoryCache) {
         int pxW;
         int pxH;
         pxW = pxH = getThumbnailDimension();
         String imageKey = PREFIX_THUMBNAIL + file.getRemoteId();
 
         GetMethod getMethod = null;
+        Bitmap thumbnail = null;
 
         try {
-            Bitmap thumbnail = null;
-
-            OwnCloudClient client = mClient;
-            if (client == null) {
-                OwnCloudAccount ocAccount = new OwnCloudAccount(account, context);
-                client = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount, context);
-            }
-
             String uri = client.getBaseUri() + "/index.php/apps/files/api/v1/thumbnail/" +
                 pxW + "/" + pxH + Uri.encode(file.getRemotePath(), "/");
 
@@ -1247,7 +1468,11 @@ public final class ThumbnailsCacheManager {
                 }
 
                 Log_OC.d(TAG, "add thumbnail to cache: " + file.getFileName());
-                addBitmapToCache(imageKey, thumbnail);
+                if (addToMemoryCache) {
+                    addBitmapToCache(imageKey, thumbnail);
+                } else {
+                    addBitmapToDiskCache(imageKey, thumbnail);
+                }
             }
         } catch (Exception e) {
             Log_OC.d(TAG, e.getMessage(), e);
@@ -1256,5 +1481,7 @@ public final class ThumbnailsCacheManager {
                 getMethod.releaseConnection();
             }
         }
+
+        return thumbnail;
     }
 }
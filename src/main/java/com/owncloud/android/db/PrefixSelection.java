@@ -0,0 +1,87 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.db;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Case sensitive "starts with" selection for text columns, expressed as range on the column instead of LIKE.
+ * <p>
+ * LIKE is only case sensitive with PRAGMA case_sensitive_like, which is set per connection and therefore not
+ * reliable with write-ahead logging where reads are spread over several connections. The range form is case
+ * sensitive in any case and can use an index on the column.
+ */
+public final class PrefixSelection {
+
+    private PrefixSelection() {
+        // utility class -> private constructor
+    }
+
+    /**
+     * @param column column to match
+     * @return selection with two placeholders, to be bound to {@link #args(String)}
+     */
+    public static String selection(String column) {
+        return "(" + column + " >= ? AND " + column + " < ?)";
+    }
+
+    /**
+     * @param prefix prefix to match, not empty
+     * @return selection arguments for {@link #selection(String)}
+     * @throws IllegalArgumentException if no string is greater than all strings starting with the prefix, i.e. it is
+     *                                  empty or consists of {@link Character#MAX_CODE_POINT} only
+     */
+    public static String[] args(String prefix) {
+        String upperBound = upperBound(prefix);
+        if (upperBound == null) {
+            throw new IllegalArgumentException("No range for prefix " + prefix);
+        }
+        return new String[]{prefix, upperBound};
+    }
+
+    /**
+     * SQLite compares text as UTF-8 bytes, which sorts like code points: supplementary characters come after all
+     * characters of the basic plane. The bound is therefore computed on code points, not on UTF-16 chars.
+     *
+     * @return the smallest string greater than all strings starting with the prefix, null if there is none
+     */
+    @Nullable
+    static String upperBound(String prefix) {
+        int end = prefix.length();
+        while (end > 0) {
+            int last = prefix.codePointBefore(end);
+            int start = end - Character.charCount(last);
+
+            if (last < Character.MAX_CODE_POINT) {
+                int next = last + 1;
+                if (next >= Character.MIN_SURROGATE && next <= Character.MAX_SURROGATE) {
+                    // surrogates are no characters on their own
+                    next = Character.MAX_SURROGATE + 1;
+                }
+                return prefix.substring(0, start) + new String(Character.toChars(next));
+            }
+
+            // nothing follows the maximum code point, strings starting with the shorter prefix are bounded alike
+            end = start;
+        }
+
+        return null;
+    }
+}
@@ -40,10 +40,8 @@ import android.graphics.BitmapFactory;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
-import android.os.Message;
 import android.os.Parcelable;
 import android.os.Process;
 import android.util.Pair;
@@ -83,9 +81,9 @@ import com.owncloud.android.utils.theme.ThemeColorUtils;
 import java.io.File;
 import java.security.SecureRandom;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -108,7 +106,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
  * are obeyed.
  */
 public class FileUploader extends Service
-    implements OnDatatransferProgressListener, OnAccountsUpdateListener, UploadFileOperation.OnRenameListener {
+    implements OnAccountsUpdateListener {
 
     private static final String TAG = FileUploader.class.getSimpleName();
 
@@ -180,14 +178,17 @@ public class FileUploader extends Service
     public static final int LOCAL_BEHAVIOUR_FORGET = 2;
     public static final int LOCAL_BEHAVIOUR_DELETE = 3;
 
+    /**
+     * Number of uploads running at the same time, see {@link UploadScheduler#workerLanes(int)}.
+     */
+    static final int UPLOAD_WORKERS = 3;
 
     private Notification mNotification;
-    private Looper mServiceLooper;
-    private ServiceHandler mServiceHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final UploadScheduler mScheduler = new UploadScheduler();
+    private final List<UploadWorker> mWorkers = new ArrayList<>();
+    private volatile int mLastStartId;
     private IBinder mBinder;
-    private OwnCloudClient mUploadClient;
-    private Account mCurrentAccount;
-    private FileDataStorageManager mStorageManager;
 
     @Inject UserAccountManager accountManager;
     @Inject UploadsStorageManager mUploadsStorageManager;
@@ -198,20 +199,21 @@ public class FileUploader extends Service
     private IndexedForest<UploadFileOperation> mPendingUploads = new IndexedForest<>();
 
     /**
-     * {@link UploadFileOperation} object of ongoing upload. Can be null. Note: There can only be one concurrent
-     * upload!
+     * Ongoing uploads by their key in {@link #mPendingUploads}, one per worker at most.
      */
-    private UploadFileOperation mCurrentUpload;
+    private final Map<String, UploadFileOperation> mCurrentUploads = new ConcurrentHashMap<>();
 
     private NotificationManager mNotificationManager;
-    private NotificationCompat.Builder mNotificationBuilder;
-    private int mLastPercent;
+
+    /**
+     * Progress notification of every ongoing upload, each updated by the worker running the upload only.
+     */
+    private final Map<UploadFileOperation, ProgressNotification> mProgressNotifications = new ConcurrentHashMap<>();
 
 
-    @Override
-    public void onRenameUpload() {
-        mUploadsStorageManager.updateDatabaseUploadStart(mCurrentUpload);
-        sendBroadcastUploadStarted(mCurrentUpload);
+    private void onRenameUpload(UploadFileOperation upload) {
+        mUploadsStorageManager.updateDatabaseUploadStart(upload);
+        sendBroadcastUploadStarted(upload);
     }
 
     /**
@@ -223,12 +225,15 @@ public class FileUploader extends Service
         AndroidInjection.inject(this);
         Log_OC.d(TAG, "Creating service");
         mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-        HandlerThread thread = new HandlerThread("FileUploaderThread", Process.THREAD_PRIORITY_BACKGROUND);
-        thread.start();
-        mServiceLooper = thread.getLooper();
-        mServiceHandler = new ServiceHandler(mServiceLooper, this);
         mBinder = new FileUploaderBinder();
 
+        List<UploadScheduler.Lane> lanes = UploadScheduler.workerLanes(UPLOAD_WORKERS);
+        for (int i = 0; i < lanes.size(); i++) {
+            UploadWorker worker = new UploadWorker(this, lanes.get(i), i);
+            worker.start();
+            mWorkers.add(worker);
+        }
+
         NotificationCompat.Builder builder = new NotificationCompat.Builder(this).setContentTitle(
             getApplicationContext().getResources().getString(R.string.app_name))
             .setContentText(getApplicationContext().getResources().getString(R.string.foreground_service_upload))
@@ -269,9 +274,12 @@ public class FileUploader extends Service
     public void onDestroy() {
         Log_OC.v(TAG, "Destroying service");
         mBinder = null;
-        mServiceHandler = null;
-        mServiceLooper.quit();
-        mServiceLooper = null;
+        mScheduler.shutdown();
+        for (UploadWorker worker : mWorkers) {
+            worker.interrupt();
+        }
+        mWorkers.clear();
+        mMainHandler.removeCallbacksAndMessages(null);
         if (mNotificationManager != null) {
             mNotificationManager.cancel(FOREGROUND_SERVICE_ID);
         }
@@ -340,12 +348,22 @@ public class FileUploader extends Service
             retryUploads(intent, user, requestedUploads);
         }
 
+        mLastStartId = startId;
         if (requestedUploads.size() > 0) {
-            Message msg = mServiceHandler.obtainMessage();
-            msg.arg1 = startId;
-            msg.obj = requestedUploads;
-            mServiceHandler.sendMessage(msg);
+            FileDataStorageManager storageManager = new FileDataStorageManager(user.toPlatformAccount(),
+                                                                               getContentResolver());
+            for (String requestedUpload : requestedUploads) {
+                UploadFileOperation upload = mPendingUploads.get(requestedUpload);
+                if (upload != null) {
+                    mScheduler.enqueue(requestedUpload,
+                                       getOrderKey(requestedUpload, upload, storageManager),
+                                       user.getAccountName(),
+                                       upload.getFile().getFileLength());
+                }
+            }
             sendBroadcastUploadsAdded();
+        } else {
+            stopIfIdle();
         }
         return Service.START_NOT_STICKY;
     }
@@ -497,10 +515,12 @@ public class FileUploader extends Service
         if (isCreateRemoteFolder) {
             newUpload.setRemoteFolderToBeCreated();
         }
-        newUpload.addDataTransferProgressListener(this);
-        newUpload.addDataTransferProgressListener((FileUploaderBinder) mBinder);
+        newUpload.addDataTransferProgressListener(
+            (progressRate, totalTransferredSoFar, totalToTransfer, fileName) ->
+                onTransferProgress(newUpload, totalTransferredSoFar, totalToTransfer, fileName));
+        newUpload.addDataTransferProgressListener(((FileUploaderBinder) mBinder).newProgressListener(newUpload));
 
-        newUpload.addRenameUploadListener(this);
+        newUpload.addRenameUploadListener(() -> onRenameUpload(newUpload));
 
         Pair<String, String> putResult = mPendingUploads.putIfAbsent(
             user.getAccountName(),
@@ -544,10 +564,12 @@ public class FileUploader extends Service
             new FileDataStorageManager(user.toPlatformAccount(), getContentResolver())
         );
 
-        newUpload.addDataTransferProgressListener(this);
-        newUpload.addDataTransferProgressListener((FileUploaderBinder) mBinder);
+        newUpload.addDataTransferProgressListener(
+            (progressRate, totalTransferredSoFar, totalToTransfer, fileName) ->
+                onTransferProgress(newUpload, totalTransferredSoFar, totalToTransfer, fileName));
+        newUpload.addDataTransferProgressListener(((FileUploaderBinder) mBinder).newProgressListener(newUpload));
 
-        newUpload.addRenameUploadListener(this);
+        newUpload.addRenameUploadListener(() -> onRenameUpload(newUpload));
 
         Pair<String, String> putResult = mPendingUploads.putIfAbsent(
             user.getAccountName(),
@@ -586,114 +608,125 @@ public class FileUploader extends Service
 
     @Override
     public void onAccountsUpdated(Account[] accounts) {
-        // Review current upload, and cancel it if its account doesn't exist
-        if (mCurrentUpload != null && !accountManager.exists(mCurrentUpload.getAccount())) {
-            mCurrentUpload.cancel(ResultCode.ACCOUNT_NOT_FOUND);
+        // Review current uploads, and cancel those whose account doesn't exist
+        for (UploadFileOperation currentUpload : mCurrentUploads.values()) {
+            if (!accountManager.exists(currentUpload.getAccount())) {
+                currentUpload.cancel(ResultCode.ACCOUNT_NOT_FOUND);
+            }
         }
         // The rest of uploads are cancelled when they try to start
     }
 
     /**
-     * Core upload method: sends the file(s) to upload
+     * Core upload method: sends the file(s) to upload. Called by the upload workers, one upload per worker at a time.
      *
      * @param uploadKey Key to access the upload to perform, contained in mPendingUploads
+     * @return number of bytes of the finished upload, 0 if it was not performed
      */
-    public void uploadFile(String uploadKey) {
-        mCurrentUpload = mPendingUploads.get(uploadKey);
-
-        if (mCurrentUpload != null) {
-            /// Check account existence
-            if (!accountManager.exists(mCurrentUpload.getAccount())) {
-                Log_OC.w(TAG, "Account " + mCurrentUpload.getAccount().name +
-                    " does not exist anymore -> cancelling all its uploads");
-                cancelUploadsForAccount(mCurrentUpload.getAccount());
-                return;
-            }
+    private long uploadFile(String uploadKey) {
+        UploadFileOperation currentUpload = mPendingUploads.get(uploadKey);
 
-            /// OK, let's upload
-            mUploadsStorageManager.updateDatabaseUploadStart(mCurrentUpload);
+        if (currentUpload == null) {
+            return 0;
+        }
 
-            notifyUploadStart(mCurrentUpload);
+        /// Check account existence
+        if (!accountManager.exists(currentUpload.getAccount())) {
+            Log_OC.w(TAG, "Account " + currentUpload.getAccount().name +
+                " does not exist anymore -> cancelling all its uploads");
+            cancelUploadsForAccount(currentUpload.getAccount());
+            return 0;
+        }
 
-            sendBroadcastUploadStarted(mCurrentUpload);
+        mCurrentUploads.put(uploadKey, currentUpload);
 
-            RemoteOperationResult uploadResult = null;
+        /// OK, let's upload
+        mUploadsStorageManager.updateDatabaseUploadStart(currentUpload);
 
-            try {
-                /// prepare client object to send the request to the ownCloud server
-                if (mCurrentAccount == null || !mCurrentAccount.equals(mCurrentUpload.getAccount())) {
-                    mCurrentAccount = mCurrentUpload.getAccount();
-                    mStorageManager = new FileDataStorageManager(mCurrentAccount, getContentResolver());
-                }   // else, reuse storage manager from previous operation
-
-                // always get client from client manager, to get fresh credentials in case of update
-                OwnCloudAccount ocAccount = new OwnCloudAccount(mCurrentAccount, this);
-                mUploadClient = OwnCloudClientManagerFactory.getDefaultSingleton().getClientFor(ocAccount, this);
-
-
-//                // If parent folder is encrypted, upload file encrypted
-//                OCFile parent = mStorageManager.getFileByPath(mCurrentUpload.getFile().getParentRemotePath());
-
-//                if (parent.isEncrypted()) {
-//                    UploadEncryptedFileOperation uploadEncryptedFileOperation =
-//                            new UploadEncryptedFileOperation(parent, mCurrentUpload);
-//
-//                    uploadResult = uploadEncryptedFileOperation.execute(mUploadClient, mStorageManager);
-//                } else {
-                /// perform the regular upload
-                uploadResult = mCurrentUpload.execute(mUploadClient);
-//                }
-            } catch (Exception e) {
-                Log_OC.e(TAG, "Error uploading", e);
-                uploadResult = new RemoteOperationResult(e);
-            } finally {
-                Pair<UploadFileOperation, String> removeResult;
-                if (mCurrentUpload.wasRenamed()) {
-                    removeResult = mPendingUploads.removePayload(
-                        mCurrentAccount.name,
-                        mCurrentUpload.getOldFile().getRemotePath()
-                    );
-                    // TODO: grant that name is also updated for mCurrentUpload.getOCUploadId
+        notifyUploadStart(currentUpload);
 
-                } else {
-                    removeResult = mPendingUploads.removePayload(mCurrentAccount.name,
-                                                                 mCurrentUpload.getDecryptedRemotePath());
-                }
+        sendBroadcastUploadStarted(currentUpload);
 
-                mUploadsStorageManager.updateDatabaseUploadResult(uploadResult, mCurrentUpload);
+        Account currentAccount = currentUpload.getAccount();
+        FileDataStorageManager storageManager = new FileDataStorageManager(currentAccount, getContentResolver());
+        RemoteOperationResult uploadResult = null;
 
-                /// notify result
-                notifyUploadResult(mCurrentUpload, uploadResult);
+        try {
+            // always get client from client manager, to get fresh credentials in case of update
+            OwnCloudAccount ocAccount = new OwnCloudAccount(currentAccount, this);
+            OwnCloudClient uploadClient = OwnCloudClientManagerFactory.getDefaultSingleton()
+                .getClientFor(ocAccount, this);
 
-                sendBroadcastUploadFinished(mCurrentUpload, uploadResult, removeResult.second);
+            /// perform the regular upload
+            uploadResult = currentUpload.execute(uploadClient);
+        } catch (Exception e) {
+            Log_OC.e(TAG, "Error uploading", e);
+            uploadResult = new RemoteOperationResult(e);
+        } finally {
+            mCurrentUploads.remove(uploadKey);
+
+            Pair<UploadFileOperation, String> removeResult;
+            if (currentUpload.wasRenamed()) {
+                removeResult = mPendingUploads.removePayload(
+                    currentAccount.name,
+                    currentUpload.getOldFile().getRemotePath()
+                );
+                // TODO: grant that name is also updated for currentUpload.getOCUploadId
+
+            } else {
+                removeResult = mPendingUploads.removePayload(currentAccount.name,
+                                                             currentUpload.getDecryptedRemotePath());
             }
 
-            // generate new Thumbnail
-            Optional<User> user = getCurrentUser();
-            if (user.isPresent()) {
-                final ThumbnailsCacheManager.ThumbnailGenerationTask task =
-                    new ThumbnailsCacheManager.ThumbnailGenerationTask(mStorageManager, user.get());
+            mUploadsStorageManager.updateDatabaseUploadResult(uploadResult, currentUpload);
 
-                File file = new File(mCurrentUpload.getOriginalStoragePath());
-                String remoteId = mCurrentUpload.getFile().getRemoteId();
+            /// notify result
+            notifyUploadResult(currentUpload, uploadResult);
 
-                task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, remoteId));
-            }
+            sendBroadcastUploadFinished(currentUpload, uploadResult, removeResult.second);
         }
+
+        // generate new Thumbnail
+        Optional<User> user = accountManager.getUser(currentAccount.name);
+        if (user.isPresent()) {
+            final ThumbnailsCacheManager.ThumbnailGenerationTask task =
+                new ThumbnailsCacheManager.ThumbnailGenerationTask(storageManager, user.get());
+
+            File file = new File(currentUpload.getOriginalStoragePath());
+            String remoteId = currentUpload.getFile().getRemoteId();
+
+            task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file, remoteId));
+        }
+
+        return uploadResult.isSuccess() ? currentUpload.getFile().getFileLength() : 0;
     }
 
     /**
-     * Convert current account to user. This is a temporary workaround until
-     * service is migrated to new user model.
-     * 
-     * @return Optional {@link User}
+     * Uploads into an end-to-end encrypted folder lock the folder and rewrite its metadata, so they have to run one
+     * at a time per folder; other uploads only keep their order per remote path.
+     *
+     * @return key of the uploads that must not run concurrently with the given one
      */
-    private Optional<User> getCurrentUser() {
-        if (mCurrentAccount == null) {
-            return Optional.empty();
-        } else {
-            return accountManager.getUser(mCurrentAccount.name);
+    private String getOrderKey(String uploadKey, UploadFileOperation upload, FileDataStorageManager storageManager) {
+        OCFile file = upload.getFile();
+        if (storageManager.hasEncryptedAncestor(file)) {
+            return upload.getAccount().name + file.getParentRemotePath();
         }
+        return uploadKey;
+    }
+
+    /**
+     * Stops the service once all requested uploads are done.
+     */
+    private void stopIfIdle() {
+        mMainHandler.post(() -> {
+            if (mScheduler.isIdle() && mNotificationManager != null) {
+                Log_OC.d(TAG, "Stopping command after id " + mLastStartId);
+                mNotificationManager.cancel(FOREGROUND_SERVICE_ID);
+                stopForeground(true);
+                stopSelf(mLastStartId);
+            }
+        });
     }
 
     /**
@@ -701,11 +734,10 @@ public class FileUploader extends Service
      *
      * @param upload Upload operation starting.
      */
-    private void notifyUploadStart(UploadFileOperation upload) {
+    private synchronized void notifyUploadStart(UploadFileOperation upload) {
         // / create status notification with a progress bar
-        mLastPercent = 0;
-        mNotificationBuilder = NotificationUtils.newNotificationBuilder(this);
-        mNotificationBuilder
+        NotificationCompat.Builder notificationBuilder = NotificationUtils.newNotificationBuilder(this);
+        notificationBuilder
             .setOngoing(true)
             .setSmallIcon(R.drawable.notification_icon)
             .setTicker(getString(R.string.uploader_upload_in_progress_ticker))
@@ -716,7 +748,7 @@ public class FileUploader extends Service
             );
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            mNotificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
+            notificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
         }
 
         /// includes a pending intent in the notification showing the details
@@ -724,18 +756,16 @@ public class FileUploader extends Service
                                                         upload.getAccount(),
                                                         Intent.FLAG_ACTIVITY_CLEAR_TOP,
                                                         this);
-        mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this,
-                                                                        (int) System.currentTimeMillis(),
-                                                                        intent,
-                                                                        0)
-                                             );
+        notificationBuilder.setContentIntent(PendingIntent.getActivity(this,
+                                                                       (int) System.currentTimeMillis(),
+                                                                       intent,
+                                                                       0)
+                                            );
 
-        if (!upload.isInstantPicture() && !upload.isInstantVideo()) {
-            if (mNotificationManager == null) {
-                mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-            }
+        mProgressNotifications.put(upload, new ProgressNotification(notificationBuilder));
 
-            mNotificationManager.notify(FOREGROUND_SERVICE_ID, mNotificationBuilder.build());
+        if (!upload.isInstantPicture() && !upload.isInstantVideo()) {
+            notifyProgress(notificationBuilder);
         }   // else wait until the upload really start (onTransferProgress is called), so that if it's discarded
         // due to lack of Wifi, no notification is shown
         // TODO generalize for automated uploads
@@ -744,25 +774,45 @@ public class FileUploader extends Service
     /**
      * Callback method to update the progress bar in the status notification
      */
-    @Override
-    public void onTransferProgress(
-        long progressRate,
+    private synchronized void onTransferProgress(
+        UploadFileOperation upload,
         long totalTransferredSoFar,
         long totalToTransfer,
         String filePath
     ) {
+        ProgressNotification notification = mProgressNotifications.get(upload);
+        if (notification == null) {
+            return;
+        }
+
         int percent = (int) (100.0 * ((double) totalTransferredSoFar) / ((double) totalToTransfer));
-        if (percent != mLastPercent) {
-            mNotificationBuilder.setProgress(100, percent, false);
+        if (percent != notification.lastPercent) {
+            notification.builder.setProgress(100, percent, false);
             String fileName = filePath.substring(filePath.lastIndexOf(FileUtils.PATH_SEPARATOR) + 1);
             String text = String.format(getString(R.string.uploader_upload_in_progress_content), percent, fileName);
-            mNotificationBuilder.setContentText(text);
-            if (mNotificationManager == null) {
-                mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
-            }
-            mNotificationManager.notify(FOREGROUND_SERVICE_ID, mNotificationBuilder.build());
+            notification.builder.setContentText(text);
+            notifyProgress(notification.builder);
+        }
+        notification.lastPercent = percent;
+    }
+
+    /**
+     * Shows the progress of an upload as foreground notification, titled with the number of ongoing uploads when
+     * there are several.
+     */
+    private void notifyProgress(NotificationCompat.Builder notificationBuilder) {
+        int uploads = mProgressNotifications.size();
+        if (uploads > 1) {
+            notificationBuilder.setContentTitle(
+                getResources().getQuantityString(R.plurals.uploader_uploads_in_progress, uploads, uploads));
+        } else {
+            notificationBuilder.setContentTitle(getString(R.string.uploader_upload_in_progress_ticker));
+        }
+
+        if (mNotificationManager == null) {
+            mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
         }
-        mLastPercent = percent;
+        mNotificationManager.notify(FOREGROUND_SERVICE_ID, notificationBuilder.build());
     }
 
     /**
@@ -772,8 +822,10 @@ public class FileUploader extends Service
      * @param upload       Finished upload operation
      */
     @SuppressFBWarnings("DMI")
-    private void notifyUploadResult(UploadFileOperation upload, RemoteOperationResult uploadResult) {
+    private synchronized void notifyUploadResult(UploadFileOperation upload, RemoteOperationResult uploadResult) {
         Log_OC.d(TAG, "NotifyUploadResult with resultCode: " + uploadResult.getCode());
+        mProgressNotifications.remove(upload);
+
         // cancelled operation or success -> silent removal of progress notification
         if (mNotificationManager == null) {
             mNotificationManager = (NotificationManager) getSystemService(NOTIFICATION_SERVICE);
@@ -800,13 +852,19 @@ public class FileUploader extends Service
                 tickerId = R.string.uploader_upload_failed_sync_conflict_error;
             }
 
-            mNotificationBuilder
+            NotificationCompat.Builder notificationBuilder = NotificationUtils.newNotificationBuilder(this);
+            notificationBuilder
+                .setSmallIcon(R.drawable.notification_icon)
                 .setTicker(getString(tickerId))
                 .setContentTitle(getString(tickerId))
                 .setAutoCancel(true)
                 .setOngoing(false)
                 .setProgress(0, 0, false);
 
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                notificationBuilder.setChannelId(NotificationUtils.NOTIFICATION_CHANNEL_UPLOAD);
+            }
+
             content = ErrorMessageAdapter.getErrorCauseMessage(uploadResult, upload, getResources());
 
             if (needsToUpdateCredentials) {
@@ -823,7 +881,7 @@ public class FileUploader extends Service
                 updateAccountCredentials.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                 updateAccountCredentials.addFlags(Intent.FLAG_ACTIVITY_EXCLUDE_FROM_RECENTS);
                 updateAccountCredentials.addFlags(Intent.FLAG_FROM_BACKGROUND);
-                mNotificationBuilder.setContentIntent(PendingIntent.getActivity(
+                notificationBuilder.setContentIntent(PendingIntent.getActivity(
                     this,
                     (int) System.currentTimeMillis(),
                     updateAccountCredentials,
@@ -844,16 +902,16 @@ public class FileUploader extends Service
                                                              this);
                 }
 
-                mNotificationBuilder.setContentIntent(PendingIntent.getActivity(this,
-                                                                                (int) System.currentTimeMillis(),
-                                                                                intent,
-                                                                                0)
-                                                     );
+                notificationBuilder.setContentIntent(PendingIntent.getActivity(this,
+                                                                               (int) System.currentTimeMillis(),
+                                                                               intent,
+                                                                               0)
+                                                    );
             }
 
-            mNotificationBuilder.setContentText(content);
+            notificationBuilder.setContentText(content);
             if (!uploadResult.isSuccess()) {
-                mNotificationManager.notify((new SecureRandom()).nextInt(), mNotificationBuilder.build());
+                mNotificationManager.notify((new SecureRandom()).nextInt(), notificationBuilder.build());
             }
 
         }
@@ -1155,12 +1213,12 @@ public class FileUploader extends Service
      *
      * It provides by itself the available operations.
      */
-    public class FileUploaderBinder extends Binder implements OnDatatransferProgressListener {
+    public class FileUploaderBinder extends Binder {
 
         /**
          * Map of listeners that will be reported about progress of uploads from a {@link FileUploaderBinder} instance
          */
-        private Map<String, OnDatatransferProgressListener> mBoundListeners = new HashMap<>();
+        private Map<String, OnDatatransferProgressListener> mBoundListeners = new ConcurrentHashMap<>();
 
         /**
          * Cancels a pending or current upload of a remote file.
@@ -1191,10 +1249,14 @@ public class FileUploader extends Service
         private void cancel(String accountName, String remotePath, @Nullable ResultCode resultCode) {
             Pair<UploadFileOperation, String> removeResult = mPendingUploads.remove(accountName, remotePath);
             UploadFileOperation upload = removeResult.first;
-            if (upload == null && mCurrentUpload != null && mCurrentAccount != null &&
-                mCurrentUpload.getRemotePath().startsWith(remotePath) && accountName.equals(mCurrentAccount.name)) {
-
-                upload = mCurrentUpload;
+            if (upload == null) {
+                for (UploadFileOperation currentUpload : mCurrentUploads.values()) {
+                    if (currentUpload.getRemotePath().startsWith(remotePath) &&
+                        accountName.equals(currentUpload.getAccount().name)) {
+                        upload = currentUpload;
+                        break;
+                    }
+                }
             }
 
             if (upload != null) {
@@ -1218,10 +1280,10 @@ public class FileUploader extends Service
         public void cancel(Account account) {
             Log_OC.d(TAG, "Account= " + account.name);
 
-            if (mCurrentUpload != null) {
-                Log_OC.d(TAG, "Current Upload Account= " + mCurrentUpload.getAccount().name);
-                if (mCurrentUpload.getAccount().name.equals(account.name)) {
-                    mCurrentUpload.cancel(ResultCode.CANCELLED);
+            for (UploadFileOperation currentUpload : mCurrentUploads.values()) {
+                Log_OC.d(TAG, "Current Upload Account= " + currentUpload.getAccount().name);
+                if (currentUpload.getAccount().name.equals(account.name)) {
+                    currentUpload.cancel(ResultCode.CANCELLED);
                 }
             }
 
@@ -1254,11 +1316,24 @@ public class FileUploader extends Service
         }
 
         public boolean isUploadingNow(OCUpload upload) {
-            return upload != null &&
-                mCurrentAccount != null &&
-                mCurrentUpload != null &&
-                upload.getAccountName().equals(mCurrentAccount.name) &&
-                upload.getRemotePath().equals(mCurrentUpload.getRemotePath());
+            if (upload == null) {
+                return false;
+            }
+
+            for (UploadFileOperation currentUpload : mCurrentUploads.values()) {
+                if (upload.getAccountName().equals(currentUpload.getAccount().name) &&
+                    upload.getRemotePath().equals(currentUpload.getRemotePath())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return transfer rate and number of the uploads finished in a lane since the service started
+         */
+        public UploadScheduler.LaneStats getLaneStats(UploadScheduler.Lane lane) {
+            return mScheduler.getStats(lane);
         }
 
         /**
@@ -1341,14 +1416,22 @@ public class FileUploader extends Service
             }
         }
 
-        @Override
-        public void onTransferProgress(
+        /**
+         * @return listener passing the progress of the upload on to the listener bound to its file
+         */
+        OnDatatransferProgressListener newProgressListener(UploadFileOperation upload) {
+            return (progressRate, totalTransferredSoFar, totalToTransfer, fileName) ->
+                onTransferProgress(upload, progressRate, totalTransferredSoFar, totalToTransfer, fileName);
+        }
+
+        private void onTransferProgress(
+            UploadFileOperation upload,
             long progressRate,
             long totalTransferredSoFar,
             long totalToTransfer,
             String fileName
         ) {
-            String key = buildRemoteName(mCurrentUpload.getAccount().name, mCurrentUpload.getFile().getRemotePath());
+            String key = buildRemoteName(upload.getAccount().name, upload.getFile().getRemotePath());
             OnDatatransferProgressListener boundListener = mBoundListeners.get(key);
 
             if (boundListener != null) {
@@ -1359,18 +1442,18 @@ public class FileUploader extends Service
             if (context != null) {
                 ResultCode cancelReason = null;
                 Connectivity connectivity = connectivityService.getConnectivity();
-                if (mCurrentUpload.isWifiRequired() && !connectivity.isWifi()) {
+                if (upload.isWifiRequired() && !connectivity.isWifi()) {
                     cancelReason = ResultCode.DELAYED_FOR_WIFI;
-                } else if (mCurrentUpload.isChargingRequired() && !powerManagementService.getBattery().isCharging()) {
+                } else if (upload.isChargingRequired() && !powerManagementService.getBattery().isCharging()) {
                     cancelReason = ResultCode.DELAYED_FOR_CHARGING;
-                } else if (!mCurrentUpload.isIgnoringPowerSaveMode() && powerManagementService.isPowerSavingEnabled()) {
+                } else if (!upload.isIgnoringPowerSaveMode() && powerManagementService.isPowerSavingEnabled()) {
                     cancelReason = ResultCode.DELAYED_IN_POWER_SAVE_MODE;
                 }
 
                 if (cancelReason != null) {
                     cancel(
-                        mCurrentUpload.getAccount().name,
-                        mCurrentUpload.getFile().getRemotePath(),
+                        upload.getAccount().name,
+                        upload.getFile().getRemotePath(),
                         cancelReason
                     );
                 }
@@ -1394,36 +1477,53 @@ public class FileUploader extends Service
 
 
     /**
-     * Upload worker. Performs the pending uploads in the order they were requested.
+     * Progress notification of a single upload.
+     */
+    private static class ProgressNotification {
+        final NotificationCompat.Builder builder;
+        int lastPercent;
+
+        ProgressNotification(NotificationCompat.Builder builder) {
+            this.builder = builder;
+        }
+    }
+
+    /**
+     * Upload worker. Performs the uploads the {@link UploadScheduler} hands out for its lane, one at a time.
      *
-     * Created with the Looper of a new thread, started in {@link FileUploader#onCreate()}.
+     * Started in {@link FileUploader#onCreate()}, stopped in {@link FileUploader#onDestroy()}.
      */
-    private static class ServiceHandler extends Handler {
-        // don't make it a final class, and don't remove the static ; lint will
-        // warn about a possible memory leak
-        private FileUploader mService;
-
-        public ServiceHandler(Looper looper, FileUploader service) {
-            super(looper);
-            if (service == null) {
-                throw new IllegalArgumentException("Received invalid NULL in parameter 'service'");
-            }
+    private static class UploadWorker extends Thread {
+        private final FileUploader mService;
+        private final UploadScheduler.Lane mLane;
+
+        UploadWorker(FileUploader service, UploadScheduler.Lane lane, int index) {
+            super("FileUploaderThread-" + index);
             mService = service;
+            mLane = lane;
         }
 
         @Override
-        public void handleMessage(Message msg) {
-            @SuppressWarnings("unchecked")
-            List<String> requestedUploads = (List<String>) msg.obj;
-            if (msg.obj != null) {
-                for (String requestedUpload : requestedUploads) {
-                    mService.uploadFile(requestedUpload);
+        public void run() {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+
+            try {
+                UploadScheduler.Task task;
+                while ((task = mService.mScheduler.take(mLane)) != null) {
+                    long start = System.currentTimeMillis();
+                    long bytes = 0;
+                    try {
+                        bytes = mService.uploadFile(task.uploadKey);
+                    } catch (RuntimeException e) {
+                        Log_OC.e(TAG, "Error uploading " + task.uploadKey, e);
+                    } finally {
+                        mService.mScheduler.finish(task, bytes, start, System.currentTimeMillis());
+                    }
+                    mService.stopIfIdle();
                 }
+            } catch (InterruptedException e) {
+                Log_OC.d(TAG, getName() + " interrupted");
             }
-            Log_OC.d(TAG, "Stopping command after id " + msg.arg1);
-            mService.mNotificationManager.cancel(FOREGROUND_SERVICE_ID);
-            mService.stopForeground(true);
-            mService.stopSelf(msg.arg1);
         }
     }
 }
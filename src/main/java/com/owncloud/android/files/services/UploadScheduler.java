@@ -0,0 +1,282 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.files.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Decides which requested upload of {@link FileUploader} runs next on which worker.
+ * <p>
+ * Uploads are split in two lanes by size, so that small files, e.g. photos, are not queued behind a large video.
+ * Within a lane the accounts take turns. Uploads of the same order key run one after the other in the order they
+ * were requested, in whichever lane; usually the key is the remote path of the upload, for end-to-end encrypted
+ * folders it is the folder, as every upload locks it and rewrites its metadata.
+ */
+public final class UploadScheduler {
+
+    public enum Lane {
+        SMALL,
+        LARGE
+    }
+
+    /**
+     * Files up to this size use the lane for small files; larger ones are uploaded in chunks anyway.
+     */
+    static final long SMALL_FILE_SIZE = 10 * 1024 * 1024;
+
+    static final class Task {
+        final String uploadKey;
+        final String orderKey;
+        final String accountName;
+        final Lane lane;
+
+        Task(String uploadKey, String orderKey, String accountName, Lane lane) {
+            this.uploadKey = uploadKey;
+            this.orderKey = orderKey;
+            this.accountName = accountName;
+            this.lane = lane;
+        }
+    }
+
+    /**
+     * Bytes uploaded in a lane and the time the lane spent uploading them.
+     */
+    public static final class LaneStats {
+        private final int uploads;
+        private final long bytes;
+        private final long busyMs;
+
+        LaneStats(int uploads, long bytes, long busyMs) {
+            this.uploads = uploads;
+            this.bytes = bytes;
+            this.busyMs = busyMs;
+        }
+
+        public int getUploads() {
+            return uploads;
+        }
+
+        /**
+         * @return transfer rate of the lane over the time any of its finished uploads was running, 0 if there are none
+         */
+        public long getBytesPerSecond() {
+            return busyMs > 0 ? bytes * 1000 / busyMs : 0;
+        }
+    }
+
+    private static final class LaneQueue {
+        // queued uploads per account, accounts in the order of their next turn
+        final Map<String, ArrayDeque<Task>> accounts = new HashMap<>();
+        final ArrayDeque<String> turns = new ArrayDeque<>();
+        int uploads;
+        long bytes;
+        // uploads of the lane overlap, so the time is the union of their runs: a busy period lasts while any upload
+        // of the lane is running, and is added once it ends
+        int running;
+        long busyMs;
+        long periodStartMs = Long.MAX_VALUE;
+        long periodEndMs = Long.MIN_VALUE;
+
+        long getBusyMs() {
+            return periodStartMs < periodEndMs ? busyMs + periodEndMs - periodStartMs : busyMs;
+        }
+    }
+
+    private final Map<Lane, LaneQueue> lanes = new EnumMap<>(Lane.class);
+    // queued and running uploads per order key, the running or next one first
+    private final Map<String, ArrayDeque<Task>> keys = new HashMap<>();
+    private int running;
+    private boolean shutdown;
+
+    public UploadScheduler() {
+        for (Lane lane : Lane.values()) {
+            lanes.put(lane, new LaneQueue());
+        }
+    }
+
+    /**
+     * @param workers number of upload workers, at least 2
+     * @return lane of every worker: one for large files, the rest for small files
+     */
+    static List<Lane> workerLanes(int workers) {
+        List<Lane> result = new ArrayList<>(workers);
+        result.add(Lane.LARGE);
+        for (int i = 1; i < workers; i++) {
+            result.add(Lane.SMALL);
+        }
+        return result;
+    }
+
+    static Lane laneFor(long size) {
+        return size > SMALL_FILE_SIZE ? Lane.LARGE : Lane.SMALL;
+    }
+
+    synchronized void enqueue(String uploadKey, String accountName, long size) {
+        enqueue(uploadKey, uploadKey, accountName, size);
+    }
+
+    /**
+     * @param orderKey uploads with the same order key run one at a time, in the order they were enqueued
+     */
+    synchronized void enqueue(String uploadKey, String orderKey, String accountName, long size) {
+        Task task = new Task(uploadKey, orderKey, accountName, laneFor(size));
+
+        LaneQueue queue = lanes.get(task.lane);
+        ArrayDeque<Task> accountTasks = queue.accounts.get(accountName);
+        if (accountTasks == null) {
+            accountTasks = new ArrayDeque<>();
+            queue.accounts.put(accountName, accountTasks);
+            queue.turns.addLast(accountName);
+        }
+        accountTasks.addLast(task);
+
+        ArrayDeque<Task> keyTasks = keys.get(orderKey);
+        if (keyTasks == null) {
+            keyTasks = new ArrayDeque<>();
+            keys.put(orderKey, keyTasks);
+        }
+        keyTasks.addLast(task);
+
+        notifyAll();
+    }
+
+    /**
+     * Waits for the next upload a worker of the lane may run. Workers for large files run small files while there
+     * are no large ones, workers for small files never run large ones.
+     *
+     * @return next upload, null once {@link #shutdown()} is called
+     */
+    @Nullable
+    synchronized Task take(Lane workerLane) throws InterruptedException {
+        while (!shutdown) {
+            Task task = poll(workerLane);
+            if (task == null && workerLane == Lane.LARGE) {
+                task = poll(Lane.SMALL);
+            }
+            if (task != null) {
+                running++;
+                lanes.get(task.lane).running++;
+                return task;
+            }
+            wait();
+        }
+        return null;
+    }
+
+    /**
+     * Records a finished upload and lets the next upload of the same order key start.
+     *
+     * @param bytes   uploaded bytes, 0 if the upload failed or was not performed
+     * @param startMs time the upload started
+     * @param endMs   time the upload ended
+     */
+    synchronized void finish(Task task, long bytes, long startMs, long endMs) {
+        running--;
+
+        LaneQueue queue = lanes.get(task.lane);
+        if (bytes > 0) {
+            queue.uploads++;
+            queue.bytes += bytes;
+            queue.periodStartMs = Math.min(queue.periodStartMs, startMs);
+            queue.periodEndMs = Math.max(queue.periodEndMs, endMs);
+        }
+
+        queue.running--;
+        if (queue.running == 0) {
+            queue.busyMs = queue.getBusyMs();
+            queue.periodStartMs = Long.MAX_VALUE;
+            queue.periodEndMs = Long.MIN_VALUE;
+        }
+
+        ArrayDeque<Task> keyTasks = keys.get(task.orderKey);
+        keyTasks.remove(task);
+        if (keyTasks.isEmpty()) {
+            keys.remove(task.orderKey);
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * @return true if no upload is queued or running
+     */
+    synchronized boolean isIdle() {
+        return running == 0 && keys.isEmpty();
+    }
+
+    synchronized LaneStats getStats(Lane lane) {
+        LaneQueue queue = lanes.get(lane);
+        return new LaneStats(queue.uploads, queue.bytes, queue.getBusyMs());
+    }
+
+    /**
+     * Wakes up all waiting workers, {@link #take(Lane)} returns null from now on.
+     */
+    synchronized void shutdown() {
+        shutdown = true;
+        notifyAll();
+    }
+
+    /**
+     * Takes the first upload that may start from the account whose turn it is, then moves the account to the end of
+     * the turns.
+     */
+    @Nullable
+    private Task poll(Lane lane) {
+        LaneQueue queue = lanes.get(lane);
+
+        int accounts = queue.turns.size();
+        for (int i = 0; i < accounts; i++) {
+            String accountName = queue.turns.pollFirst();
+            ArrayDeque<Task> accountTasks = queue.accounts.get(accountName);
+
+            Task next = null;
+            Iterator<Task> iterator = accountTasks.iterator();
+            while (iterator.hasNext()) {
+                Task task = iterator.next();
+                if (keys.get(task.orderKey).peekFirst() == task) {
+                    iterator.remove();
+                    next = task;
+                    break;
+                }
+            }
+
+            if (accountTasks.isEmpty()) {
+                queue.accounts.remove(accountName);
+            } else {
+                queue.turns.addLast(accountName);
+            }
+
+            if (next != null) {
+                return next;
+            }
+        }
+
+        return null;
+    }
+}
@@ -40,7 +40,6 @@ import com.owncloud.android.utils.EncryptionUtils;
 import com.owncloud.android.utils.FileStorageUtils;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
@@ -193,14 +192,20 @@ public class DownloadFileOperation extends RemoteOperation {
                 byte[] authenticationTag = EncryptionUtils.decodeStringToBase64Bytes(metadata.getFiles()
                         .get(file.getEncryptedFileName()).getAuthenticationTag());
 
+                File decryptedFile = new File(tmpFile.getAbsolutePath() + ".decrypted");
                 try {
-                    byte[] decryptedBytes = EncryptionUtils.decryptFile(tmpFile, key, iv, authenticationTag);
+                    EncryptionUtils.decryptFile(tmpFile, decryptedFile, key, iv, authenticationTag);
 
-                    try (FileOutputStream fileOutputStream = new FileOutputStream(tmpFile)) {
-                        fileOutputStream.write(decryptedBytes);
+                    if (!decryptedFile.renameTo(tmpFile)) {
+                        return new RemoteOperationResult(RemoteOperationResult.ResultCode.LOCAL_STORAGE_NOT_MOVED);
                     }
                 } catch (Exception e) {
                     return new RemoteOperationResult(e);
+                } finally {
+                    // only left over if decrypting or moving failed
+                    if (decryptedFile.exists() && !decryptedFile.delete()) {
+                        Log_OC.w(TAG, "Could not delete " + decryptedFile.getAbsolutePath());
+                    }
                 }
             }
             moved = tmpFile.renameTo(newFile);
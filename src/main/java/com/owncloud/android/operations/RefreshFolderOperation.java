@@ -30,6 +30,7 @@ import com.nextcloud.common.NextcloudClient;
 import com.owncloud.android.datamodel.ArbitraryDataProvider;
 import com.owncloud.android.datamodel.DecryptedFolderMetadata;
 import com.owncloud.android.datamodel.FileDataStorageManager;
+import com.owncloud.android.datamodel.FolderDiff;
 import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.lib.common.DirectEditing;
 import com.owncloud.android.lib.common.OwnCloudClient;
@@ -105,6 +106,9 @@ public class RefreshFolderOperation extends RemoteOperation {
     /** Files and folders contained in the synchronized folder after a successful operation */
     private List<OCFile> mChildren;
 
+    /** Churn caused in the local database by the last synchronization of the folder contents */
+    private FolderDiff mFolderDiff;
+
     /** Counter of conflicts found between local and remote files */
     private int mConflictsFound;
 
@@ -214,6 +218,17 @@ public class RefreshFolderOperation extends RemoteOperation {
         return mChildren;
     }
 
+    /**
+     * Returns how many children were inserted, updated, skipped or removed in the local database, if called after
+     * the folder contents were synchronized; null if they did not need to be fetched.
+     *
+     * @return Changes applied to the local database.
+     */
+    @Nullable
+    public FolderDiff getFolderDiff() {
+        return mFolderDiff;
+    }
+
     /**
      * Performs the synchronization.
      *
@@ -526,7 +541,8 @@ public class RefreshFolderOperation extends RemoteOperation {
         if (metadata != null) {
             updateFileNameForEncryptedFile(mStorageManager, metadata, mLocalFolder);
         }
-        mStorageManager.saveFolder(remoteFolder, updatedFiles, localFilesMap.values());
+        mFolderDiff = mStorageManager.saveFolder(remoteFolder, updatedFiles, localFilesMap.values());
+        Log_OC.d(TAG, "Synchronized " + mAccount.name + remoteFolder.getRemotePath() + " : " + mFolderDiff);
 
         mChildren = updatedFiles;
     }
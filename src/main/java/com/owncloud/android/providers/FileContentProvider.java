@@ -43,11 +43,13 @@ import android.os.Binder;
 import android.text.TextUtils;
 
 import com.nextcloud.client.core.Clock;
+import com.owncloud.android.BuildConfig;
 import com.owncloud.android.MainApp;
 import com.owncloud.android.R;
 import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.datamodel.SyncedFolder;
 import com.owncloud.android.db.ProviderMeta;
+import com.owncloud.android.db.PrefixSelection;
 import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
 import com.owncloud.android.files.services.NameCollisionPolicy;
 import com.owncloud.android.lib.common.accounts.AccountUtils;
@@ -58,8 +60,12 @@ import com.owncloud.android.utils.MimeType;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import javax.inject.Inject;
 
@@ -83,6 +89,7 @@ public class FileContentProvider extends ContentProvider {
     private static final int ARBITRARY_DATA = 9;
     private static final int VIRTUAL = 10;
     private static final int FILESYSTEM = 11;
+    private static final int VIRTUAL_FILES = 12;
     private static final String TAG = FileContentProvider.class.getSimpleName();
     // todo avoid string concatenation and use string formatting instead later.
     private static final String ERROR = "ERROR ";
@@ -91,6 +98,7 @@ public class FileContentProvider extends ContentProvider {
     private static final String TEXT = " TEXT, ";
     private static final String ALTER_TABLE = "ALTER TABLE ";
     private static final String ADD_COLUMN = " ADD COLUMN ";
+    private static final String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS ";
     private static final String UPGRADE_VERSION_MSG = "OUT of the ADD in onUpgrade; oldVersion == %d, newVersion == %d";
     private static final int SINGLE_PATH_SEGMENT = 1;
     public static final int ARBITRARY_DATA_TABLE_INTRODUCTION_VERSION = 20;
@@ -101,6 +109,11 @@ public class FileContentProvider extends ContentProvider {
     private Context mContext;
     private UriMatcher mUriMatcher;
 
+    /**
+     * Notifications postponed until the batch running on the current thread is committed, null outside of batches.
+     */
+    private final ThreadLocal<Set<Uri>> pendingNotifications = new ThreadLocal<>();
+
     @Override
     public int delete(@NonNull Uri uri, String where, String[] whereArgs) {
         if (isCallerNotAllowed(uri)) {
@@ -116,7 +129,7 @@ public class FileContentProvider extends ContentProvider {
         } finally {
             db.endTransaction();
         }
-        mContext.getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return count;
     }
 
@@ -168,38 +181,94 @@ public class FileContentProvider extends ContentProvider {
     }
 
     private int deleteDirectory(SQLiteDatabase db, Uri uri, String where, String... whereArgs) {
+        if (uri.getPathSegments().size() > MINIMUM_PATH_SEGMENTS_SIZE) {
+            return deleteDirectory(db, Long.parseLong(uri.getPathSegments().get(1)), where, whereArgs);
+        }
+
+        // no id given: remove every folder matching the selection, e.g. the root folder of an account
         int count = 0;
+        String[] projection = new String[]{ProviderTableMeta._ID};
+        try (Cursor folders = db.query(ProviderTableMeta.FILE_TABLE_NAME, projection, where, whereArgs,
+                                       null, null, null)) {
+            while (folders.moveToNext()) {
+                count += deleteDirectory(db, folders.getLong(0), null);
+            }
+        }
 
-        Cursor children = query(uri, null, null, null, null);
-        if (children != null) {
-            if (children.moveToFirst()) {
-                long childId;
-                boolean isDir;
-                while (!children.isAfterLast()) {
-                    childId = children.getLong(children.getColumnIndex(ProviderTableMeta._ID));
-                    isDir = MimeType.DIRECTORY.equals(children.getString(
-                        children.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)
-                    ));
-                    if (isDir) {
-                        count += delete(db, ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_DIR, childId),
-                                        null, (String[]) null);
-                    } else {
-                        count += delete(db, ContentUris.withAppendedId(ProviderTableMeta.CONTENT_URI_FILE, childId),
-                                        null, (String[]) null);
-                    }
-                    children.moveToNext();
-                }
+        return count;
+    }
+
+    /**
+     * Removes a folder and all its descendants, with one statement for the whole subtree instead of one per child.
+     * Shares and virtual entries of the removed files are removed too.
+     *
+     * The descendants are removed even if the folder itself does not match the selection. As in
+     * {@link #deleteSingleFile(SQLiteDatabase, Uri, String, String...)}, files without remote id are kept.
+     *
+     * @return number of removed files, including the folder
+     */
+    private int deleteDirectory(SQLiteDatabase db, long folderId, String where, String... whereArgs) {
+        String accountName = null;
+        String folderPath = null;
+        String[] projection = new String[]{ProviderTableMeta.FILE_ACCOUNT_OWNER, ProviderTableMeta.FILE_PATH};
+        try (Cursor folder = db.query(ProviderTableMeta.FILE_TABLE_NAME, projection, ProviderTableMeta._ID + "=?",
+                                      new String[]{String.valueOf(folderId)}, null, null, null)) {
+            if (folder.moveToFirst()) {
+                accountName = folder.getString(0);
+                folderPath = folder.getString(1);
             }
-            children.close();
         }
 
-        if (uri.getPathSegments().size() > MINIMUM_PATH_SEGMENTS_SIZE) {
-            count += db.delete(ProviderTableMeta.FILE_TABLE_NAME,
-                               ProviderTableMeta._ID + "=" + uri.getPathSegments().get(1)
-                                   + (!TextUtils.isEmpty(where) ? " AND (" + where + ")" : ""), whereArgs);
+        int count = 0;
+        if (folderPath != null) {
+            if (!folderPath.endsWith(OCFile.PATH_SEPARATOR)) {
+                folderPath = folderPath + OCFile.PATH_SEPARATOR;
+            }
+            count += deleteDescendants(db, accountName, folderPath);
         }
 
-        return count;
+        String idSelection = ProviderTableMeta._ID + "=" + folderId;
+        int deleted = db.delete(ProviderTableMeta.FILE_TABLE_NAME,
+                                idSelection + (!TextUtils.isEmpty(where) ? " AND (" + where + ")" : ""),
+                                whereArgs);
+
+        if (deleted > 0) {
+            db.delete(ProviderTableMeta.VIRTUAL_TABLE_NAME,
+                      ProviderTableMeta.VIRTUAL_OCFILE_ID + "=" + folderId,
+                      null);
+
+            if (folderPath != null) {
+                // shares of folders are stored with or without trailing separator
+                db.delete(ProviderTableMeta.OCSHARES_TABLE_NAME,
+                          ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + "=? AND " + ProviderTableMeta.OCSHARES_PATH
+                              + " IN (?, ?)",
+                          new String[]{accountName, folderPath, folderPath.substring(0, folderPath.length() - 1)});
+            }
+        }
+
+        return count + deleted;
+    }
+
+    private int deleteDescendants(SQLiteDatabase db, String accountName, String folderPath) {
+        String[] pathArgs = PrefixSelection.args(folderPath);
+        String[] selectionArgs = new String[]{accountName, pathArgs[0], pathArgs[1], folderPath};
+
+        String descendants = ProviderTableMeta.FILE_ACCOUNT_OWNER + "=? AND "
+            + PrefixSelection.selection(ProviderTableMeta.FILE_PATH) + " AND "
+            + ProviderTableMeta.FILE_PATH + "!=? AND ("
+            + ProviderTableMeta.FILE_REMOTE_ID + " IS NOT NULL OR "
+            + ProviderTableMeta.FILE_CONTENT_TYPE + "='" + MimeType.DIRECTORY + "')";
+        db.delete(ProviderTableMeta.VIRTUAL_TABLE_NAME,
+                  ProviderTableMeta.VIRTUAL_OCFILE_ID + " IN (SELECT " + ProviderTableMeta._ID + " FROM "
+                      + ProviderTableMeta.FILE_TABLE_NAME + " WHERE " + descendants + ")",
+                  selectionArgs);
+
+        String descendantShares = ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + "=? AND "
+            + PrefixSelection.selection(ProviderTableMeta.OCSHARES_PATH) + " AND "
+            + ProviderTableMeta.OCSHARES_PATH + "!=?";
+        db.delete(ProviderTableMeta.OCSHARES_TABLE_NAME, descendantShares, selectionArgs);
+
+        return db.delete(ProviderTableMeta.FILE_TABLE_NAME, descendants, selectionArgs);
     }
 
     private int deleteSingleFile(SQLiteDatabase db, Uri uri, String where, String... whereArgs) {
@@ -257,7 +326,7 @@ public class FileContentProvider extends ContentProvider {
         } finally {
             db.endTransaction();
         }
-        mContext.getContentResolver().notifyChange(newUri, null);
+        notifyChange(newUri);
         return newUri;
     }
 
@@ -452,6 +521,7 @@ public class FileContentProvider extends ContentProvider {
         mUriMatcher.addURI(authority, "arbitrary_data", ARBITRARY_DATA);
         mUriMatcher.addURI(authority, "virtual", VIRTUAL);
         mUriMatcher.addURI(authority, "filesystem", FILESYSTEM);
+        mUriMatcher.addURI(authority, "virtual_files", VIRTUAL_FILES);
 
         return true;
     }
@@ -473,16 +543,9 @@ public class FileContentProvider extends ContentProvider {
                 }
         }
 
-        Cursor result;
+        // no transaction: with write-ahead logging reads run on their own connection and are not blocked by writes
         SQLiteDatabase db = mDbHelper.getReadableDatabase();
-        db.beginTransaction();
-        try {
-            result = query(db, uri, projection, selection, selectionArgs, sortOrder);
-            db.setTransactionSuccessful();
-        } finally {
-            db.endTransaction();
-        }
-        return result;
+        return query(db, uri, projection, selection, selectionArgs, sortOrder);
     }
 
     private Cursor query(SQLiteDatabase db, Uri uri, String[] projectionArray, String selection, String[] selectionArgs,
@@ -553,6 +616,21 @@ public class FileContentProvider extends ContentProvider {
                     sqlQuery.appendWhere(ProviderTableMeta._ID + "=" + uri.getPathSegments().get(1));
                 }
                 break;
+            case VIRTUAL_FILES:
+                sqlQuery.setTables(ProviderTableMeta.FILE_TABLE_NAME + " INNER JOIN "
+                                       + ProviderTableMeta.VIRTUAL_TABLE_NAME + " ON "
+                                       + ProviderTableMeta.FILE_TABLE_NAME + "." + ProviderTableMeta._ID + "="
+                                       + ProviderTableMeta.VIRTUAL_TABLE_NAME + "."
+                                       + ProviderTableMeta.VIRTUAL_OCFILE_ID);
+
+                // _id exists in both tables, rows are files
+                HashMap<String, String> virtualFilesProjectionMap = new HashMap<>();
+                for (String column : ProviderTableMeta.FILE_ALL_COLUMNS) {
+                    virtualFilesProjectionMap.put(column, ProviderTableMeta.FILE_TABLE_NAME + "." + column + " AS "
+                        + column);
+                }
+                sqlQuery.setProjectionMap(virtualFilesProjectionMap);
+                break;
             default:
                 throw new IllegalArgumentException("Unknown uri id: " + uri);
         }
@@ -592,9 +670,6 @@ public class FileContentProvider extends ContentProvider {
             order = sortOrder;
         }
 
-        // DB case_sensitive
-        db.execSQL("PRAGMA case_sensitive_like = true");
-
         // only file list is accessible via content provider, so only this has to be protected with projectionMap
         if ((mUriMatcher.match(uri) == ROOT_DIRECTORY || mUriMatcher.match(uri) == SINGLE_FILE ||
             mUriMatcher.match(uri) == DIRECTORY) && projectionArray != null) {
@@ -634,7 +709,7 @@ public class FileContentProvider extends ContentProvider {
         } finally {
             db.endTransaction();
         }
-        mContext.getContentResolver().notifyChange(uri, null);
+        notifyChange(uri);
         return count;
     }
 
@@ -668,6 +743,8 @@ public class FileContentProvider extends ContentProvider {
         ContentProviderResult[] results = new ContentProviderResult[operations.size()];
         int i = 0;
 
+        boolean outermostBatch = startBatch();
+        boolean successful = false;
         SQLiteDatabase database = mDbHelper.getWritableDatabase();
         database.beginTransaction();  // it's supposed that transactions can be nested
         try {
@@ -676,13 +753,102 @@ public class FileContentProvider extends ContentProvider {
                 i++;
             }
             database.setTransactionSuccessful();
+            successful = true;
         } finally {
             database.endTransaction();
+            if (outermostBatch) {
+                finishBatch(successful);
+            }
         }
         Log_OC.d("FileContentProvider", "applied batch in provider " + this);
         return results;
     }
 
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        if (isCallerNotAllowed(uri)) {
+            return -1;
+        }
+
+        int count = 0;
+        boolean outermostBatch = startBatch();
+        boolean successful = false;
+        SQLiteDatabase db = mDbHelper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (ContentValues value : values) {
+                notifyChange(insert(db, uri, value));
+                count++;
+            }
+            db.setTransactionSuccessful();
+            successful = true;
+        } finally {
+            db.endTransaction();
+            if (outermostBatch) {
+                finishBatch(successful);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Postpones change notifications of the current thread until {@link #finishBatch(boolean)}.
+     *
+     * @return true if no batch was running yet on this thread and the caller has to finish it
+     */
+    private boolean startBatch() {
+        if (pendingNotifications.get() != null) {
+            return false;
+        }
+
+        pendingNotifications.set(new LinkedHashSet<>());
+        return true;
+    }
+
+    /**
+     * Sends the notifications collected during the batch, once per affected table. Nothing is sent if the batch was
+     * rolled back.
+     */
+    private void finishBatch(boolean successful) {
+        Set<Uri> notifications = pendingNotifications.get();
+        pendingNotifications.remove();
+
+        if (successful && notifications != null) {
+            for (Uri uri : notifications) {
+                mContext.getContentResolver().notifyChange(uri, null);
+            }
+        }
+    }
+
+    private void notifyChange(Uri uri) {
+        Set<Uri> notifications = pendingNotifications.get();
+
+        if (notifications == null) {
+            mContext.getContentResolver().notifyChange(uri, null);
+        } else if (uri != null) {
+            notifications.add(getCollectionUri(uri));
+        }
+    }
+
+    /**
+     * Observers of single rows are registered below the uri of their table, so notifying the table reaches all of
+     * them with one notification.
+     *
+     * @return uri without trailing row id
+     */
+    private static Uri getCollectionUri(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.isEmpty() || !TextUtils.isDigitsOnly(segments.get(segments.size() - 1))) {
+            return uri;
+        }
+
+        Uri.Builder builder = uri.buildUpon().path(null);
+        for (String segment : segments.subList(0, segments.size() - 1)) {
+            builder.appendPath(segment);
+        }
+        return builder.build();
+    }
+
     private boolean checkIfColumnExists(SQLiteDatabase database, String table, String column) {
         Cursor cursor = database.rawQuery("SELECT * FROM " + table + " LIMIT 0", null);
         boolean exists = cursor.getColumnIndex(column) != -1;
@@ -895,6 +1061,58 @@ public class FileContentProvider extends ContentProvider {
         );
     }
 
+    /**
+     * Indexes for the most frequent lookups: files by account and path, children of a folder, filesystem entries of a
+     * synced folder, virtual folders by type and shares by path.
+     */
+    private void createIndexes(SQLiteDatabase db) {
+        db.execSQL(CREATE_INDEX + "filelist_file_owner_path_index ON " + ProviderTableMeta.FILE_TABLE_NAME + "("
+                       + ProviderTableMeta.FILE_ACCOUNT_OWNER + ", " + ProviderTableMeta.FILE_PATH + ")");
+        db.execSQL(CREATE_INDEX + "filelist_parent_index ON " + ProviderTableMeta.FILE_TABLE_NAME + "("
+                       + ProviderTableMeta.FILE_PARENT + ")");
+        db.execSQL(CREATE_INDEX + "filesystem_local_path_synced_folder_index ON "
+                       + ProviderTableMeta.FILESYSTEM_TABLE_NAME + "("
+                       + ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH + ", "
+                       + ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + ")");
+        db.execSQL(CREATE_INDEX + "virtual_type_index ON " + ProviderTableMeta.VIRTUAL_TABLE_NAME + "("
+                       + ProviderTableMeta.VIRTUAL_TYPE + ")");
+        db.execSQL(CREATE_INDEX + "ocshares_path_owner_index ON " + ProviderTableMeta.OCSHARES_TABLE_NAME + "("
+                       + ProviderTableMeta.OCSHARES_PATH + ", " + ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + ")");
+    }
+
+    /**
+     * Logs the query plan of the most frequent lookups, to spot full table scans during development.
+     */
+    private void logQueryPlans(SQLiteDatabase db) {
+        String[][] queries = {
+            {"SELECT * FROM " + ProviderTableMeta.FILE_TABLE_NAME + " WHERE " + ProviderTableMeta.FILE_ACCOUNT_OWNER
+                + " = ? AND " + ProviderTableMeta.FILE_PATH + " = ?", "account", "/"},
+            {"SELECT * FROM " + ProviderTableMeta.FILE_TABLE_NAME + " WHERE " + ProviderTableMeta.FILE_ACCOUNT_OWNER
+                + " = ? AND " + PrefixSelection.selection(ProviderTableMeta.FILE_PATH), "account", "/", "0"},
+            {"SELECT * FROM " + ProviderTableMeta.FILE_TABLE_NAME + " WHERE " + ProviderTableMeta.FILE_PARENT
+                + " = ?", "1"},
+            {"SELECT * FROM " + ProviderTableMeta.FILESYSTEM_TABLE_NAME + " WHERE "
+                + ProviderTableMeta.FILESYSTEM_FILE_LOCAL_PATH + " = ? AND "
+                + ProviderTableMeta.FILESYSTEM_SYNCED_FOLDER_ID + " = ?", "/", "1"},
+            {"SELECT * FROM " + ProviderTableMeta.VIRTUAL_TABLE_NAME + " WHERE " + ProviderTableMeta.VIRTUAL_TYPE
+                + " = ?", "FAVORITE"},
+            {"SELECT * FROM " + ProviderTableMeta.OCSHARES_TABLE_NAME + " WHERE " + ProviderTableMeta.OCSHARES_PATH
+                + " = ? AND " + ProviderTableMeta.OCSHARES_ACCOUNT_OWNER + " = ?", "/", "account"},
+        };
+
+        for (String[] query : queries) {
+            String[] args = Arrays.copyOfRange(query, 1, query.length);
+            try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query[0], args)) {
+                int detailIndex = cursor.getColumnIndex("detail");
+                while (cursor.moveToNext()) {
+                    Log_OC.d(SQL, "Query plan of " + query[0] + ": " + cursor.getString(detailIndex));
+                }
+            } catch (SQLException e) {
+                Log_OC.e(SQL, "Could not explain " + query[0], e);
+            }
+        }
+    }
+
     /**
      * Version 10 of database does not modify its scheme. It coincides with the upgrade of the
      * ownCloud account names structure to include in it the path to the server instance. Updating
@@ -1025,6 +1243,7 @@ public class FileContentProvider extends ContentProvider {
             case ARBITRARY_DATA:
             case VIRTUAL:
             case FILESYSTEM:
+            case VIRTUAL_FILES:
                 String callingPackage = mContext.getPackageManager().getNameForUid(Binder.getCallingUid());
                 return callingPackage == null || !callingPackage.equals(mContext.getPackageName());
 
@@ -1039,6 +1258,18 @@ public class FileContentProvider extends ContentProvider {
     class DataBaseHelper extends SQLiteOpenHelper {
         DataBaseHelper(Context context) {
             super(context, ProviderMeta.DB_NAME, null, ProviderMeta.DB_VERSION);
+
+            // readers are not blocked by running sync writes
+            setWriteAheadLoggingEnabled(true);
+        }
+
+        @Override
+        public void onOpen(SQLiteDatabase db) {
+            super.onOpen(db);
+
+            if (BuildConfig.DEBUG) {
+                logQueryPlans(db);
+            }
         }
 
         @Override
@@ -1070,6 +1301,9 @@ public class FileContentProvider extends ContentProvider {
 
             // Create filesystem table
             createFileSystemTable(db);
+
+            // Create indexes
+            createIndexes(db);
         }
 
         @Override
@@ -2330,6 +2564,23 @@ public class FileContentProvider extends ContentProvider {
             if (!upgraded) {
                 Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
             }
+
+            if (oldVersion < 63 && newVersion >= 63) {
+                Log_OC.i(SQL, "Entering in the #63 add indexes");
+                db.beginTransaction();
+                try {
+                    createIndexes(db);
+
+                    upgraded = true;
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            }
+
+            if (!upgraded) {
+                Log_OC.i(SQL, String.format(Locale.ENGLISH, UPGRADE_VERSION_MSG, oldVersion, newVersion));
+            }
         }
     }
 }
@@ -162,12 +162,12 @@ public abstract class EditorWebView extends ExternalSiteWebView {
         } else {
             if ((MimeTypeUtil.isImage(file) || MimeTypeUtil.isVideo(file)) && file.getRemoteId() != null) {
                 // Thumbnail in cache?
-                Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromDiskCache(
-                    ThumbnailsCacheManager.PREFIX_THUMBNAIL + file.getRemoteId());
+                String imageKey = ThumbnailsCacheManager.PREFIX_THUMBNAIL + file.getRemoteId();
+                Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromDiskCache(imageKey);
 
                 if (thumbnail != null && !file.isUpdateThumbnailNeeded()) {
                     if (MimeTypeUtil.isVideo(file)) {
-                        Bitmap withOverlay = ThumbnailsCacheManager.addVideoOverlay(thumbnail);
+                        Bitmap withOverlay = ThumbnailsCacheManager.getVideoThumbnail(imageKey, thumbnail);
                         binding.thumbnail.setImageBitmap(withOverlay);
                     } else {
                         binding.thumbnail.setImageBitmap(thumbnail);
@@ -115,6 +115,7 @@ public class SettingsActivity extends ThemedPreferenceActivity
 
     public final static String PREFERENCE_USE_FINGERPRINT = "use_fingerprint";
     public static final String PREFERENCE_SHOW_MEDIA_SCAN_NOTIFICATIONS = "show_media_scan_notifications";
+    private static final String PREFERENCE_AUTO_UPLOAD_FAST_FINGERPRINT = "auto_upload_fast_fingerprint";
 
     private static final int ACTION_REQUEST_PASSCODE = 5;
     private static final int ACTION_CONFIRM_PASSCODE = 6;
@@ -175,7 +176,7 @@ public class SettingsActivity extends ThemedPreferenceActivity
         setupAutoUploadCategory(accentColor, preferenceScreen);
 
         // Details
-        setupDetailsCategory(accentColor, preferenceScreen);
+        setupDetailsCategory(accentColor);
 
         // More
         setupMoreCategory(accentColor);
@@ -514,7 +515,7 @@ public class SettingsActivity extends ThemedPreferenceActivity
         }
     }
 
-    private void setupDetailsCategory(int accentColor, PreferenceScreen preferenceScreen) {
+    private void setupDetailsCategory(int accentColor) {
         PreferenceCategory preferenceCategoryDetails = (PreferenceCategory) findPreference("details");
         preferenceCategoryDetails.setTitle(ThemeTextUtils.getColoredTitle(getString(R.string.prefs_category_details),
                                                                           accentColor));
@@ -522,7 +523,6 @@ public class SettingsActivity extends ThemedPreferenceActivity
         boolean fPassCodeEnabled = getResources().getBoolean(R.bool.passcode_enabled);
         boolean fDeviceCredentialsEnabled = getResources().getBoolean(R.bool.device_credentials_enabled);
         boolean fShowHiddenFilesEnabled = getResources().getBoolean(R.bool.show_hidden_files_enabled);
-        boolean fSyncedFolderLightEnabled = getResources().getBoolean(R.bool.syncedFolder_light);
         boolean fShowMediaScanNotifications = preferences.isShowMediaScanNotifications();
 
         setupLockPreference(preferenceCategoryDetails, fPassCodeEnabled, fDeviceCredentialsEnabled);
@@ -531,10 +531,16 @@ public class SettingsActivity extends ThemedPreferenceActivity
 
         setupShowMediaScanNotifications(preferenceCategoryDetails, fShowMediaScanNotifications);
 
-        if (!fPassCodeEnabled && !fDeviceCredentialsEnabled && !fShowHiddenFilesEnabled && fSyncedFolderLightEnabled
-            && fShowMediaScanNotifications) {
-            preferenceScreen.removePreference(preferenceCategoryDetails);
-        }
+        setupAutoUploadFastFingerprintPreference();
+    }
+
+    private void setupAutoUploadFastFingerprintPreference() {
+        SwitchPreference fastFingerprint = (SwitchPreference) findPreference(PREFERENCE_AUTO_UPLOAD_FAST_FINGERPRINT);
+        fastFingerprint.setChecked(preferences.isAutoUploadFastFingerprintEnabled());
+        fastFingerprint.setOnPreferenceClickListener(preference -> {
+            preferences.setAutoUploadFastFingerprintEnabled(fastFingerprint.isChecked());
+            return true;
+        });
     }
 
     private void setupShowMediaScanNotifications(PreferenceCategory preferenceCategoryDetails,
@@ -48,17 +48,21 @@ import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.datamodel.UploadsStorageManager;
 import com.owncloud.android.files.services.FileUploader;
 import com.owncloud.android.files.services.FileUploader.FileUploaderBinder;
+import com.owncloud.android.files.services.UploadScheduler;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.operations.CheckCurrentCredentialsOperation;
 import com.owncloud.android.ui.adapter.UploadListAdapter;
 import com.owncloud.android.ui.decoration.MediaGridItemDecoration;
+import com.owncloud.android.utils.DisplayUtils;
 import com.owncloud.android.utils.FilesSyncHelper;
 import com.owncloud.android.utils.theme.ThemeLayoutUtils;
+import com.owncloud.android.utils.theme.ThemeToolbarUtils;
 
 import javax.inject.Inject;
 
+import androidx.appcompat.app.ActionBar;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.recyclerview.widget.GridLayoutManager;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
@@ -303,6 +307,28 @@ public class UploadListActivity extends FileActivity {
     }
 
 
+    /**
+     * Shows the transfer rates of the upload lanes for small and large files as subtitle, once uploads finished.
+     */
+    private void updateLaneThroughput() {
+        ActionBar actionBar = getSupportActionBar();
+        if (actionBar == null || mUploaderBinder == null) {
+            return;
+        }
+
+        UploadScheduler.LaneStats small = mUploaderBinder.getLaneStats(UploadScheduler.Lane.SMALL);
+        UploadScheduler.LaneStats large = mUploaderBinder.getLaneStats(UploadScheduler.Lane.LARGE);
+        if (small.getUploads() == 0 && large.getUploads() == 0) {
+            actionBar.setSubtitle(null);
+            return;
+        }
+
+        String subtitle = getString(R.string.uploads_view_lane_throughput,
+                                    DisplayUtils.bytesToHumanReadable(small.getBytesPerSecond()),
+                                    DisplayUtils.bytesToHumanReadable(large.getBytesPerSecond()));
+        ThemeToolbarUtils.setColoredSubtitle(actionBar, subtitle, this);
+    }
+
     @Override
     protected ServiceConnection newTransferenceServiceConnection() {
         return new UploadListServiceConnection();
@@ -320,6 +346,7 @@ public class UploadListActivity extends FileActivity {
                     mUploaderBinder = (FileUploaderBinder) service;
                     Log_OC.d(TAG, "UploadListActivity connected to Upload service. component: " +
                             component + " service: " + service);
+                    updateLaneThroughput();
                 } else {
                     Log_OC.d(TAG, "mUploaderBinder already set. mUploaderBinder: " +
                             mUploaderBinder + " service:" + service);
@@ -349,6 +376,7 @@ public class UploadListActivity extends FileActivity {
         @Override
         public void onReceive(Context context, Intent intent) {
             uploadListAdapter.loadUploadItemsFromDb();
+            updateLaneThroughput();
         }
     }
 }
@@ -36,7 +36,17 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import androidx.annotation.Nullable;
+
+/**
+ * Bitmap cache on disk. Reads run concurrently, writes are serialized per key only.
+ */
 public class DiskLruImageCache {
 
     private DiskLruCache mDiskCache;
@@ -46,20 +56,47 @@ public class DiskLruImageCache {
     private static final int VALUE_COUNT = 1;
     private static final int IO_BUFFER_SIZE = 8 * 1024;
     private static final String CACHE_TEST_DISK = "cache_test_DISK_";
+    private static final int WRITE_LOCK_STRIPES = 16;
+    private static final int FLUSH_EDIT_COUNT = 32;
+    private static final long FLUSH_DELAY_MS = 2000;
+
+    /**
+     * Entries start with a header holding the dimensions of the bitmap, so scaled reads need no bounds decode. Entries
+     * written by older versions have no header and start directly with the compressed image.
+     */
+    private static final int HEADER_MAGIC = 0x4E434448; // NCDH
+    static final int HEADER_SIZE = 12;
 
     private static final String TAG = DiskLruImageCache.class.getSimpleName();
 
+    private final Object[] mWriteLocks = new Object[WRITE_LOCK_STRIPES];
+    private final AtomicInteger mUnflushedEdits = new AtomicInteger();
+    private final ScheduledExecutorService mFlushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, TAG + "-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public DiskLruImageCache(File diskCacheDir, int diskCacheSize, CompressFormat compressFormat, int quality)
         throws IOException {
         mDiskCache = DiskLruCache.open(diskCacheDir, CACHE_VERSION, VALUE_COUNT, diskCacheSize);
         mCompressFormat = compressFormat;
         mCompressQuality = quality;
+
+        for (int i = 0; i < WRITE_LOCK_STRIPES; i++) {
+            mWriteLocks[i] = new Object();
+        }
+    }
+
+    private Object getWriteLock(String validKey) {
+        return mWriteLocks[(validKey.hashCode() & Integer.MAX_VALUE) % WRITE_LOCK_STRIPES];
     }
 
     private boolean writeBitmapToFile(Bitmap bitmap, DiskLruCache.Editor editor) throws IOException {
         OutputStream out = null;
         try {
             out = new BufferedOutputStream(editor.newOutputStream(0), IO_BUFFER_SIZE);
+            writeHeader(out, bitmap.getWidth(), bitmap.getHeight());
             return bitmap.compress(mCompressFormat, mCompressQuality, out);
         } finally {
             if (out != null) {
@@ -69,9 +106,16 @@ public class DiskLruImageCache {
     }
 
     public void put(String key, Bitmap data) {
+        String validKey = convertToValidKey(key);
 
+        // DiskLruCache allows only one editor per key, wait for it instead of dropping the new bitmap
+        synchronized (getWriteLock(validKey)) {
+            write(validKey, data);
+        }
+    }
+
+    private void write(String validKey, Bitmap data) {
         DiskLruCache.Editor editor = null;
-        String validKey = convertToValidKey(key);
         try {
             editor = mDiskCache.edit(validKey);
             if (editor == null) {
@@ -79,8 +123,8 @@ public class DiskLruImageCache {
             }
 
             if (writeBitmapToFile(data, editor)) {
-                mDiskCache.flush();
                 editor.commit();
+                onEdit();
                 if (BuildConfig.DEBUG) {
                     Log_OC.d(CACHE_TEST_DISK, "image put on disk cache " + validKey);
                 }
@@ -104,66 +148,91 @@ public class DiskLruImageCache {
         }
     }
 
+    /**
+     * Every edit appends to the journal; it is written to disk after a number of edits or shortly after the first
+     * unwritten edit, not on every put. Lost journal entries only cost cached thumbnails.
+     */
+    private void onEdit() {
+        int edits = mUnflushedEdits.incrementAndGet();
+        if (edits >= FLUSH_EDIT_COUNT) {
+            flush();
+        } else if (edits == 1) {
+            mFlushExecutor.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes pending journal entries to disk.
+     */
+    public void flush() {
+        if (mUnflushedEdits.getAndSet(0) > 0) {
+            try {
+                mDiskCache.flush();
+            } catch (IOException | IllegalStateException e) {
+                Log_OC.d(TAG, "Error flushing journal", e);
+            }
+        }
+    }
+
     public Bitmap getScaledBitmap(String key, int width, int height) {
         Bitmap bitmap = null;
-        DiskLruCache.Snapshot snapshot = null;
-        InputStream inputStream = null;
-        BufferedInputStream buffIn = null;
         String validKey = convertToValidKey(key);
 
-        try {
-            snapshot = mDiskCache.get(validKey);
+        try (DiskLruCache.Snapshot snapshot = mDiskCache.get(validKey)) {
             if (snapshot == null) {
                 return null;
             }
-            inputStream = snapshot.getInputStream(0);
-            if (inputStream != null) {
-                buffIn = new BufferedInputStream(inputStream, IO_BUFFER_SIZE);
 
-                // First decode with inJustDecodeBounds=true to check dimensions
+            try (InputStream buffIn = new BufferedInputStream(snapshot.getInputStream(0), IO_BUFFER_SIZE)) {
                 final BitmapFactory.Options options = new BitmapFactory.Options();
                 options.inScaled = true;
                 options.inPurgeable = true;
                 options.inPreferQualityOverSpeed = false;
                 options.inMutable = false;
-                options.inJustDecodeBounds = true;
 
-                BitmapFactory.decodeStream(buffIn, null, options);
-
-                snapshot = mDiskCache.get(validKey);
-                inputStream = snapshot.getInputStream(0);
-                buffIn = new BufferedInputStream(inputStream, IO_BUFFER_SIZE);
+                int[] dimensions = readHeader(buffIn);
+                if (dimensions != null) {
+                    options.outWidth = dimensions[0];
+                    options.outHeight = dimensions[1];
+                } else {
+                    decodeBounds(validKey, options);
+                }
 
                 // Calculate inSampleSize
                 options.inSampleSize = BitmapUtils.calculateSampleFactor(options, width, height);
 
                 // Decode bitmap with inSampleSize set
-                options.inJustDecodeBounds = false;
                 bitmap = BitmapFactory.decodeStream(buffIn, null, options);
             }
         } catch (Exception e) {
             Log_OC.e(TAG, e.getMessage(), e);
-        } finally {
-            if (snapshot != null) {
-                snapshot.close();
-            }
+        }
 
-            if (inputStream != null) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    // nothing to do
-                }
-            }
+        if (BuildConfig.DEBUG) {
+            Log_OC.d(CACHE_TEST_DISK, bitmap == null ? "not found" : "image read from disk " + validKey);
+        }
 
-            if (buffIn != null) {
-                try {
-                    buffIn.close();
-                } catch (IOException e) {
-                    // nothing to do
+        return bitmap;
+    }
+
+    /**
+     * Reads the dimensions of an entry without header into outWidth and outHeight of the options.
+     */
+    private void decodeBounds(String validKey, BitmapFactory.Options options) throws IOException {
+        try (DiskLruCache.Snapshot snapshot = mDiskCache.get(validKey)) {
+            if (snapshot != null) {
+                try (InputStream buffIn = new BufferedInputStream(snapshot.getInputStream(0), IO_BUFFER_SIZE)) {
+                    options.inJustDecodeBounds = true;
+                    BitmapFactory.decodeStream(buffIn, null, options);
+                    options.inJustDecodeBounds = false;
                 }
             }
         }
+    }
+
+    public Bitmap getBitmap(String key) {
+        String validKey = convertToValidKey(key);
+        Bitmap bitmap = decodeBitmap(validKey);
 
         if (BuildConfig.DEBUG) {
             Log_OC.d(CACHE_TEST_DISK, bitmap == null ? "not found" : "image read from disk " + validKey);
@@ -172,12 +241,11 @@ public class DiskLruImageCache {
         return bitmap;
     }
 
-    public Bitmap getBitmap(String key) {
+    private Bitmap decodeBitmap(String validKey) {
         Bitmap bitmap = null;
         DiskLruCache.Snapshot snapshot = null;
         InputStream in = null;
         BufferedInputStream buffIn = null;
-        String validKey = convertToValidKey(key);
 
         try {
             snapshot = mDiskCache.get(validKey);
@@ -187,6 +255,7 @@ public class DiskLruImageCache {
             in = snapshot.getInputStream(0);
             if (in != null) {
                 buffIn = new BufferedInputStream(in, IO_BUFFER_SIZE);
+                readHeader(buffIn);
                 bitmap = BitmapFactory.decodeStream(buffIn);
             }
         } catch (IOException e) {
@@ -211,10 +280,6 @@ public class DiskLruImageCache {
             }
         }
 
-        if (BuildConfig.DEBUG) {
-            Log_OC.d(CACHE_TEST_DISK, bitmap == null ? "not found" : "image read from disk " + validKey);
-        }
-
         return bitmap;
     }
 
@@ -253,6 +318,36 @@ public class DiskLruImageCache {
         return mDiskCache.getDirectory();
     }
 
+    static void writeHeader(OutputStream out, int width, int height) throws IOException {
+        out.write(ByteBuffer.allocate(HEADER_SIZE).putInt(HEADER_MAGIC).putInt(width).putInt(height).array());
+    }
+
+    /**
+     * Skips the header of the entry, if there is one.
+     *
+     * @param in stream at the start of the entry, must support mark and reset
+     * @return width and height stored in the header, null if the entry has no header
+     */
+    @Nullable
+    static int[] readHeader(InputStream in) throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        in.mark(HEADER_SIZE);
+
+        int read = 0;
+        int count;
+        while (read < HEADER_SIZE && (count = in.read(header, read, HEADER_SIZE - read)) != -1) {
+            read += count;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(header);
+        if (read == HEADER_SIZE && buffer.getInt() == HEADER_MAGIC) {
+            return new int[]{buffer.getInt(), buffer.getInt()};
+        }
+
+        in.reset();
+        return null;
+    }
+
     private String convertToValidKey(String key) {
         return Integer.toString(key.hashCode());
     }
@@ -0,0 +1,115 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Normalized names of the files of one directory, in the order of the file list, for filtering by name while typing.
+ * Built once per file list instead of on every keystroke.
+ */
+final class FileNameIndex {
+    private static final int CANCELLATION_CHECK_INTERVAL = 1024;
+
+    interface Cancellation {
+        boolean isCancelled();
+    }
+
+    private final List<OCFile> source;
+    @Nullable private final String directoryPath;
+    private final boolean showHiddenFiles;
+
+    private final OCFile[] files;
+    private final String[] names;
+
+    /**
+     * @param source          files in the order they are shown
+     * @param directoryPath   only files directly within this directory are indexed, null for all
+     * @param showHiddenFiles whether hidden files are indexed
+     */
+    FileNameIndex(List<OCFile> source, @Nullable String directoryPath, boolean showHiddenFiles) {
+        this.source = source;
+        this.directoryPath = directoryPath;
+        this.showHiddenFiles = showHiddenFiles;
+
+        List<OCFile> indexedFiles = new ArrayList<>(source.size());
+        Set<OCFile> seen = new HashSet<>();
+        for (OCFile file : source) {
+            if ((directoryPath == null || directoryPath.equals(file.getParentRemotePath())) &&
+                (showHiddenFiles || !file.isHidden()) &&
+                seen.add(file)) {
+                indexedFiles.add(file);
+            }
+        }
+
+        files = indexedFiles.toArray(new OCFile[0]);
+        names = new String[files.length];
+        for (int i = 0; i < files.length; i++) {
+            names[i] = normalize(files[i].getFileName());
+        }
+    }
+
+    /**
+     * @return true if the index was built for the very same file list and settings
+     */
+    boolean isFor(List<OCFile> source, @Nullable String directoryPath, boolean showHiddenFiles) {
+        return this.source == source &&
+            (this.directoryPath == null ? directoryPath == null : this.directoryPath.equals(directoryPath)) &&
+            this.showHiddenFiles == showHiddenFiles;
+    }
+
+    /**
+     * @param constraint text the names have to contain, all files if empty
+     * @return matching files in list order, null if cancelled
+     */
+    @Nullable
+    List<OCFile> filter(CharSequence constraint, Cancellation cancellation) {
+        String query = normalize(constraint);
+        List<OCFile> result = new ArrayList<>();
+
+        for (int i = 0; i < names.length; i++) {
+            if (i % CANCELLATION_CHECK_INTERVAL == 0 && cancellation.isCancelled()) {
+                return null;
+            }
+
+            if (names[i].contains(query)) {
+                result.add(files[i]);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Composed and lower case, so that names typed on one device match names created on another.
+     */
+    static String normalize(CharSequence text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFC).toLowerCase(Locale.getDefault());
+    }
+}
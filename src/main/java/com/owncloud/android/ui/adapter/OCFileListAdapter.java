@@ -24,6 +24,7 @@
 
 package com.owncloud.android.ui.adapter;
 
+import android.accounts.Account;
 import android.accounts.AccountManager;
 import android.app.Activity;
 import android.content.ContentValues;
@@ -57,12 +58,12 @@ import com.owncloud.android.databinding.ListHeaderBinding;
 import com.owncloud.android.databinding.ListItemBinding;
 import com.owncloud.android.datamodel.FileDataStorageManager;
 import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.datamodel.ThumbnailPrefetcher;
 import com.owncloud.android.datamodel.ThumbnailsCacheManager;
 import com.owncloud.android.datamodel.VirtualFolderType;
 import com.owncloud.android.db.ProviderMeta;
 import com.owncloud.android.files.services.FileDownloader;
 import com.owncloud.android.files.services.FileUploader;
-import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.common.utils.Log_OC;
 import com.owncloud.android.lib.resources.files.ReadFileRemoteOperation;
@@ -70,7 +71,6 @@ import com.owncloud.android.lib.resources.files.model.RemoteFile;
 import com.owncloud.android.lib.resources.shares.OCShare;
 import com.owncloud.android.lib.resources.shares.ShareType;
 import com.owncloud.android.lib.resources.shares.ShareeUser;
-import com.owncloud.android.operations.RefreshFolderOperation;
 import com.owncloud.android.operations.RemoteOperationFailedException;
 import com.owncloud.android.services.OperationsService;
 import com.owncloud.android.ui.AvatarGroupLayout;
@@ -89,16 +89,26 @@ import com.owncloud.android.utils.theme.ThemeDrawableUtils;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.Vector;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.VisibleForTesting;
 import androidx.core.content.res.ResourcesCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 /**
@@ -112,8 +122,10 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     private final String userId;
     private Activity activity;
     private AppPreferences preferences;
+    private final ThumbnailPrefetcher thumbnailPrefetcher;
     private List<OCFile> mFiles = new ArrayList<>();
-    private List<OCFile> mFilesAll = new ArrayList<>();
+    // replaced instead of modified, the filter reads it in the background
+    private volatile List<OCFile> mFilesAll = new ArrayList<>();
     private boolean hideItemOptions;
     private long lastTimestamp;
     private boolean gridView;
@@ -133,15 +145,48 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     private static final int VIEWTYPE_IMAGE = 2;
     private static final int VIEWTYPE_HEADER = 3;
 
+    private static final int SHARE_HYDRATION_THREADS = 4;
+    private static final int SHARE_HYDRATION_CHUNK_SIZE = 25;
+
     private List<ThumbnailsCacheManager.ThumbnailGenerationTask> asyncTasks = new ArrayList<>();
     private boolean onlyOnDevice;
     private boolean showShareAvatar = false;
     private OCFile highlightedItem;
+    private final Object partialResultsLock = new Object();
+    private boolean showPartialResults;
+
+    // folders are loaded one after the other, a newer request makes older results obsolete
+    private static final Executor LOAD_EXECUTOR = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicInteger loadGeneration = new AtomicInteger();
+
+    private final ListUpdateCallback listUpdateCallback = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            notifyItemRangeInserted(position + getHeaderCount(), count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            notifyItemRangeRemoved(position + getHeaderCount(), count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition + getHeaderCount(), toPosition + getHeaderCount());
+        }
+
+        @Override
+        public void onChanged(int position, int count, @Nullable Object payload) {
+            notifyItemRangeChanged(position + getHeaderCount(), count, payload);
+        }
+    };
 
     public OCFileListAdapter(
         Activity activity,
         User user,
         AppPreferences preferences,
+        ThumbnailPrefetcher thumbnailPrefetcher,
         ComponentsGetter transferServiceGetter,
         OCFileListFragmentInterface ocFileListFragmentInterface,
         boolean argHideItemOptions,
@@ -150,6 +195,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         this.ocFileListFragmentInterface = ocFileListFragmentInterface;
         this.activity = activity;
         this.preferences = preferences;
+        this.thumbnailPrefetcher = thumbnailPrefetcher;
         this.user = user;
         hideItemOptions = argHideItemOptions;
         this.gridView = gridView;
@@ -202,7 +248,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     public int getItemPosition(OCFile file) {
         int position = mFiles.indexOf(file);
 
-        if (shouldShowHeader()) {
+        if (position != -1 && shouldShowHeader()) {
             position = position + 1;
         }
 
@@ -210,24 +256,32 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     }
 
     public void setFavoriteAttributeForItemID(String fileId, boolean favorite) {
-        for (OCFile file : mFiles) {
-            if (file.getRemoteId().equals(fileId)) {
-                file.setFavorite(favorite);
-                break;
+        mainHandler.post(() -> {
+            for (OCFile file : mFilesAll) {
+                if (file.getRemoteId().equals(fileId)) {
+                    file.setFavorite(favorite);
+                    break;
+                }
             }
-        }
 
-        for (OCFile file : mFilesAll) {
-            if (file.getRemoteId().equals(fileId)) {
-                file.setFavorite(favorite);
-                break;
+            int oldPosition = getFilePosition(fileId);
+            if (oldPosition == -1) {
+                return;
             }
-        }
+            OCFile file = mFiles.get(oldPosition);
+            file.setFavorite(favorite);
 
-        FileSortOrder sortOrder = preferences.getSortOrderByFolder(currentDirectory);
-        mFiles = sortOrder.sortCloudFiles(mFiles);
+            // favorites are listed first
+            FileSortOrder sortOrder = preferences.getSortOrderByFolder(currentDirectory);
+            mFiles = sortOrder.sortCloudFiles(mFiles);
+            mFilesAll = sortOrder.sortCloudFiles(new ArrayList<>(mFilesAll));
 
-        new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
+            int newPosition = mFiles.indexOf(file);
+            if (newPosition != oldPosition) {
+                notifyItemMoved(oldPosition + getHeaderCount(), newPosition + getHeaderCount());
+            }
+            notifyItemChanged(newPosition + getHeaderCount());
+        });
     }
 
     public void refreshCommentsCount(String fileId) {
@@ -245,7 +299,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
             }
         }
 
-        new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
+        notifyFileChanged(fileId);
     }
 
     public void setEncryptionAttributeForItemID(String fileId, boolean encrypted) {
@@ -268,7 +322,33 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
             }
         }
 
-        new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
+        notifyFileChanged(fileId);
+    }
+
+    /**
+     * Rebinds the row of the file on the main thread.
+     */
+    private void notifyFileChanged(String fileId) {
+        mainHandler.post(() -> {
+            int position = getFilePosition(fileId);
+            if (position != -1) {
+                notifyItemChanged(position + getHeaderCount());
+            }
+        });
+    }
+
+    private int getFilePosition(String fileId) {
+        for (int i = 0; i < mFiles.size(); i++) {
+            if (mFiles.get(i).getRemoteId().equals(fileId)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private int getHeaderCount() {
+        return shouldShowHeader() ? 1 : 0;
     }
 
     @Override
@@ -544,16 +624,17 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
                                                                   file.getMountType(), context));
         } else {
             if (file.getRemoteId() != null && file.isPreviewAvailable()) {
-                // Thumbnail in cache?
-                Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromDiskCache(
-                    ThumbnailsCacheManager.PREFIX_THUMBNAIL + file.getRemoteId()
-                );
+                String imageKey = ThumbnailsCacheManager.PREFIX_THUMBNAIL + file.getRemoteId();
+                ThumbnailPrefetcher.onThumbnailShown(imageKey);
+
+                // Thumbnail in memory? Disk cache and server are only accessed in background
+                Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromMemoryCache(imageKey);
 
                 if (thumbnail != null && !file.isUpdateThumbnailNeeded()) {
                     stopShimmer(shimmerThumbnail, thumbnailView);
 
                     if (MimeTypeUtil.isVideo(file)) {
-                        Bitmap withOverlay = ThumbnailsCacheManager.addVideoOverlay(thumbnail);
+                        Bitmap withOverlay = ThumbnailsCacheManager.getVideoThumbnail(imageKey, thumbnail);
                         thumbnailView.setImageBitmap(withOverlay);
                     } else {
                         if (gridView) {
@@ -609,8 +690,10 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
 
                             thumbnailView.setImageDrawable(asyncDrawable);
                             asyncTasks.add(task);
-                            task.execute(new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(file,
-                                                                                                  file.getRemoteId()));
+                            task.executeOnExecutor(ThumbnailsCacheManager.THUMBNAIL_EXECUTOR,
+                                                   new ThumbnailsCacheManager.ThumbnailGenerationTaskObject(
+                                                       file,
+                                                       file.getRemoteId()));
                         } catch (IllegalArgumentException e) {
                             Log_OC.d(TAG, "ThumbnailGenerationTask : " + e.getMessage());
                         }
@@ -630,6 +713,16 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         }
     }
 
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        super.onViewRecycled(holder);
+
+        // item scrolled out of view, its thumbnail is not needed any longer
+        if (holder instanceof ListGridImageViewHolder) {
+            ThumbnailsCacheManager.cancelThumbnailWork(((ListGridImageViewHolder) holder).getThumbnail());
+        }
+    }
+
     @Override
     public void onViewAttachedToWindow(@NonNull RecyclerView.ViewHolder holder) {
         if (holder instanceof ListGridImageViewHolder) {
@@ -813,6 +906,25 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         OCFile directory,
         FileDataStorageManager updatedStorageManager,
         boolean onlyOnDevice, String limitToMimeType
+    ) {
+        swapDirectory(account, directory, updatedStorageManager, onlyOnDevice, limitToMimeType, null);
+    }
+
+    /**
+     * Change the adapted directory for a new one. The content is loaded and sorted in the background; when the same
+     * directory is shown again only the changed rows are updated.
+     *
+     * @param directory             New folder to adapt. Can be NULL, meaning "no content to adapt".
+     * @param updatedStorageManager Optional updated storage manager; used to replace
+     * @param limitToMimeType       show only files of this mimeType
+     * @param onSwapped             run on the main thread once the content of the directory is shown
+     */
+    public void swapDirectory(
+        User account,
+        OCFile directory,
+        FileDataStorageManager updatedStorageManager,
+        boolean onlyOnDevice, String limitToMimeType,
+        @Nullable Runnable onSwapped
     ) {
         this.onlyOnDevice = onlyOnDevice;
 
@@ -821,27 +933,75 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
             showShareAvatar = mStorageManager.getCapability(account.getAccountName()).getVersion().isShareesOnDavSupported();
             this.user = account;
         }
-        if (mStorageManager != null) {
-            mFiles = mStorageManager.getFolderContent(directory, onlyOnDevice);
 
-            if (!preferences.isShowHiddenFilesEnabled()) {
-                mFiles = filterHiddenFiles(mFiles);
+        int generation = loadGeneration.incrementAndGet();
+        thumbnailPrefetcher.cancel();
+
+        if (mStorageManager == null) {
+            mFiles = new ArrayList<>();
+            mFilesAll = new ArrayList<>();
+            notifyDataSetChanged();
+
+            if (onSwapped != null) {
+                onSwapped.run();
+            }
+            return;
+        }
+
+        boolean sameDirectory = directory != null && directory.equals(currentDirectory);
+        boolean headerShown = shouldShowHeader();
+        currentDirectory = directory;
+        if (headerShown != shouldShowHeader()) {
+            notifyDataSetChanged();
+        }
+
+        FileDataStorageManager storageManager = mStorageManager;
+        boolean showHiddenFiles = preferences.isShowHiddenFilesEnabled();
+        FileSortOrder sortOrder = preferences.getSortOrderByFolder(directory);
+        List<OCFile> oldFiles = new ArrayList<>(mFiles);
+
+        LOAD_EXECUTOR.execute(() -> {
+            List<OCFile> files = storageManager.getFolderContent(directory, onlyOnDevice);
+
+            if (!showHiddenFiles) {
+                files = filterHiddenFiles(files);
             }
             if (!limitToMimeType.isEmpty()) {
-                mFiles = filterByMimeType(mFiles, limitToMimeType);
+                files = filterByMimeType(files, limitToMimeType);
             }
-            FileSortOrder sortOrder = preferences.getSortOrderByFolder(directory);
-            mFiles = sortOrder.sortCloudFiles(mFiles);
-            mFilesAll.clear();
-            mFilesAll.addAll(mFiles);
+            List<OCFile> sortedFiles = sortOrder.sortCloudFiles(files);
 
-            currentDirectory = directory;
-        } else {
-            mFiles.clear();
-            mFilesAll.clear();
-        }
+            // rows of another directory have nothing in common with the shown ones
+            DiffUtil.DiffResult diff = sameDirectory ?
+                DiffUtil.calculateDiff(new OCFileListDiffCallback(oldFiles, sortedFiles)) : null;
 
-        notifyDataSetChanged();
+            mainHandler.post(() -> {
+                if (generation != loadGeneration.get()) {
+                    return;
+                }
+
+                // diff is only valid for the list it was calculated on
+                boolean unchanged = oldFiles.equals(mFiles);
+
+                mFiles = sortedFiles;
+                mFilesAll = new ArrayList<>(sortedFiles);
+
+                if (diff != null && unchanged) {
+                    diff.dispatchUpdatesTo(listUpdateCallback);
+                } else {
+                    notifyDataSetChanged();
+                }
+
+                if (onSwapped != null) {
+                    onSwapped.run();
+                }
+
+                // items bound meanwhile share the download of a prefetched thumbnail
+                if (gridView && user != null) {
+                    thumbnailPrefetcher.prefetch(user, sortedFiles);
+                }
+            });
+        });
     }
 
 
@@ -851,6 +1011,9 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
                         FileDataStorageManager storageManager,
                         @Nullable OCFile folder,
                         boolean clear) {
+        // search results replace any directory still loading
+        loadGeneration.incrementAndGet();
+
         if (storageManager != null && mStorageManager == null) {
             mStorageManager = storageManager;
             showShareAvatar = mStorageManager.getCapability(user.getAccountName()).getVersion().isShareesOnDavSupported();
@@ -861,7 +1024,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         }
 
         if (clear) {
-            mFiles.clear();
+            mFiles = new ArrayList<>();
             resetLastTimestamp();
             preferences.setPhotoSearchTimestamp(0);
 
@@ -884,7 +1047,7 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         // early exit
         if (objects.size() > 0 && mStorageManager != null) {
             if (searchType == ExtendedListFragment.SearchType.SHARED_FILTER) {
-                parseShares(objects);
+                parseShares(objects, preferences.getSortOrderByFolder(folder));
             } else {
                 parseVirtuals(objects, searchType);
             }
@@ -898,14 +1061,19 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
             mFiles = FileStorageUtils.sortOcFolderDescDateModifiedWithoutFavoritesFirst(mFiles);
         }
 
-        mFilesAll.clear();
-        mFilesAll.addAll(mFiles);
+        mFilesAll = new ArrayList<>(mFiles);
 
         new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
     }
 
-    private void parseShares(List<Object> objects) {
+    /**
+     * Fetches up-to-date metadata of the shared files with a few parallel requests, one per shared path. Files are
+     * stored and shown in chunks as they arrive.
+     */
+    private void parseShares(List<Object> objects, FileSortOrder sortOrder) {
         List<OCShare> shares = new ArrayList<>();
+        // a file shared several times is fetched once
+        Map<String, List<OCShare>> sharesByPath = new LinkedHashMap<>();
 
         for (Object shareObject : objects) {
             // check type before cast as of long running data fetch it is possible that old result is filled
@@ -914,41 +1082,125 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
 
                 shares.add(ocShare);
 
-                // get ocFile from Server to have an up-to-date copy
-                RemoteOperationResult result = new ReadFileRemoteOperation(ocShare.getPath()).execute(user.toPlatformAccount(),
-                                                                                                      activity);
-
-                if (result.isSuccess()) {
-                    OCFile file = FileStorageUtils.fillOCFile((RemoteFile) result.getData().get(0));
-                    FileStorageUtils.searchForLocalFileInDefaultPath(file, user.toPlatformAccount());
-                    file = mStorageManager.saveFileWithParent(file, activity);
-
-                    ShareType newShareType = ocShare.getShareType();
-                    if (newShareType == ShareType.PUBLIC_LINK) {
-                        file.setSharedViaLink(true);
-                    } else if (newShareType == ShareType.USER ||
-                        newShareType == ShareType.GROUP ||
-                        newShareType == ShareType.EMAIL ||
-                        newShareType == ShareType.FEDERATED ||
-                        newShareType == ShareType.ROOM ||
-                        newShareType == ShareType.CIRCLE) {
-                        file.setSharedWithSharee(true);
-                    }
+                List<OCShare> sharesOfPath = sharesByPath.get(ocShare.getPath());
+                if (sharesOfPath == null) {
+                    sharesOfPath = new ArrayList<>();
+                    sharesByPath.put(ocShare.getPath(), sharesOfPath);
+                }
+                sharesOfPath.add(ocShare);
+            }
+        }
+
+        Account account = user.toPlatformAccount();
+        ExecutorService executor = Executors.newFixedThreadPool(SHARE_HYDRATION_THREADS);
+        CompletionService<OCFile> completionService = new ExecutorCompletionService<>(executor);
+        for (Map.Entry<String, List<OCShare>> entry : sharesByPath.entrySet()) {
+            completionService.submit(() -> readSharedFile(entry.getKey(), entry.getValue(), account));
+        }
 
-                    mStorageManager.saveFile(file);
+        List<OCFile> sharedFiles = new ArrayList<>();
+        List<OCFile> chunk = new ArrayList<>();
+        Map<String, OCFile> parents = new HashMap<>();
+        setShowPartialResults(true);
 
-                    if (!mFiles.contains(file)) {
-                        mFiles.add(file);
+        try {
+            for (int i = 0; i < sharesByPath.size(); i++) {
+                OCFile file = completionService.take().get();
+
+                if (file != null) {
+                    try {
+                        // parents are shared by many files, resolve each once
+                        String parentPath = new File(file.getRemotePath()).getParent();
+                        OCFile parent = parents.get(parentPath);
+                        if (parent == null) {
+                            parent = mStorageManager.saveParent(file, activity);
+                            parents.put(parentPath, parent);
+                        }
+                        file.setParentId(parent.getFileId());
+                        chunk.add(file);
+                    } catch (RemoteOperationFailedException e) {
+                        Log_OC.e(TAG, "Error saving file with parent" + e.getMessage(), e);
                     }
-                } else {
-                    Log_OC.e(TAG, "Error in getting prop for file: " + ocShare.getPath());
                 }
+
+                if (chunk.size() >= SHARE_HYDRATION_CHUNK_SIZE || (i == sharesByPath.size() - 1 && !chunk.isEmpty())) {
+                    mStorageManager.saveFiles(chunk);
+                    sharedFiles.addAll(chunk);
+                    chunk.clear();
+                    showPartialResults(sortOrder.sortCloudFiles(new ArrayList<>(sharedFiles)));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Log_OC.e(TAG, "Error in getting shared files", e);
+        } finally {
+            executor.shutdownNow();
+            setShowPartialResults(false);
+        }
+
+        for (OCFile file : sharedFiles) {
+            if (!mFiles.contains(file)) {
+                mFiles.add(file);
             }
         }
 
         mStorageManager.saveShares(shares);
     }
 
+    /**
+     * @return up-to-date copy of the shared file from the server, null if it cannot be read
+     */
+    @Nullable
+    private OCFile readSharedFile(String path, List<OCShare> shares, Account account) {
+        RemoteOperationResult result = new ReadFileRemoteOperation(path).execute(account, activity);
+
+        if (!result.isSuccess()) {
+            Log_OC.e(TAG, "Error in getting prop for file: " + path);
+            return null;
+        }
+
+        OCFile file = FileStorageUtils.fillOCFile((RemoteFile) result.getData().get(0));
+        FileStorageUtils.searchForLocalFileInDefaultPath(file, account);
+
+        for (OCShare share : shares) {
+            ShareType newShareType = share.getShareType();
+            if (newShareType == ShareType.PUBLIC_LINK) {
+                file.setSharedViaLink(true);
+            } else if (newShareType == ShareType.USER ||
+                newShareType == ShareType.GROUP ||
+                newShareType == ShareType.EMAIL ||
+                newShareType == ShareType.FEDERATED ||
+                newShareType == ShareType.ROOM ||
+                newShareType == ShareType.CIRCLE) {
+                file.setSharedWithSharee(true);
+            }
+        }
+
+        return file;
+    }
+
+    private void setShowPartialResults(boolean showPartialResults) {
+        synchronized (partialResultsLock) {
+            this.showPartialResults = showPartialResults;
+        }
+    }
+
+    /**
+     * Shows the files while the search is still running; ignored once it has finished.
+     */
+    private void showPartialResults(List<OCFile> files) {
+        new Handler(Looper.getMainLooper()).post(() -> {
+            synchronized (partialResultsLock) {
+                if (showPartialResults) {
+                    mFiles = files;
+                    mFilesAll = new ArrayList<>(files);
+                    notifyDataSetChanged();
+                }
+            }
+        });
+    }
+
     private void parseVirtuals(List<Object> objects, ExtendedListFragment.SearchType searchType) {
         VirtualFolderType type;
         boolean onlyMedia = false;
@@ -987,20 +1239,8 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
                     mStorageManager.saveFile(ocFile);
                 } else {
 
+                    // folder content is synced once the folder is opened
                     ocFile = mStorageManager.saveFileWithParent(ocFile, activity);
-
-                    // also sync folder content
-                    if (ocFile.isFolder()) {
-                        long currentSyncTime = System.currentTimeMillis();
-                        RemoteOperation refreshFolderOperation = new RefreshFolderOperation(ocFile,
-                                                                                            currentSyncTime,
-                                                                                            true,
-                                                                                            false,
-                                                                                            mStorageManager,
-                                                                                            user.toPlatformAccount(),
-                                                                                            activity);
-                        refreshFolderOperation.execute(user.toPlatformAccount(), activity);
-                    }
                 }
 
                 if (!onlyMedia || MimeTypeUtil.isImage(ocFile) || MimeTypeUtil.isVideo(ocFile)) {
@@ -1022,14 +1262,14 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     }
 
     public void showVirtuals(VirtualFolderType type, boolean onlyImages, FileDataStorageManager storageManager) {
+        loadGeneration.incrementAndGet();
         mFiles = storageManager.getVirtualFolderContent(type, onlyImages);
 
         if (VirtualFolderType.GALLERY == type) {
             mFiles = FileStorageUtils.sortOcFolderDescDateModifiedWithoutFavoritesFirst(mFiles);
         }
 
-        mFilesAll.clear();
-        mFilesAll.addAll(mFiles);
+        mFilesAll = new ArrayList<>(mFiles);
 
         new Handler(Looper.getMainLooper()).post(this::notifyDataSetChanged);
     }
@@ -1038,6 +1278,8 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
     public void setSortOrder(@Nullable OCFile folder, FileSortOrder sortOrder) {
         preferences.setSortOrder(folder, sortOrder);
         mFiles = sortOrder.sortCloudFiles(mFiles);
+        // filter results keep the order of all files
+        mFilesAll = sortOrder.sortCloudFiles(new ArrayList<>(mFilesAll));
         notifyDataSetChanged();
     }
 
@@ -1087,44 +1329,62 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
         this.highlightedItem = highlightedItem;
     }
 
+    /**
+     * Filters the files of the current directory by name in the background, superseding any filtering still running.
+     * An empty query shows all files again.
+     */
+    public void filter(String query) {
+        FilesFilter filesFilter = (FilesFilter) getFilter();
+        filesFilter.latestConstraint = query;
+        filesFilter.filter(query);
+    }
+
     private class FilesFilter extends Filter {
+        private volatile CharSequence latestConstraint;
+        // only used on the filter thread
+        private FileNameIndex index;
+
         @Override
         protected FilterResults performFiltering(CharSequence constraint) {
             FilterResults results = new FilterResults();
-            Vector<OCFile> filteredFiles = new Vector<>();
-
-            if (!TextUtils.isEmpty(constraint)) {
-                for (OCFile file : mFilesAll) {
-                    if (file.getParentRemotePath().equals(currentDirectory.getRemotePath()) &&
-                        file.getFileName().toLowerCase(Locale.getDefault()).contains(
-                            constraint.toString().toLowerCase(Locale.getDefault())) &&
-                        !filteredFiles.contains(file)) {
-                        filteredFiles.add(file);
-                    }
+            List<OCFile> filteredFiles;
+
+            if (TextUtils.isEmpty(constraint)) {
+                filteredFiles = new ArrayList<>(mFilesAll);
+            } else {
+                List<OCFile> files = mFilesAll;
+                OCFile directory = currentDirectory;
+                String directoryPath = directory == null ? null : directory.getRemotePath();
+                boolean showHiddenFiles = preferences.isShowHiddenFilesEnabled();
+
+                if (index == null || !index.isFor(files, directoryPath, showHiddenFiles)) {
+                    index = new FileNameIndex(files, directoryPath, showHiddenFiles);
                 }
+
+                filteredFiles = index.filter(constraint, () -> isStale(constraint));
             }
 
+            // files are indexed in list order, no need to sort again
             results.values = filteredFiles;
-            results.count = filteredFiles.size();
+            results.count = filteredFiles == null ? 0 : filteredFiles.size();
 
             return results;
         }
 
+        private boolean isStale(CharSequence constraint) {
+            CharSequence latest = latestConstraint;
+            return latest != null && !TextUtils.equals(latest, constraint);
+        }
+
         @SuppressWarnings("unchecked")
         @Override
         protected void publishResults(CharSequence constraint, Filter.FilterResults results) {
-
-            Vector<OCFile> ocFiles = (Vector<OCFile>) results.values;
-            mFiles.clear();
-            if (ocFiles != null && ocFiles.size() > 0) {
-                mFiles.addAll(ocFiles);
-                if (!preferences.isShowHiddenFilesEnabled()) {
-                    mFiles = filterHiddenFiles(mFiles);
-                }
-                FileSortOrder sortOrder = preferences.getSortOrderByFolder(currentDirectory);
-                mFiles = sortOrder.sortCloudFiles(mFiles);
+            if (results.values == null || isStale(constraint)) {
+                // a newer query is on its way
+                return;
             }
 
+            mFiles = (List<OCFile>) results.values;
             notifyDataSetChanged();
         }
     }
@@ -1137,9 +1397,10 @@ public class OCFileListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHol
      */
     private List<OCFile> filterHiddenFiles(List<OCFile> files) {
         List<OCFile> ret = new ArrayList<>();
+        Set<OCFile> seen = new HashSet<>();
 
         for (OCFile file : files) {
-            if (!file.isHidden() && !ret.contains(file)) {
+            if (!file.isHidden() && seen.add(file)) {
                 ret.add(file);
             }
         }
@@ -0,0 +1,76 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import java.util.List;
+import java.util.Objects;
+
+import androidx.recyclerview.widget.DiffUtil;
+
+/**
+ * Compares two file lists by file id, rows are rebound only if something shown in the list changed.
+ */
+class OCFileListDiffCallback extends DiffUtil.Callback {
+    private final List<OCFile> oldFiles;
+    private final List<OCFile> newFiles;
+
+    OCFileListDiffCallback(List<OCFile> oldFiles, List<OCFile> newFiles) {
+        this.oldFiles = oldFiles;
+        this.newFiles = newFiles;
+    }
+
+    @Override
+    public int getOldListSize() {
+        return oldFiles.size();
+    }
+
+    @Override
+    public int getNewListSize() {
+        return newFiles.size();
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+        return oldFiles.get(oldItemPosition).getFileId() == newFiles.get(newItemPosition).getFileId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+        OCFile oldFile = oldFiles.get(oldItemPosition);
+        OCFile newFile = newFiles.get(newItemPosition);
+
+        return Objects.equals(oldFile.getRemotePath(), newFile.getRemotePath()) &&
+            Objects.equals(oldFile.getMimeType(), newFile.getMimeType()) &&
+            Objects.equals(oldFile.getEtag(), newFile.getEtag()) &&
+            Objects.equals(oldFile.getEtagInConflict(), newFile.getEtagInConflict()) &&
+            Objects.equals(oldFile.getStoragePath(), newFile.getStoragePath()) &&
+            oldFile.getModificationTimestamp() == newFile.getModificationTimestamp() &&
+            oldFile.getFileLength() == newFile.getFileLength() &&
+            oldFile.isFavorite() == newFile.isFavorite() &&
+            oldFile.isEncrypted() == newFile.isEncrypted() &&
+            oldFile.isSharedViaLink() == newFile.isSharedViaLink() &&
+            oldFile.isSharedWithSharee() == newFile.isSharedWithSharee() &&
+            oldFile.isPreviewAvailable() == newFile.isPreviewAvailable() &&
+            oldFile.getUnreadCommentsCount() == newFile.getUnreadCommentsCount() &&
+            Objects.equals(oldFile.getSharees(), newFile.getSharees());
+    }
+}
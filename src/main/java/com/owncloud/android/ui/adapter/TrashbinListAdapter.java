@@ -220,13 +220,12 @@ public class TrashbinListAdapter extends RecyclerView.Adapter<RecyclerView.ViewH
         } else {
             if ((MimeTypeUtil.isImage(file) || MimeTypeUtil.isVideo(file)) && file.getRemoteId() != null) {
                 // Thumbnail in cache?
-                Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromDiskCache(
-                        ThumbnailsCacheManager.PREFIX_THUMBNAIL + file.getRemoteId()
-                );
+                String imageKey = ThumbnailsCacheManager.PREFIX_THUMBNAIL + file.getRemoteId();
+                Bitmap thumbnail = ThumbnailsCacheManager.getBitmapFromDiskCache(imageKey);
 
                 if (thumbnail != null) {
                     if (MimeTypeUtil.isVideo(file)) {
-                        Bitmap withOverlay = ThumbnailsCacheManager.addVideoOverlay(thumbnail);
+                        Bitmap withOverlay = ThumbnailsCacheManager.getVideoThumbnail(imageKey, thumbnail);
                         thumbnailView.setImageBitmap(withOverlay);
                     } else {
                         thumbnailView.setImageBitmap(thumbnail);
@@ -334,7 +334,12 @@ public class ExtendedListFragment extends Fragment implements
                 localFileListAdapter.filter(query);
                 ((UploadFilesActivity) activity).showToolbarSpinner();
             } else if (activity instanceof FolderPickerActivity) {
-                ((FolderPickerActivity) activity).refreshListOfFilesFragment(true);
+                if (adapter instanceof OCFileListAdapter) {
+                    // folders are picked from the current directory, so its content is filtered by name
+                    ((OCFileListAdapter) adapter).filter(query);
+                } else {
+                    ((FolderPickerActivity) activity).refreshListOfFilesFragment(true);
+                }
             }
         }
     }
@@ -53,12 +53,14 @@ import com.nextcloud.client.account.UserAccountManager;
 import com.nextcloud.client.device.DeviceInfo;
 import com.nextcloud.client.di.Injectable;
 import com.nextcloud.client.network.ClientFactory;
+import com.nextcloud.client.network.ConnectivityService;
 import com.nextcloud.client.preferences.AppPreferences;
 import com.owncloud.android.MainApp;
 import com.owncloud.android.R;
 import com.owncloud.android.datamodel.ArbitraryDataProvider;
 import com.owncloud.android.datamodel.FileDataStorageManager;
 import com.owncloud.android.datamodel.OCFile;
+import com.owncloud.android.datamodel.ThumbnailPrefetcher;
 import com.owncloud.android.datamodel.VirtualFolderType;
 import com.owncloud.android.files.FileMenuFilter;
 import com.owncloud.android.lib.common.Creator;
@@ -180,6 +182,7 @@ public class OCFileListFragment extends ExtendedListFragment implements
     @Inject AppPreferences preferences;
     @Inject UserAccountManager accountManager;
     @Inject ClientFactory clientFactory;
+    @Inject ConnectivityService connectivityService;
     protected FileFragment.ContainerActivity mContainerActivity;
 
     protected OCFile mFile;
@@ -344,6 +347,7 @@ public class OCFileListFragment extends ExtendedListFragment implements
             getActivity(),
             accountManager.getUser(),
             preferences,
+            new ThumbnailPrefetcher(connectivityService, requireContext()),
             mContainerActivity,
             this,
             hideItemOptions,
@@ -1239,12 +1243,17 @@ public class OCFileListFragment extends ExtendedListFragment implements
                     });
                 }
 
+                if (file != null) {
+                    mAdapter.setHighlightedItem(file);
+                }
+
                 mAdapter.swapDirectory(
                     accountManager.getUser(),
                     directory,
                     storageManager,
                     onlyOnDevice,
-                    mLimitToMimeType
+                    mLimitToMimeType,
+                    () -> scrollToHighlightedFile(file)
                 );
 
                 OCFile previousDirectory = mFile;
@@ -1252,19 +1261,24 @@ public class OCFileListFragment extends ExtendedListFragment implements
 
                 updateLayout();
 
-                if (file != null) {
-                    mAdapter.setHighlightedItem(file);
-                    int position = mAdapter.getItemPosition(file);
-                    if (position != -1) {
-                        getRecyclerView().scrollToPosition(position);
-                    }
-                } else if (previousDirectory == null || !previousDirectory.equals(directory)) {
+                if (file == null && (previousDirectory == null || !previousDirectory.equals(directory))) {
                     getRecyclerView().scrollToPosition(0);
                 }
             }
         }
     }
 
+    private void scrollToHighlightedFile(@Nullable OCFile file) {
+        if (file == null || getRecyclerView() == null) {
+            return;
+        }
+
+        int position = mAdapter.getItemPosition(file);
+        if (position != -1) {
+            getRecyclerView().scrollToPosition(position);
+        }
+    }
+
     private void updateLayout() {
         // decide grid vs list view
         if (isGridViewPreferred(mFile)) {
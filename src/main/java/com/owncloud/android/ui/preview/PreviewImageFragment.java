@@ -442,7 +442,7 @@ public class PreviewImageFragment extends FileFragment implements Injectable {
     @SuppressFBWarnings("Dm")
     @Override
     public void onDestroy() {
-        if (bitmap != null) {
+        if (bitmap != null && !ThumbnailsCacheManager.isBitmapInMemoryCache(bitmap)) {
             bitmap.recycle();
             // putting this in onStop() is just the same; the fragment is always destroyed by
             // {@link FragmentStatePagerAdapter} when the fragment in swiped further than the
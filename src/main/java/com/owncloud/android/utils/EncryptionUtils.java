@@ -45,14 +45,21 @@ import com.owncloud.android.operations.UploadException;
 
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.httpclient.HttpStatus;
+import org.bouncycastle.crypto.engines.AESEngine;
+import org.bouncycastle.crypto.io.CipherOutputStream;
+import org.bouncycastle.crypto.modes.GCMBlockCipher;
+import org.bouncycastle.crypto.params.AEADParameters;
+import org.bouncycastle.crypto.params.KeyParameter;
 
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
 import java.nio.charset.StandardCharsets;
 import java.security.InvalidAlgorithmParameterException;
@@ -112,6 +119,8 @@ public final class EncryptionUtils {
     private static final int iterationCount = 1024;
     private static final int keyStrength = 256;
     private static final String AES_CIPHER = "AES/GCM/NoPadding";
+    private static final int AUTHENTICATION_TAG_LENGTH = 128 / 8;
+    private static final int FILE_CRYPT_BUFFER_SIZE = 64 * 1024;
     private static final String AES = "AES";
     private static final String RSA_CIPHER = "RSA/ECB/OAEPWithSHA-256AndMGF1Padding";
     private static final String RSA = "RSA";
@@ -281,89 +290,87 @@ public final class EncryptionUtils {
      */
 
     /**
-     * @param ocFile             file do crypt
-     * @param encryptionKeyBytes key, either from metadata or {@link EncryptionUtils#generateKey()}
-     * @param iv                 initialization vector, either from metadata or {@link EncryptionUtils#randomBytes(int)}
-     * @return encryptedFile with encryptedBytes and authenticationTag
-     */
-    public static EncryptedFile encryptFile(OCFile ocFile, byte[] encryptionKeyBytes, byte[] iv)
-            throws NoSuchAlgorithmException,
-            InvalidAlgorithmParameterException, NoSuchPaddingException, InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException, IOException {
-        File file = new File(ocFile.getStoragePath());
-
-        return encryptFile(file, encryptionKeyBytes, iv);
-    }
-
-    /**
-     * @param file               file do crypt
+     * Encrypts a file with AES/GCM into another file. The file is streamed through a buffer of fixed size, so memory
+     * use does not depend on the size of the file.
+     *
+     * @param file               file to crypt
+     * @param encryptedFile      target of the encrypted content, including the authentication tag at its end
      * @param encryptionKeyBytes key, either from metadata or {@link EncryptionUtils#generateKey()}
      * @param iv                 initialization vector, either from metadata or {@link EncryptionUtils#randomBytes(int)}
-     * @return encryptedFile with encryptedBytes and authenticationTag
+     * @return authenticationTag, base64 encoded
      */
-    public static EncryptedFile encryptFile(File file, byte[] encryptionKeyBytes, byte[] iv)
-            throws NoSuchAlgorithmException,
-            InvalidAlgorithmParameterException, NoSuchPaddingException, InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException, IOException {
-
-        Cipher cipher = Cipher.getInstance(AES_CIPHER);
-
-        Key key = new SecretKeySpec(encryptionKeyBytes, AES);
-
-        GCMParameterSpec spec = new GCMParameterSpec(128, iv);
-        cipher.init(Cipher.ENCRYPT_MODE, key, spec);
-
-        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
-        byte[] fileBytes = new byte[(int) randomAccessFile.length()];
-        randomAccessFile.readFully(fileBytes);
+    public static String encryptFile(File file, File encryptedFile, byte[] encryptionKeyBytes, byte[] iv)
+        throws IOException {
+        GCMBlockCipher cipher = createFileCipher(true, encryptionKeyBytes, iv);
 
-        byte[] cryptedBytes = cipher.doFinal(fileBytes);
-        String authenticationTag = encodeBytesToBase64String(Arrays.copyOfRange(cryptedBytes,
-                cryptedBytes.length - (128 / 8), cryptedBytes.length));
+        try (InputStream inputStream = new FileInputStream(file);
+             OutputStream outputStream = new CipherOutputStream(new FileOutputStream(encryptedFile), cipher)) {
+            copy(inputStream, outputStream);
+        }
 
-        return new EncryptedFile(cryptedBytes, authenticationTag);
+        return encodeBytesToBase64String(cipher.getMac());
     }
 
     /**
-     * @param file               encrypted file
+     * Decrypts a file encrypted with {@link #encryptFile(File, File, byte[], byte[])} into another file, streamed
+     * through a buffer of fixed size. The decrypted file is removed again if the content turns out to be tampered.
+     *
+     * @param encryptedFile      encrypted file
+     * @param decryptedFile      target of the decrypted content
      * @param encryptionKeyBytes key from metadata
      * @param iv                 initialization vector from metadata
      * @param authenticationTag  authenticationTag from metadata
-     * @return decrypted byte[]
      */
-    public static byte[] decryptFile(File file, byte[] encryptionKeyBytes, byte[] iv, byte[] authenticationTag)
-            throws NoSuchAlgorithmException,
-            InvalidAlgorithmParameterException, NoSuchPaddingException, InvalidKeyException,
-            BadPaddingException, IllegalBlockSizeException, IOException {
-
-
-        Cipher cipher = Cipher.getInstance(AES_CIPHER);
-        Key key = new SecretKeySpec(encryptionKeyBytes, AES);
-        GCMParameterSpec spec = new GCMParameterSpec(128, iv);
-        cipher.init(Cipher.DECRYPT_MODE, key, spec);
-
-        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
-        byte[] fileBytes = new byte[(int) randomAccessFile.length()];
-        randomAccessFile.readFully(fileBytes);
-
+    public static void decryptFile(File encryptedFile,
+                                   File decryptedFile,
+                                   byte[] encryptionKeyBytes,
+                                   byte[] iv,
+                                   byte[] authenticationTag) throws IOException {
         // check authentication tag
-        byte[] extractedAuthenticationTag = Arrays.copyOfRange(fileBytes,
-                fileBytes.length - (128 / 8), fileBytes.length);
+        byte[] extractedAuthenticationTag = new byte[AUTHENTICATION_TAG_LENGTH];
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(encryptedFile, "r")) {
+            if (randomAccessFile.length() < AUTHENTICATION_TAG_LENGTH) {
+                throw new SecurityException("Tag not correct");
+            }
+            randomAccessFile.seek(randomAccessFile.length() - AUTHENTICATION_TAG_LENGTH);
+            randomAccessFile.readFully(extractedAuthenticationTag);
+        }
 
         if (!Arrays.equals(extractedAuthenticationTag, authenticationTag)) {
             throw new SecurityException("Tag not correct");
         }
 
-        return cipher.doFinal(fileBytes);
-    }
+        GCMBlockCipher cipher = createFileCipher(false, encryptionKeyBytes, iv);
 
-    public static class EncryptedFile {
-        public byte[] encryptedBytes;
-        public String authenticationTag;
+        try (InputStream inputStream = new FileInputStream(encryptedFile);
+             OutputStream outputStream = new CipherOutputStream(new FileOutputStream(decryptedFile), cipher)) {
+            copy(inputStream, outputStream);
+        } catch (IOException e) {
+            // tag is verified when the stream is closed, do not leave unauthenticated content behind
+            if (decryptedFile.exists() && !decryptedFile.delete()) {
+                Log_OC.e(TAG, "Could not remove decrypted file " + decryptedFile.getAbsolutePath());
+            }
+            throw e;
+        }
+    }
 
-        public EncryptedFile(byte[] encryptedBytes, String authenticationTag) {
-            this.encryptedBytes = encryptedBytes;
-            this.authenticationTag = authenticationTag;
+    /**
+     * AES/GCM of Bouncy Castle's lightweight API, which streams in both directions; the JCE providers on Android
+     * buffer the whole content until the final block.
+     */
+    private static GCMBlockCipher createFileCipher(boolean forEncryption, byte[] encryptionKeyBytes, byte[] iv) {
+        GCMBlockCipher cipher = new GCMBlockCipher(new AESEngine());
+        cipher.init(forEncryption, new AEADParameters(new KeyParameter(encryptionKeyBytes),
+                                                      AUTHENTICATION_TAG_LENGTH * 8,
+                                                      iv));
+        return cipher;
+    }
+
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[FILE_CRYPT_BUFFER_SIZE];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
         }
     }
 
@@ -24,13 +24,12 @@ import com.owncloud.android.datamodel.OCFile;
 import com.owncloud.android.lib.resources.trashbin.model.TrashbinFile;
 
 import java.io.File;
+import java.text.Collator;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
-import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import third_parties.daveKoeller.AlphanumComparator;
-
 /**
  * Created by srkunze on 28.08.17.
  */
@@ -45,20 +44,13 @@ public class FileSortOrderByName extends FileSortOrder {
      *
      * @param files files to sort
      */
-    @SuppressFBWarnings("Bx")
     public List<OCFile> sortCloudFiles(List<OCFile> files) {
-        final int multiplier = isAscending ? 1 : -1;
-
-        Collections.sort(files, (o1, o2) -> {
-            if (o1.isFolder() && o2.isFolder()) {
-                return multiplier * new AlphanumComparator().compare(o1, o2);
-            } else if (o1.isFolder()) {
-                return -1;
-            } else if (o2.isFolder()) {
-                return 1;
-            }
-            return multiplier * new AlphanumComparator().compare(o1, o2);
-        });
+        Collator collator = Collator.getInstance();
+        List<SortEntry<OCFile>> entries = new ArrayList<>(files.size());
+        for (OCFile file : files) {
+            entries.add(new SortEntry<>(file, file.isFolder(), new NaturalSortKey(file.getFileName(), collator)));
+        }
+        sortFoldersFirst(entries, files);
 
         return super.sortCloudFiles(files);
     }
@@ -68,21 +60,14 @@ public class FileSortOrderByName extends FileSortOrder {
      *
      * @param files files to sort
      */
-    @SuppressFBWarnings("Bx")
     @Override
     public List<TrashbinFile> sortTrashbinFiles(List<TrashbinFile> files) {
-        final int multiplier = isAscending ? 1 : -1;
-
-        Collections.sort(files, (o1, o2) -> {
-            if (o1.isFolder() && o2.isFolder()) {
-                return multiplier * new AlphanumComparator().compare(o1, o2);
-            } else if (o1.isFolder()) {
-                return -1;
-            } else if (o2.isFolder()) {
-                return 1;
-            }
-            return multiplier * new AlphanumComparator().compare(o1, o2);
-        });
+        Collator collator = Collator.getInstance();
+        List<SortEntry<TrashbinFile>> entries = new ArrayList<>(files.size());
+        for (TrashbinFile file : files) {
+            entries.add(new SortEntry<>(file, file.isFolder(), new NaturalSortKey(file.getFileName(), collator)));
+        }
+        sortFoldersFirst(entries, files);
 
         return super.sortTrashbinFiles(files);
     }
@@ -96,20 +81,77 @@ public class FileSortOrderByName extends FileSortOrder {
     public List<File> sortLocalFiles(List<File> files) {
         final int multiplier = isAscending ? 1 : -1;
 
-        Collections.sort(files, (o1, o2) -> {
-            if (o1.isDirectory() && o2.isDirectory()) {
-                return multiplier * o1.getPath().toLowerCase(Locale.getDefault())
-                        .compareTo(o2.getPath().toLowerCase(Locale.getDefault()));
-            } else if (o1.isDirectory()) {
+        Collator collator = Collator.getInstance();
+        List<LocalSortEntry> entries = new ArrayList<>(files.size());
+        for (File file : files) {
+            entries.add(new LocalSortEntry(file, collator));
+        }
+
+        Collections.sort(entries, (o1, o2) -> {
+            if (o1.folder && o2.folder) {
+                return multiplier * o1.path.compareTo(o2.path);
+            } else if (o1.folder) {
                 return -1;
-            } else if (o2.isDirectory()) {
+            } else if (o2.folder) {
                 return 1;
             }
-            return multiplier * new AlphanumComparator().compare(o1.getPath()
-                            .toLowerCase(Locale.getDefault()),
-                    o2.getPath().toLowerCase(Locale.getDefault()));
+            return multiplier * o1.key.compareTo(o2.key);
         });
+        copyOrder(entries, files);
 
         return files;
     }
+
+    private <T> void sortFoldersFirst(List<SortEntry<T>> entries, List<T> items) {
+        final int multiplier = isAscending ? 1 : -1;
+
+        Collections.sort(entries, (o1, o2) -> {
+            if (o1.folder && o2.folder) {
+                return multiplier * o1.key.compareTo(o2.key);
+            } else if (o1.folder) {
+                return -1;
+            } else if (o2.folder) {
+                return 1;
+            }
+            return multiplier * o1.key.compareTo(o2.key);
+        });
+        copyOrder(entries, items);
+    }
+
+    private static <T> void copyOrder(List<? extends SortEntry<T>> entries, List<T> items) {
+        for (int i = 0; i < entries.size(); i++) {
+            items.set(i, entries.get(i).item);
+        }
+    }
+
+    /**
+     * Item with its sort key, computed once instead of on every comparison.
+     */
+    private static class SortEntry<T> {
+        final T item;
+        final boolean folder;
+        final NaturalSortKey key;
+
+        SortEntry(T item, boolean folder, NaturalSortKey key) {
+            this.item = item;
+            this.folder = folder;
+            this.key = key;
+        }
+    }
+
+    /**
+     * Local directories are sorted by plain lower case path, files naturally.
+     */
+    private static class LocalSortEntry extends SortEntry<File> {
+        final String path;
+
+        LocalSortEntry(File file, Collator collator) {
+            this(file, file.isDirectory(), file.getPath().toLowerCase(Locale.getDefault()), collator);
+        }
+
+        private LocalSortEntry(File file, boolean directory, String path, Collator collator) {
+            super(file, directory, directory ? null : new NaturalSortKey(path, collator));
+            this.path = path;
+        }
+    }
 }
@@ -457,17 +457,7 @@ public final class FileStorageUtils {
      * @return true if file itself or ancestor is encrypted
      */
     public static boolean checkEncryptionStatus(OCFile file, FileDataStorageManager storageManager) {
-        if (file.isEncrypted()) {
-            return true;
-        }
-
-        while (!OCFile.ROOT_PATH.equals(file.getDecryptedRemotePath())) {
-            if (file.isEncrypted()) {
-                return true;
-            }
-            file = storageManager.getFileById(file.getParentId());
-        }
-        return false;
+        return file.isEncrypted() || storageManager.hasEncryptedAncestor(file);
     }
 
     /**
@@ -30,6 +30,7 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Build;
 import android.provider.MediaStore;
+import android.text.TextUtils;
 
 import com.nextcloud.client.account.UserAccountManager;
 import com.nextcloud.client.core.Clock;
@@ -39,7 +40,9 @@ import com.nextcloud.client.jobs.BackgroundJobManager;
 import com.nextcloud.client.network.ConnectivityService;
 import com.nextcloud.client.preferences.AppPreferences;
 import com.owncloud.android.MainApp;
+import com.owncloud.android.datamodel.ArbitraryDataProvider;
 import com.owncloud.android.datamodel.FilesystemDataProvider;
+import com.owncloud.android.datamodel.FilesystemIndexer;
 import com.owncloud.android.datamodel.MediaFolderType;
 import com.owncloud.android.datamodel.SyncedFolder;
 import com.owncloud.android.datamodel.SyncedFolderProvider;
@@ -57,6 +60,11 @@ import org.lukhnos.nnio.file.attribute.BasicFileAttributes;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import androidx.annotation.Nullable;
 
 import static com.owncloud.android.datamodel.OCFile.PATH_SEPARATOR;
 
@@ -70,86 +78,163 @@ public final class FilesSyncHelper {
 
     public static final int ContentSyncJobId = 315;
 
+    private static final String MEDIA_WATERMARK_PREFIX = "auto_upload_media_watermark_";
+    private static final String INTERNAL_VOLUME = "internal";
+    private static final String EXTERNAL_VOLUME = "external";
+
     private FilesSyncHelper() {
         // utility class -> private constructor
     }
 
-    private static void insertAllDBEntriesForSyncedFolder(SyncedFolder syncedFolder) {
-        final Context context = MainApp.getAppContext();
-        final ContentResolver contentResolver = context.getContentResolver();
+    /**
+     * @return indexer holding the counts of the scan, null if the synced folder was not scanned
+     */
+    @Nullable
+    private static FilesystemIndexer insertAllDBEntriesForSyncedFolder(SyncedFolder syncedFolder,
+                                                                       FilesystemDataProvider filesystemDataProvider,
+                                                                       ArbitraryDataProvider arbitraryDataProvider,
+                                                                       @Nullable Collection<Uri> changedContentUris) {
 
         final long enabledTimestampMs = syncedFolder.getEnabledTimestampMs();
 
-        if (syncedFolder.isEnabled() && (syncedFolder.isExisting() || enabledTimestampMs >= 0)) {
-            MediaFolderType mediaType = syncedFolder.getType();
-            if (mediaType == MediaFolderType.IMAGE) {
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Images.Media.INTERNAL_CONTENT_URI
-                    , syncedFolder);
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                                                    syncedFolder);
-            } else if (mediaType == MediaFolderType.VIDEO) {
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Video.Media.INTERNAL_CONTENT_URI,
-                                                    syncedFolder);
-                FilesSyncHelper.insertContentIntoDB(MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
-                                                    syncedFolder);
-            } else {
-                try {
-                    FilesystemDataProvider filesystemDataProvider = new FilesystemDataProvider(contentResolver);
-                    Path path = Paths.get(syncedFolder.getLocalPath());
-
-                    Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-                        @Override
-                        public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
-                            File file = path.toFile();
-                            if (syncedFolder.isExisting() || attrs.lastModifiedTime().toMillis() >= enabledTimestampMs) {
-                                filesystemDataProvider.storeOrUpdateFileValue(path.toAbsolutePath().toString(),
-                                                                              attrs.lastModifiedTime().toMillis(),
-                                                                              file.isDirectory(), syncedFolder);
-                            }
-
-                            return FileVisitResult.CONTINUE;
-                        }
+        if (!syncedFolder.isEnabled() || (!syncedFolder.isExisting() && enabledTimestampMs < 0)) {
+            return null;
+        }
 
-                        @Override
-                        public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                            return FileVisitResult.CONTINUE;
+        // incremental scans touch few files, looking them up one by one is cheaper than loading all
+        FilesystemIndexer indexer = filesystemDataProvider.createIndexer(syncedFolder, changedContentUris == null);
+
+        MediaFolderType mediaType = syncedFolder.getType();
+        if (mediaType == MediaFolderType.IMAGE) {
+            FilesSyncHelper.insertContentIntoDB(MediaStore.Images.Media.INTERNAL_CONTENT_URI,
+                                                syncedFolder,
+                                                indexer,
+                                                arbitraryDataProvider,
+                                                changedContentUris);
+            FilesSyncHelper.insertContentIntoDB(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                                                syncedFolder,
+                                                indexer,
+                                                arbitraryDataProvider,
+                                                changedContentUris);
+        } else if (mediaType == MediaFolderType.VIDEO) {
+            FilesSyncHelper.insertContentIntoDB(MediaStore.Video.Media.INTERNAL_CONTENT_URI,
+                                                syncedFolder,
+                                                indexer,
+                                                arbitraryDataProvider,
+                                                changedContentUris);
+            FilesSyncHelper.insertContentIntoDB(MediaStore.Video.Media.EXTERNAL_CONTENT_URI,
+                                                syncedFolder,
+                                                indexer,
+                                                arbitraryDataProvider,
+                                                changedContentUris);
+        } else if (changedContentUris == null) {
+            try {
+                Path path = Paths.get(syncedFolder.getLocalPath());
+
+                Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                        File file = path.toFile();
+                        if (syncedFolder.isExisting() || attrs.lastModifiedTime().toMillis() >= enabledTimestampMs) {
+                            indexer.index(path.toAbsolutePath().toString(),
+                                          attrs.lastModifiedTime().toMillis(),
+                                          file.isDirectory());
                         }
-                    });
-                } catch (IOException e) {
-                    Log_OC.e(TAG, "Something went wrong while indexing files for auto upload", e);
-                }
+
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                Log_OC.e(TAG, "Something went wrong while indexing files for auto upload", e);
             }
         }
+
+        indexer.finish();
+        return indexer;
     }
 
     public static void insertAllDBEntries(AppPreferences preferences,
                                           Clock clock,
                                           boolean skipCustom) {
+        insertDBEntries(preferences, clock, skipCustom, null);
+    }
+
+    /**
+     * Incremental variant of {@link #insertAllDBEntries(AppPreferences, Clock, boolean)}: only media added since the
+     * last scan of a media folder and the media reported as changed are indexed. Custom folders and changes that are
+     * not reported are left to the periodic full scan.
+     *
+     * @param changedContentUris content URIs reported by the media store
+     */
+    public static void insertChangedDBEntries(AppPreferences preferences,
+                                              Clock clock,
+                                              Collection<Uri> changedContentUris) {
+        insertDBEntries(preferences, clock, true, changedContentUris);
+    }
+
+    private static void insertDBEntries(AppPreferences preferences,
+                                        Clock clock,
+                                        boolean skipCustom,
+                                        @Nullable Collection<Uri> changedContentUris) {
         final Context context = MainApp.getAppContext();
         final ContentResolver contentResolver = context.getContentResolver();
         SyncedFolderProvider syncedFolderProvider = new SyncedFolderProvider(contentResolver, preferences, clock);
+        FilesystemDataProvider filesystemDataProvider =
+            new FilesystemDataProvider(contentResolver, preferences.isAutoUploadFastFingerprintEnabled());
+        ArbitraryDataProvider arbitraryDataProvider = new ArbitraryDataProvider(contentResolver);
+
+        long start = System.currentTimeMillis();
+        int scannedCount = 0;
+        int changedCount = 0;
+        int newCount = 0;
 
         for (SyncedFolder syncedFolder : syncedFolderProvider.getSyncedFolders()) {
             if (syncedFolder.isEnabled() && (!skipCustom || syncedFolder.getType() != MediaFolderType.CUSTOM)) {
-                insertAllDBEntriesForSyncedFolder(syncedFolder);
+                FilesystemIndexer indexer = insertAllDBEntriesForSyncedFolder(syncedFolder,
+                                                                              filesystemDataProvider,
+                                                                              arbitraryDataProvider,
+                                                                              changedContentUris);
+                if (indexer != null) {
+                    scannedCount += indexer.getScannedCount();
+                    changedCount += indexer.getChangedCount();
+                    newCount += indexer.getNewCount();
+                }
             }
         }
+
+        Log_OC.d(TAG, (changedContentUris == null ? "Full" : "Incremental") + " scan for auto upload: "
+            + scannedCount + " scanned, " + changedCount + " changed, " + newCount + " new in "
+            + (System.currentTimeMillis() - start) + "ms");
     }
 
-    private static void insertContentIntoDB(Uri uri, SyncedFolder syncedFolder) {
+    /**
+     * Indexes the media of the synced folder in the given media collection. Every scan stores the highest media id
+     * seen as watermark; if changed content URIs are given and a watermark exists, only media above the watermark and
+     * the changed media are queried. The watermark only advances once the indexed media are stored.
+     */
+    private static void insertContentIntoDB(Uri uri,
+                                            SyncedFolder syncedFolder,
+                                            FilesystemIndexer indexer,
+                                            ArbitraryDataProvider arbitraryDataProvider,
+                                            @Nullable Collection<Uri> changedContentUris) {
         final Context context = MainApp.getAppContext();
-        final ContentResolver contentResolver = context.getContentResolver();
 
         Cursor cursor;
+        int column_index_id;
         int column_index_data;
         int column_index_date_modified;
 
-        final FilesystemDataProvider filesystemDataProvider = new FilesystemDataProvider(contentResolver);
-
         String contentPath;
         boolean isFolder;
 
-        String[] projection = {MediaStore.MediaColumns.DATA, MediaStore.MediaColumns.DATE_MODIFIED};
+        String[] projection = {MediaStore.MediaColumns._ID,
+            MediaStore.MediaColumns.DATA,
+            MediaStore.MediaColumns.DATE_MODIFIED};
 
         String path = syncedFolder.getLocalPath();
         if (!path.endsWith(PATH_SEPARATOR)) {
@@ -159,23 +244,92 @@ public final class FilesSyncHelper {
 
         long enabledTimestampMs = syncedFolder.getEnabledTimestampMs();
 
-        cursor = context.getContentResolver().query(uri, projection, MediaStore.MediaColumns.DATA + " LIKE ?",
-                                                    new String[]{path}, null);
+        String watermarkKey = MEDIA_WATERMARK_PREFIX + syncedFolder.getId() + "_" + uri;
+        long watermark = getWatermark(arbitraryDataProvider, syncedFolder.getAccount(), watermarkKey);
+
+        String selection = MediaStore.MediaColumns.DATA + " LIKE ?";
+        if (changedContentUris != null && watermark >= 0) {
+            List<Long> changedIds = getChangedIds(uri, changedContentUris);
+            selection += " AND (" + MediaStore.MediaColumns._ID + " > " + watermark;
+            if (!changedIds.isEmpty()) {
+                selection += " OR " + MediaStore.MediaColumns._ID + " IN (" + TextUtils.join(",", changedIds) + ")";
+            }
+            selection += ")";
+        }
+
+        cursor = context.getContentResolver().query(uri, projection, selection, new String[]{path}, null);
 
         if (cursor != null) {
+            // a full scan may lower the watermark, e.g. after the media store has been rebuilt
+            long maxId = changedContentUris == null ? 0 : Math.max(watermark, 0);
+            column_index_id = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns._ID);
             column_index_data = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATA);
             column_index_date_modified = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATE_MODIFIED);
             while (cursor.moveToNext()) {
+                maxId = Math.max(maxId, cursor.getLong(column_index_id));
                 contentPath = cursor.getString(column_index_data);
                 isFolder = new File(contentPath).isDirectory();
                 if (syncedFolder.isExisting() || cursor.getLong(column_index_date_modified) >= enabledTimestampMs / 1000.0) {
-                    filesystemDataProvider.storeOrUpdateFileValue(contentPath,
-                                                                  cursor.getLong(column_index_date_modified), isFolder,
-                                                                  syncedFolder);
+                    indexer.index(contentPath, cursor.getLong(column_index_date_modified), isFolder);
                 }
             }
             cursor.close();
+
+            if (maxId != watermark) {
+                if (indexer.flush()) {
+                    arbitraryDataProvider.storeOrUpdateKeyValue(syncedFolder.getAccount(), watermarkKey, maxId);
+                } else {
+                    Log_OC.w(TAG, "Keeping media watermark of synced folder " + syncedFolder.getId() + " for " + uri);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return highest media id seen by the last scan, -1 if there was none
+     */
+    private static long getWatermark(ArbitraryDataProvider arbitraryDataProvider, String accountName, String key) {
+        String value = arbitraryDataProvider.getValue(accountName, key);
+
+        try {
+            return value.isEmpty() ? -1 : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return ids of the changed items of the media collection, e.g. 42 of content://media/external/images/media/42
+     */
+    private static List<Long> getChangedIds(Uri collectionUri, Collection<Uri> changedContentUris) {
+        List<Long> ids = new ArrayList<>();
+        List<String> collectionSegments = collectionUri.getPathSegments();
+        int size = collectionSegments.size();
+
+        for (Uri changedUri : changedContentUris) {
+            List<String> segments = changedUri.getPathSegments();
+
+            if (segments.size() == size + 1 &&
+                TextUtils.equals(collectionUri.getAuthority(), changedUri.getAuthority()) &&
+                isSameVolume(collectionSegments.get(0), segments.get(0)) &&
+                collectionSegments.subList(1, size).equals(segments.subList(1, size))) {
+                try {
+                    ids.add(Long.parseLong(segments.get(size)));
+                } catch (NumberFormatException e) {
+                    // no single item
+                }
+            }
         }
+
+        return ids;
+    }
+
+    /**
+     * The "external" volume covers all external volumes, e.g. "external_primary" of reported URIs.
+     */
+    private static boolean isSameVolume(String collectionVolume, String volume) {
+        return collectionVolume.equals(volume) ||
+            (EXTERNAL_VOLUME.equals(collectionVolume) && !INTERNAL_VOLUME.equals(volume));
     }
 
     public static void restartJobsIfNeeded(final UploadsStorageManager uploadsStorageManager,
@@ -0,0 +1,173 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.utils;
+
+import java.text.CollationKey;
+import java.text.Collator;
+
+import androidx.annotation.NonNull;
+import third_parties.daveKoeller.AlphanumComparator;
+
+/**
+ * Name split into chunks once, so that sorting compares precomputed chunks without allocating. Keys compare like
+ * {@link AlphanumComparator#compare(String, String)}: numbers by value and then leading zeros, special characters by
+ * code with dots first, and text chunks by the collator.
+ */
+public final class NaturalSortKey implements Comparable<NaturalSortKey> {
+    private static final byte DIGITS = 0;
+    private static final byte SPECIAL = 1;
+    private static final byte TEXT = 2;
+
+    private final int length;
+    private final byte[] types;
+    /**
+     * numbers without leading zeros, special characters, null for text
+     */
+    private final String[] values;
+    private final int[] leadingZeros;
+    /**
+     * numbers are compared by collation as well when they meet text
+     */
+    private final CollationKey[] collationKeys;
+
+    /**
+     * @param collator collator used for all keys to be compared, an instance must not be shared between threads
+     */
+    public NaturalSortKey(@NonNull String name, @NonNull Collator collator) {
+        length = name.length();
+
+        int chunks = countChunks(name);
+        types = new byte[chunks];
+        values = new String[chunks];
+        leadingZeros = new int[chunks];
+        collationKeys = new CollationKey[chunks];
+
+        int start = 0;
+        for (int i = 0; i < chunks; i++) {
+            int end = chunkEnd(name, start);
+            char first = name.charAt(start);
+
+            if (isDigit(first)) {
+                int zeros = 0;
+                while (start + zeros < end && name.charAt(start + zeros) == '0') {
+                    zeros++;
+                }
+
+                types[i] = DIGITS;
+                values[i] = name.substring(start + zeros, end);
+                leadingZeros[i] = zeros;
+                collationKeys[i] = collator.getCollationKey(name.substring(start, end));
+            } else if (isSpecialChar(first)) {
+                types[i] = SPECIAL;
+                values[i] = String.valueOf(first);
+            } else {
+                types[i] = TEXT;
+                collationKeys[i] = collator.getCollationKey(name.substring(start, end));
+            }
+
+            start = end;
+        }
+    }
+
+    @Override
+    public int compareTo(@NonNull NaturalSortKey other) {
+        int chunks = Math.min(types.length, other.types.length);
+
+        for (int i = 0; i < chunks; i++) {
+            int result;
+            byte type = types[i];
+            byte otherType = other.types[i];
+
+            if (type == DIGITS && otherType == DIGITS) {
+                String value = values[i];
+                String otherValue = other.values[i];
+
+                // same length of digits without leading zeros compares like the numbers
+                result = Integer.compare(value.length(), otherValue.length());
+                if (result == 0) {
+                    result = value.compareTo(otherValue);
+                }
+                if (result == 0) {
+                    result = Integer.compare(leadingZeros[i], other.leadingZeros[i]);
+                }
+            } else if (type == SPECIAL && otherType == SPECIAL) {
+                char c = values[i].charAt(0);
+                char otherC = other.values[i].charAt(0);
+
+                if (c == '.' && otherC != '.') {
+                    return -1;
+                } else if (otherC == '.' && c != '.') {
+                    return 1;
+                }
+                result = c - otherC;
+            } else if (type == SPECIAL) {
+                return -1;
+            } else if (otherType == SPECIAL) {
+                return 1;
+            } else {
+                result = collationKeys[i].compareTo(other.collationKeys[i]);
+            }
+
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return length - other.length;
+    }
+
+    private static int countChunks(String name) {
+        int chunks = 0;
+        for (int start = 0; start < name.length(); start = chunkEnd(name, start)) {
+            chunks++;
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Same chunks as AlphanumComparator: a run of digits, a run of text or a single special character.
+     */
+    private static int chunkEnd(String name, int start) {
+        int length = name.length();
+        char c = name.charAt(start);
+        int end = start + 1;
+
+        if (isDigit(c)) {
+            while (end < length && isDigit(name.charAt(end))) {
+                end++;
+            }
+        } else if (!isSpecialChar(c)) {
+            while (end < length && !isDigit(name.charAt(end)) && !isSpecialChar(name.charAt(end))) {
+                end++;
+            }
+        }
+
+        return end;
+    }
+
+    private static boolean isDigit(char ch) {
+        return ch >= 48 && ch <= 57;
+    }
+
+    private static boolean isSpecialChar(char ch) {
+        return ch <= 47 || ch >= 58 && ch <= 64 || ch >= 91 && ch <= 96 || ch >= 123 && ch <= 126;
+    }
+}
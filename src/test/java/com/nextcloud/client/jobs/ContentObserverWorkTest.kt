@@ -53,6 +53,8 @@ class ContentObserverWorkTest {
     @Mock
     lateinit var backgroundJobManager: BackgroundJobManager
 
+    private lateinit var uri: Uri
+
     @Before
     fun setUp() {
         MockitoAnnotations.initMocks(this)
@@ -63,7 +65,7 @@ class ContentObserverWorkTest {
             powerManagementService = powerManagementService,
             backgroundJobManager = backgroundJobManager
         )
-        val uri: Uri = Mockito.mock(Uri::class.java)
+        uri = Mockito.mock(Uri::class.java)
         whenever(params.triggeredContentUris).thenReturn(listOf(uri))
     }
 
@@ -83,7 +85,6 @@ class ContentObserverWorkTest {
     }
 
     @Test
-    @Ignore("TODO: needs further refactoring")
     fun sync_is_triggered() {
         // GIVEN
         //      power saving is disabled
@@ -96,8 +97,8 @@ class ContentObserverWorkTest {
         worker.doWork()
 
         // THEN
-        //      sync job is scheduled
-        // TO DO: verify(backgroundJobManager).sheduleFilesSync() or something like this
+        //      incremental sync job is scheduled for triggered uris
+        verify(backgroundJobManager).startIncrementalFilesSyncJob(listOf(uri.toString()))
     }
 
     @Test
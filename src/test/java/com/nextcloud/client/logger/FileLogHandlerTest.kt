@@ -158,6 +158,43 @@ class FileLogHandlerTest {
         assertEquals("Hello!", lastEntry)
     }
 
+    @Test
+    fun `writes are buffered until flushed`() {
+        // GIVEN
+        //      log writer is opened
+        val writer = FileLogHandler(logDir, "log.txt", FILE_SIZE)
+        writer.open()
+
+        // WHEN
+        //      entry is written
+        writer.write("buffered")
+
+        // THEN
+        //      entry is in the file only after flush
+        assertEquals("", readLogFile("log.txt"))
+        writer.flush()
+        assertEquals("buffered", readLogFile("log.txt"))
+        writer.close()
+    }
+
+    @Test
+    fun `malformed text is replaced`() {
+        // GIVEN
+        //      log writer is opened
+        val writer = FileLogHandler(logDir, "log.txt", FILE_SIZE)
+        writer.open()
+
+        // WHEN
+        //      entries with a split surrogate pair and multi-byte characters are written
+        writer.write("a\uD83Db")
+        writer.write(";äöü")
+        writer.close()
+
+        // THEN
+        //      malformed character is replaced, other entries are intact
+        assertEquals("a?b;äöü", readLogFile("log.txt"))
+    }
+
     @Test
     fun `load log lines from files`() {
         // GIVEN
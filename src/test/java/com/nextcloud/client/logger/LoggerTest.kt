@@ -28,6 +28,7 @@ import com.nhaarman.mockitokotlin2.capture
 import com.nhaarman.mockitokotlin2.doAnswer
 import com.nhaarman.mockitokotlin2.inOrder
 import com.nhaarman.mockitokotlin2.mock
+import com.nhaarman.mockitokotlin2.never
 import com.nhaarman.mockitokotlin2.spy
 import com.nhaarman.mockitokotlin2.times
 import com.nhaarman.mockitokotlin2.verify
@@ -95,7 +96,7 @@ class LoggerTest {
             writerThreadIds.add(Thread.currentThread().id)
             it.callRealMethod()
             latch.countDown()
-        }.whenever(logHandler).close()
+        }.whenever(logHandler).flush()
 
         // GIVEN
         //      logger event loop is running
@@ -127,7 +128,7 @@ class LoggerTest {
         val latch = CountDownLatch(LATCH_INIT)
         doAnswer { it.callRealMethod(); latch.countDown() }.whenever(logHandler).open()
         doAnswer { it.callRealMethod(); latch.countDown() }.whenever(logHandler).write(any())
-        doAnswer { it.callRealMethod(); latch.countDown() }.whenever(logHandler).close()
+        doAnswer { it.callRealMethod(); latch.countDown() }.whenever(logHandler).flush()
 
         // GIVEN
         //      logger event loop is running
@@ -140,10 +141,11 @@ class LoggerTest {
         // THEN
         //      log handler opens log file
         //      log handler writes entry
-        //      log handler closes log file
+        //      log handler flushes log file
+        //      log file is kept open
         //      no lost messages
         val called = latch.await(LATCH_WAIT, TimeUnit.SECONDS)
-        assertTrue("Expected open(), write() and close() calls on bg thread", called)
+        assertTrue("Expected open(), write() and flush() calls on bg thread", called)
         val inOrder = inOrder(logHandler)
         inOrder.verify(logHandler).open()
         inOrder.verify(logHandler).write(
@@ -151,7 +153,8 @@ class LoggerTest {
                 tag in this && message in this
             }
         )
-        inOrder.verify(logHandler).close()
+        inOrder.verify(logHandler).flush()
+        verify(logHandler, never()).close()
         assertFalse(logger.lostEntries)
     }
 
@@ -233,6 +236,24 @@ class LoggerTest {
         assertTrue(logger.lostEntries)
     }
 
+    @Test
+    fun `queue depth and lost entries are counted`() {
+        // GIVEN
+        //      logger event loop is not running
+
+        // WHEN
+        //      more messages are logged than the queue can hold
+        for (i in 0 until QUEUE_CAPACITY + MESSAGE_COUNT) {
+            logger.d("tag", "Message $i")
+        }
+
+        // THEN
+        //      queue is full
+        //      overflowing messages are counted as lost
+        assertEquals(QUEUE_CAPACITY, logger.queuedEntries)
+        assertEquals(MESSAGE_COUNT.toLong(), logger.lostEntriesCount)
+    }
+
     @Test
     fun `queue overflow warning is logged`() {
 
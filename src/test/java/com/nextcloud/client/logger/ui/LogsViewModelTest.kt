@@ -68,6 +68,8 @@ class LogsViewModelTest {
         var onLoadedCallback: OnLogsLoaded? = null
 
         override val lostEntries: Boolean = false
+        override val lostEntriesCount: Long = 0
+        override val queuedEntries: Int = 0
         override fun load(onLoaded: OnLogsLoaded) { this.onLoadedCallback = onLoaded; loadRequestCount++ }
         override fun deleteAll() { /* no implementation neeeded */
         }
@@ -0,0 +1,123 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.nextcloud.client.preferences;
+
+import com.owncloud.android.datamodel.FileDataStorageManager;
+import com.owncloud.android.datamodel.OCFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class FolderPreferenceResolverTest {
+    private static final String ACCOUNT = "user@nextcloud.localhost";
+    private static final String PREFERENCE = "sort_order";
+
+    private FakeStorage storage;
+    private FolderPreferenceResolver sut;
+
+    private OCFile root;
+    private OCFile documents;
+    private OCFile work;
+
+    private static class FakeStorage implements FolderPreferenceResolver.Storage {
+        final Map<String, String> values = new HashMap<>();
+        final Map<Long, OCFile> files = new HashMap<>();
+        int calls;
+
+        @Override
+        public String getValue(String accountName, String key) {
+            calls++;
+            String value = values.get(key);
+            return value == null ? "" : value;
+        }
+
+        @Override
+        public OCFile getFileById(String accountName, long fileId) {
+            calls++;
+            return files.get(fileId);
+        }
+    }
+
+    private OCFile folder(long id, long parentId, String path) {
+        OCFile folder = new OCFile(path);
+        folder.setFileId(id);
+        folder.setParentId(parentId);
+        storage.files.put(id, folder);
+        return folder;
+    }
+
+    @Before
+    public void setUp() {
+        storage = new FakeStorage();
+        sut = new FolderPreferenceResolver();
+
+        root = folder(1, FileDataStorageManager.ROOT_PARENT_ID, "/");
+        documents = folder(2, 1, "/Documents/");
+        work = folder(3, 2, "/Documents/Work/");
+    }
+
+    @Test
+    public void inheritsFromClosestAncestor() {
+        storage.values.put(PREFERENCE + "_1", "root");
+        storage.values.put(PREFERENCE + "_2", "documents");
+
+        assertEquals("documents", sut.get(storage, ACCOUNT, PREFERENCE, work));
+        assertEquals("documents", sut.get(storage, ACCOUNT, PREFERENCE, documents));
+        assertEquals("root", sut.get(storage, ACCOUNT, PREFERENCE, root));
+    }
+
+    @Test
+    public void fallsBackToValueWithoutFolder() {
+        storage.values.put(PREFERENCE + "_0", "default");
+
+        assertEquals("default", sut.get(storage, ACCOUNT, PREFERENCE, work));
+        assertEquals("default", sut.get(storage, ACCOUNT, PREFERENCE, null));
+        assertEquals("", sut.get(storage, "other@nextcloud.localhost", "other", work));
+    }
+
+    @Test
+    public void resolvedFolderDoesNotQueryStorage() {
+        storage.values.put(PREFERENCE + "_1", "root");
+
+        assertEquals("root", sut.get(storage, ACCOUNT, PREFERENCE, work));
+        int calls = storage.calls;
+
+        assertEquals("root", sut.get(storage, ACCOUNT, PREFERENCE, work));
+        assertEquals("root", sut.get(storage, ACCOUNT, PREFERENCE, documents));
+        assertEquals(calls, storage.calls);
+    }
+
+    @Test
+    public void setInvalidatesInheritedValues() {
+        storage.values.put(PREFERENCE + "_1", "root");
+        assertEquals("root", sut.get(storage, ACCOUNT, PREFERENCE, work));
+
+        storage.values.put(PREFERENCE + "_2", "documents");
+        sut.onSet(ACCOUNT, PREFERENCE, documents, "documents");
+
+        assertEquals("documents", sut.get(storage, ACCOUNT, PREFERENCE, work));
+        assertEquals("root", sut.get(storage, ACCOUNT, PREFERENCE, root));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EncryptedFolderIndexTest {
+    private static final String ACCOUNT = "user@nextcloud.localhost";
+
+    private EncryptedFolderIndex sut;
+    private int loads;
+    private final EncryptedFolderIndex.Loader loader = () -> {
+        loads++;
+        return Arrays.asList("/secret/", "/a/b/c/");
+    };
+    private int walks;
+    private final EncryptedFolderIndex.AncestorWalk walk = () -> {
+        walks++;
+        return true;
+    };
+
+    private static OCFile folder(String path, boolean encrypted) {
+        OCFile folder = new OCFile(path).setFolder();
+        folder.setEncrypted(encrypted);
+        return folder;
+    }
+
+    @Before
+    public void setUp() {
+        sut = new EncryptedFolderIndex();
+        loads = 0;
+        walks = 0;
+    }
+
+    @Test
+    public void checksAncestorsOnly() {
+        assertTrue(sut.hasEncryptedAncestor(ACCOUNT, "/secret/file.txt", loader, walk));
+        assertTrue(sut.hasEncryptedAncestor(ACCOUNT, "/secret/sub/", loader, walk));
+        assertTrue(sut.hasEncryptedAncestor(ACCOUNT, "/a/b/c/d/e/f.jpg", loader, walk));
+        assertFalse(sut.hasEncryptedAncestor(ACCOUNT, "/secret/", loader, walk));
+        assertFalse(sut.hasEncryptedAncestor(ACCOUNT, "/a/b/", loader, walk));
+        assertFalse(sut.hasEncryptedAncestor(ACCOUNT, "/secretive/file.txt", loader, walk));
+        assertFalse(sut.hasEncryptedAncestor(ACCOUNT, "/", loader, walk));
+
+        assertEquals(1, loads);
+    }
+
+    @Test
+    public void followsSavedRemovedAndMovedFolders() {
+        assertFalse(sut.hasEncryptedAncestor(ACCOUNT, "/new/file.txt", loader, walk));
+
+        sut.update(ACCOUNT, folder("/new/", true));
+        assertTrue(sut.hasEncryptedAncestor(ACCOUNT, "/new/file.txt", loader, walk));
+
+        sut.update(ACCOUNT, folder("/new/", false));
+        assertFalse(sut.hasEncryptedAncestor(ACCOUNT, "/new/file.txt", loader, walk));
+
+        sut.move(ACCOUNT, "/a/", "/moved/");
+        assertFalse(sut.hasEncryptedAncestor(ACCOUNT, "/a/b/c/file.txt", loader, walk));
+        assertTrue(sut.hasEncryptedAncestor(ACCOUNT, "/moved/b/c/file.txt", loader, walk));
+
+        sut.remove(ACCOUNT, "/moved/b/");
+        assertFalse(sut.hasEncryptedAncestor(ACCOUNT, "/moved/b/c/file.txt", loader, walk));
+
+        assertEquals(1, loads);
+    }
+
+    @Test
+    public void clearedAccountLoadsAgain() {
+        sut.hasEncryptedAncestor(ACCOUNT, "/secret/file.txt", loader, walk);
+        sut.clear(ACCOUNT);
+
+        assertTrue(sut.hasEncryptedAncestor(ACCOUNT, "/secret/file.txt", loader, walk));
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void failedLoadIsRetried() {
+        EncryptedFolderIndex.Loader failing = () -> {
+            loads++;
+            return null;
+        };
+
+        sut.hasEncryptedAncestor(ACCOUNT, "/secret/file.txt", failing, walk);
+        assertTrue(sut.hasEncryptedAncestor(ACCOUNT, "/secret/file.txt", loader, walk));
+        assertEquals(2, loads);
+    }
+
+    @Test
+    public void failedLoadFallsBackToWalk() {
+        EncryptedFolderIndex.Loader failing = () -> null;
+
+        assertTrue(sut.hasEncryptedAncestor(ACCOUNT, "/secret/file.txt", failing, walk));
+        assertFalse(sut.hasEncryptedAncestor(ACCOUNT, "/plain/file.txt", failing, () -> false));
+        assertEquals(1, walks);
+    }
+
+    @Test
+    public void loadedIndexIsNotWalked() {
+        assertFalse(sut.hasEncryptedAncestor(ACCOUNT, "/plain/file.txt", loader, walk));
+        assertEquals(0, walks);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.database.Cursor;
+
+import com.owncloud.android.db.ProviderMeta.ProviderTableMeta;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FileCursorMapperTest {
+
+    @Test
+    public void parseShareesEmpty() {
+        assertTrue(FileCursorMapper.parseSharees(null).isEmpty());
+        assertTrue(FileCursorMapper.parseSharees("").isEmpty());
+        assertTrue(FileCursorMapper.parseSharees(FileDataStorageManager.NULL_STRING).isEmpty());
+    }
+
+    @Test
+    public void parseShareesInvalid() {
+        assertTrue(FileCursorMapper.parseSharees("{invalid").isEmpty());
+    }
+
+    @Test
+    public void parseSharees() {
+        assertEquals(2, FileCursorMapper.parseSharees("[{\"userId\":\"a\"},{\"userId\":\"b\"}]").size());
+    }
+
+    @Test
+    public void lightProjectionResolvesColumnsOnce() {
+        Cursor cursor = mock(Cursor.class);
+        when(cursor.getColumnIndex(anyString())).thenReturn(-1);
+        when(cursor.getColumnIndex(ProviderTableMeta._ID)).thenReturn(0);
+        when(cursor.getColumnIndex(ProviderTableMeta.FILE_PARENT)).thenReturn(1);
+        when(cursor.getColumnIndex(ProviderTableMeta.FILE_PATH)).thenReturn(2);
+        when(cursor.getColumnIndex(ProviderTableMeta.FILE_CONTENT_TYPE)).thenReturn(3);
+        when(cursor.getColumnIndex(ProviderTableMeta.FILE_ETAG)).thenReturn(4);
+
+        when(cursor.getLong(0)).thenReturn(42L);
+        when(cursor.getLong(1)).thenReturn(1L);
+        when(cursor.getString(2)).thenReturn("/folder/file.txt");
+        when(cursor.getString(3)).thenReturn("text/plain");
+        when(cursor.getString(4)).thenReturn("etag");
+
+        FileCursorMapper sut = new FileCursorMapper(cursor, "user@server", false);
+
+        for (int i = 0; i < 3; i++) {
+            OCFile file = sut.map(cursor);
+
+            assertEquals(42L, file.getFileId());
+            assertEquals(1L, file.getParentId());
+            assertEquals("/folder/file.txt", file.getRemotePath());
+            assertEquals("text/plain", file.getMimeType());
+            assertEquals("etag", file.getEtag());
+            assertTrue(file.getSharees().isEmpty());
+        }
+
+        verify(cursor, times(1)).getColumnIndex(ProviderTableMeta.FILE_PATH);
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FilesystemDataProviderTest {
+    private static final int SIZE = 5 * FilesystemDataProvider.FINGERPRINT_BLOCK_SIZE + 17;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File createFile(int size) throws IOException {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        File file = folder.newFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private static void flipByte(File file, long position) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(position);
+            int value = randomAccessFile.read();
+            randomAccessFile.seek(position);
+            randomAccessFile.write(value ^ 1);
+        }
+    }
+
+    @Test
+    public void checksumOfWholeFile() throws IOException {
+        File file = createFile(SIZE);
+
+        CRC32 expected = new CRC32();
+        expected.update(Files.readAllBytes(file.toPath()));
+
+        assertEquals(expected.getValue(), FilesystemDataProvider.getFileChecksum(file.getAbsolutePath()));
+    }
+
+    @Test
+    public void checksumOfMissingFile() {
+        assertEquals(-1, FilesystemDataProvider.getFileChecksum(new File(folder.getRoot(), "x").getAbsolutePath()));
+        assertEquals(-1, FilesystemDataProvider.getFileFingerprint(new File(folder.getRoot(), "x").getAbsolutePath()));
+    }
+
+    @Test
+    public void fingerprintDetectsChangedHeadAndTail() throws IOException {
+        File file = createFile(SIZE);
+        String path = file.getAbsolutePath();
+        long fingerprint = FilesystemDataProvider.getFileFingerprint(path);
+        assertEquals(fingerprint, FilesystemDataProvider.getFileFingerprint(path));
+
+        flipByte(file, 1);
+        long changedHead = FilesystemDataProvider.getFileFingerprint(path);
+        assertNotEquals(fingerprint, changedHead);
+
+        flipByte(file, SIZE - 2);
+        long changedTail = FilesystemDataProvider.getFileFingerprint(path);
+        assertNotEquals(changedHead, changedTail);
+
+        // middle is not read
+        flipByte(file, SIZE / 2);
+        assertEquals(changedTail, FilesystemDataProvider.getFileFingerprint(path));
+    }
+
+    @Test
+    public void fingerprintDetectsChangedSize() throws IOException {
+        File file = createFile(SIZE);
+        String path = file.getAbsolutePath();
+        long fingerprint = FilesystemDataProvider.getFileFingerprint(path);
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(SIZE - 1);
+        }
+
+        assertNotEquals(fingerprint, FilesystemDataProvider.getFileFingerprint(path));
+    }
+
+    @Test
+    public void fingerprintOfSmallFiles() throws IOException {
+        assertNotEquals(FilesystemDataProvider.getFileFingerprint(createFile(0).getAbsolutePath()),
+                        FilesystemDataProvider.getFileFingerprint(createFile(10).getAbsolutePath()));
+    }
+
+    @Test
+    public void isFingerprint() {
+        assertTrue(FilesystemDataProvider.isFingerprint(FilesystemDataProvider.FINGERPRINT_PREFIX + "123"));
+        assertFalse(FilesystemDataProvider.isFingerprint("123"));
+        assertFalse(FilesystemDataProvider.isFingerprint(null));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FolderDiffTest {
+
+    @Test
+    public void sameValueNull() {
+        assertTrue(FolderDiff.isSameValue(null, null));
+        assertFalse(FolderDiff.isSameValue(null, "etag"));
+        assertFalse(FolderDiff.isSameValue("etag", null));
+    }
+
+    @Test
+    public void sameValueString() {
+        assertTrue(FolderDiff.isSameValue("5f3c", "5f3c"));
+        assertFalse(FolderDiff.isSameValue("5f3c", "5f3d"));
+    }
+
+    @Test
+    public void sameValueNumbers() {
+        assertTrue(FolderDiff.isSameValue(1234L, "1234"));
+        assertTrue(FolderDiff.isSameValue(3, "3"));
+        assertFalse(FolderDiff.isSameValue(1234L, "1235"));
+    }
+
+    @Test
+    public void sameValueBoolean() {
+        assertTrue(FolderDiff.isSameValue(Boolean.TRUE, "1"));
+        assertTrue(FolderDiff.isSameValue(Boolean.FALSE, "0"));
+        assertFalse(FolderDiff.isSameValue(Boolean.TRUE, "0"));
+    }
+
+    @Test
+    public void counts() {
+        FolderDiff diff = new FolderDiff();
+        diff.addInserted();
+        diff.addInserted();
+        diff.addUpdated();
+        diff.addUnchanged();
+        diff.addRemoved();
+
+        assertEquals(2, diff.getInserted());
+        assertEquals(1, diff.getUpdated());
+        assertEquals(1, diff.getUnchanged());
+        assertEquals(1, diff.getRemoved());
+        assertEquals(4, diff.getChanged());
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InFlightLoadsTest {
+
+    private final InFlightLoads<Object> sut = new InFlightLoads<>();
+
+    @Test
+    public void concurrentLoadsOfSameKeyShareResult() throws InterruptedException {
+        Object result = new Object();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<Object> first = new AtomicReference<>();
+
+        Thread owner = new Thread(() -> first.set(sut.load("key", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return result;
+        })));
+        owner.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        AtomicReference<Object> second = new AtomicReference<>();
+        Thread waiter = new Thread(() -> second.set(sut.load("key", () -> {
+            loads.incrementAndGet();
+            return new Object();
+        })));
+        waiter.start();
+
+        // parked waiting for the running load
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        owner.join(5000);
+        waiter.join(5000);
+
+        assertEquals(1, loads.get());
+        assertSame(result, first.get());
+        assertSame(result, second.get());
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void waiterLoadsAgainIfOwnerIsCancelled() throws InterruptedException {
+        Object result = new Object();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ownerCancelled = new AtomicBoolean();
+        AtomicReference<Object> first = new AtomicReference<>(result);
+
+        Thread owner = new Thread(() -> first.set(sut.load("key", () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // aborted download
+            return null;
+        }, ownerCancelled::get)));
+        owner.start();
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+
+        AtomicReference<Object> second = new AtomicReference<>();
+        Thread waiter = new Thread(() -> second.set(sut.load("key", () -> {
+            loads.incrementAndGet();
+            return result;
+        }, () -> false)));
+        waiter.start();
+
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        ownerCancelled.set(true);
+        release.countDown();
+        owner.join(5000);
+        waiter.join(5000);
+
+        assertEquals(2, loads.get());
+        assertNull(first.get());
+        assertSame(result, second.get());
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void finishedLoadIsNotKept() {
+        AtomicInteger loads = new AtomicInteger();
+        InFlightLoads.Loader<Object> loader = () -> {
+            loads.incrementAndGet();
+            return new Object();
+        };
+
+        sut.load("key", loader);
+        sut.load("key", loader);
+
+        assertEquals(2, loads.get());
+        assertEquals(0, sut.size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failureIsRethrown() {
+        try {
+            sut.load("key", () -> {
+                throw new IllegalStateException();
+            });
+        } finally {
+            assertEquals(0, sut.size());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ThumbnailMemoryCacheTest {
+
+    private static Bitmap bitmap(int byteCount) {
+        Bitmap bitmap = mock(Bitmap.class);
+        when(bitmap.getAllocationByteCount()).thenReturn(byteCount);
+        return bitmap;
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        ThumbnailMemoryCache sut = new ThumbnailMemoryCache(8000);
+        Bitmap thumbnail = bitmap(1000);
+
+        assertNull(sut.get("t1"));
+        sut.putBitmap("t1", thumbnail);
+        assertSame(thumbnail, sut.get("t1"));
+        assertSame(thumbnail, sut.get("t1"));
+
+        assertEquals(2, sut.hitCount());
+        assertEquals(1, sut.missCount());
+    }
+
+    @Test
+    public void skipsLargeBitmaps() {
+        ThumbnailMemoryCache sut = new ThumbnailMemoryCache(8000);
+
+        sut.putBitmap("r1", bitmap(1000));
+        sut.putBitmap("r1", bitmap(1001));
+
+        // older entry of the key must not be returned either
+        assertNull(sut.get("r1"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBitmaps() {
+        ThumbnailMemoryCache sut = new ThumbnailMemoryCache(8000);
+        Bitmap evicted = bitmap(1000);
+
+        sut.putBitmap("t1", evicted);
+        for (int i = 2; i <= 9; i++) {
+            sut.putBitmap("t" + i, bitmap(1000));
+        }
+
+        assertTrue(sut.containsBitmap(sut.get("t9")));
+        assertFalse(sut.containsBitmap(evicted));
+    }
+
+    @Test
+    public void sizeForHeap() {
+        assertEquals(32 * 1024 * 1024, ThumbnailMemoryCache.sizeForHeap(256L * 1024 * 1024));
+        assertEquals(Integer.MAX_VALUE, ThumbnailMemoryCache.sizeForHeap(Long.MAX_VALUE));
+    }
+}
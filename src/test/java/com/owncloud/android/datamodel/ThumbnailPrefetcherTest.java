@@ -0,0 +1,78 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThumbnailPrefetcherTest {
+
+    private static OCFile file(String path, boolean previewAvailable) {
+        OCFile file = new OCFile(path);
+        file.setPreviewAvailable(previewAvailable);
+        return file;
+    }
+
+    @Test
+    public void selectsFirstFilesWithPreview() {
+        OCFile folder = new OCFile("/folder/").setFolder();
+        OCFile text = file("/text.txt", false);
+        OCFile first = file("/1.jpg", true);
+        OCFile second = file("/2.jpg", true);
+        OCFile third = file("/3.jpg", true);
+
+        List<OCFile> candidates = ThumbnailPrefetcher.selectCandidates(Arrays.asList(folder, text, first, second, third),
+                                                                       2);
+
+        assertEquals(Arrays.asList(first, second), candidates);
+    }
+
+    @Test
+    public void selectsAtMostPrefetchItems() {
+        List<OCFile> files = new ArrayList<>();
+        for (int i = 0; i < ThumbnailPrefetcher.PREFETCH_ITEMS * 2; i++) {
+            files.add(file("/" + i + ".jpg", true));
+        }
+
+        List<OCFile> candidates = ThumbnailPrefetcher.selectCandidates(files, ThumbnailPrefetcher.PREFETCH_ITEMS);
+
+        assertEquals(ThumbnailPrefetcher.PREFETCH_ITEMS, candidates.size());
+        assertEquals(files.get(0), candidates.get(0));
+    }
+
+    @Test
+    public void countsShownPrefetchedThumbnailsOnce() {
+        ThumbnailPrefetcher.Stats stats = new ThumbnailPrefetcher.Stats();
+
+        stats.onPrefetched("t1");
+        stats.onPrefetched("t2");
+        stats.onShown("t1");
+        stats.onShown("t1");
+        stats.onShown("t3");
+
+        assertEquals(2, stats.getPrefetched());
+        assertEquals(1, stats.getHits());
+    }
+}
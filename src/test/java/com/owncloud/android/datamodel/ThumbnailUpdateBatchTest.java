@@ -0,0 +1,98 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.datamodel;
+
+import android.accounts.Account;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ThumbnailUpdateBatchTest {
+
+    @Mock
+    private ScheduledExecutorService executor;
+
+    @Mock
+    private FileDataStorageManager storageManager;
+
+    @Mock
+    private Account account;
+
+    private ThumbnailUpdateBatch sut;
+
+    private static OCFile file(long id) {
+        OCFile file = new OCFile("/file" + id + ".jpg");
+        file.setFileId(id);
+        file.setUpdateThumbnailNeeded(true);
+        return file;
+    }
+
+    @Before
+    public void setUp() {
+        when(storageManager.getAccount()).thenReturn(account);
+        sut = new ThumbnailUpdateBatch(executor);
+    }
+
+    @Test
+    public void burstIsWrittenOnce() {
+        OCFile first = file(1);
+        OCFile second = file(2);
+
+        sut.add(storageManager, first);
+        sut.add(storageManager, second);
+
+        assertFalse(first.isUpdateThumbnailNeeded());
+        assertFalse(second.isUpdateThumbnailNeeded());
+        verify(executor, times(1)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        verify(storageManager, never()).setThumbnailsUpdated(any());
+
+        sut.flush();
+        verify(storageManager).setThumbnailsUpdated(Arrays.asList(1L, 2L));
+    }
+
+    @Test
+    public void nextBurstIsScheduledAgain() {
+        sut.add(storageManager, file(1));
+        sut.flush();
+        sut.add(storageManager, file(2));
+        sut.flush();
+
+        verify(executor, times(2)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+        verify(storageManager).setThumbnailsUpdated(Collections.singletonList(1L));
+        verify(storageManager).setThumbnailsUpdated(Collections.singletonList(2L));
+    }
+}
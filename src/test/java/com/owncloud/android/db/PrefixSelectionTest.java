@@ -0,0 +1,81 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.db;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PrefixSelectionTest {
+
+    @Test
+    public void upperBoundOfFolder() {
+        assertEquals("/folder0", PrefixSelection.upperBound("/folder/"));
+    }
+
+    @Test
+    public void upperBoundIsCaseSensitive() {
+        String upperBound = PrefixSelection.upperBound("/Folder/");
+
+        assertTrue("/Folder/file".compareTo(upperBound) < 0);
+        assertTrue("/folder/file".compareTo(upperBound) > 0);
+    }
+
+    @Test
+    public void upperBoundFollowsMaxValueBySupplementaryCharacter() {
+        // U+FFFF is followed by U+10000 in the UTF-8 order of SQLite
+        assertEquals("/a\uD800\uDC00", PrefixSelection.upperBound("/a" + Character.MAX_VALUE));
+    }
+
+    @Test
+    public void upperBoundSkipsSurrogates() {
+        assertEquals("/\uE000", PrefixSelection.upperBound("/\uD7FF"));
+    }
+
+    @Test
+    public void upperBoundOfSupplementaryCharacter() {
+        // U+1F600 is followed by U+1F601, other emojis must stay out of the range
+        assertEquals("/a\uD83D\uDE01", PrefixSelection.upperBound("/a\uD83D\uDE00"));
+    }
+
+    @Test
+    public void upperBoundSkipsMaxCodePoint() {
+        assertEquals("/b", PrefixSelection.upperBound("/a" + new String(Character.toChars(Character.MAX_CODE_POINT))));
+    }
+
+    @Test
+    public void upperBoundEmpty() {
+        assertNull(PrefixSelection.upperBound(""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void argsOfEmptyPrefix() {
+        PrefixSelection.args("");
+    }
+
+    @Test
+    public void selection() {
+        assertEquals("(path >= ? AND path < ?)", PrefixSelection.selection("path"));
+        assertArrayEquals(new String[]{"/a/", "/a0"}, PrefixSelection.args("/a/"));
+    }
+}
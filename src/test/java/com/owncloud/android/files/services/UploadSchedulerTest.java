@@ -0,0 +1,182 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.files.services;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UploadSchedulerTest {
+
+    private static final long SMALL = 1024;
+    private static final long LARGE = UploadScheduler.SMALL_FILE_SIZE + 1;
+    private static final long TIMEOUT_MS = 200;
+
+    private final UploadScheduler sut = new UploadScheduler();
+
+    @Test
+    public void accountsTakeTurns() throws InterruptedException {
+        sut.enqueue("a1", "a", SMALL);
+        sut.enqueue("a2", "a", SMALL);
+        sut.enqueue("a3", "a", SMALL);
+        sut.enqueue("b1", "b", SMALL);
+
+        assertEquals("a1", sut.take(UploadScheduler.Lane.SMALL).uploadKey);
+        assertEquals("b1", sut.take(UploadScheduler.Lane.SMALL).uploadKey);
+        assertEquals("a2", sut.take(UploadScheduler.Lane.SMALL).uploadKey);
+        assertEquals("a3", sut.take(UploadScheduler.Lane.SMALL).uploadKey);
+    }
+
+    @Test
+    public void largeWorkerPrefersLargeFilesAndFallsBackToSmallOnes() throws InterruptedException {
+        sut.enqueue("small", "a", SMALL);
+        sut.enqueue("large", "a", LARGE);
+
+        assertEquals("large", sut.take(UploadScheduler.Lane.LARGE).uploadKey);
+        assertEquals("small", sut.take(UploadScheduler.Lane.LARGE).uploadKey);
+    }
+
+    @Test
+    public void smallWorkerNeverTakesLargeFiles() throws InterruptedException {
+        sut.enqueue("large", "a", LARGE);
+
+        Thread worker = startTake(UploadScheduler.Lane.SMALL, new AtomicReference<>());
+        worker.join(TIMEOUT_MS);
+        assertTrue(worker.isAlive());
+
+        sut.shutdown();
+        worker.join(TIMEOUT_MS);
+        assertFalse(worker.isAlive());
+    }
+
+    @Test
+    public void uploadsOfSameKeyRunOneAfterTheOther() throws InterruptedException {
+        sut.enqueue("same", "a", SMALL);
+        sut.enqueue("same", "a", SMALL);
+
+        UploadScheduler.Task first = sut.take(UploadScheduler.Lane.SMALL);
+
+        AtomicReference<UploadScheduler.Task> second = new AtomicReference<>();
+        Thread worker = startTake(UploadScheduler.Lane.SMALL, second);
+        worker.join(TIMEOUT_MS);
+        assertNull(second.get());
+
+        sut.finish(first, SMALL, 0, 1);
+        worker.join(TIMEOUT_MS);
+        assertEquals("same", second.get().uploadKey);
+    }
+
+    @Test
+    public void uploadsOfSameOrderKeyRunOneAfterTheOtherAcrossLanes() throws InterruptedException {
+        sut.enqueue("/encrypted/large", "/encrypted/", "a", LARGE);
+        sut.enqueue("/encrypted/small", "/encrypted/", "a", SMALL);
+
+        UploadScheduler.Task first = sut.take(UploadScheduler.Lane.LARGE);
+
+        AtomicReference<UploadScheduler.Task> second = new AtomicReference<>();
+        Thread worker = startTake(UploadScheduler.Lane.SMALL, second);
+        worker.join(TIMEOUT_MS);
+        assertNull(second.get());
+
+        sut.finish(first, LARGE, 0, 1);
+        worker.join(TIMEOUT_MS);
+        assertEquals("/encrypted/small", second.get().uploadKey);
+    }
+
+    @Test
+    public void idleOnceAllUploadsFinished() throws InterruptedException {
+        assertTrue(sut.isIdle());
+
+        sut.enqueue("a1", "a", SMALL);
+        assertFalse(sut.isIdle());
+
+        UploadScheduler.Task task = sut.take(UploadScheduler.Lane.SMALL);
+        assertFalse(sut.isIdle());
+
+        sut.finish(task, SMALL, 0, 1);
+        assertTrue(sut.isIdle());
+    }
+
+    @Test
+    public void statsCountOnlyPerformedUploads() throws InterruptedException {
+        sut.enqueue("a1", "a", SMALL);
+        sut.enqueue("a2", "a", SMALL);
+        sut.finish(sut.take(UploadScheduler.Lane.SMALL), 2000, 0, 1000);
+        sut.finish(sut.take(UploadScheduler.Lane.SMALL), 0, 1000, 2000);
+
+        UploadScheduler.LaneStats stats = sut.getStats(UploadScheduler.Lane.SMALL);
+        assertEquals(1, stats.getUploads());
+        assertEquals(2000, stats.getBytesPerSecond());
+        assertEquals(0, sut.getStats(UploadScheduler.Lane.LARGE).getUploads());
+    }
+
+    @Test
+    public void statsUseBusyTimeOfOverlappingUploads() throws InterruptedException {
+        sut.enqueue("a1", "a", SMALL);
+        sut.enqueue("a2", "a", SMALL);
+        sut.enqueue("a3", "a", SMALL);
+        UploadScheduler.Task first = sut.take(UploadScheduler.Lane.SMALL);
+        UploadScheduler.Task second = sut.take(UploadScheduler.Lane.LARGE);
+
+        // both run from 0 to 1000 ms
+        sut.finish(first, 1000, 0, 1000);
+        assertEquals(1000, sut.getStats(UploadScheduler.Lane.SMALL).getBytesPerSecond());
+        sut.finish(second, 1000, 0, 1000);
+        assertEquals(2000, sut.getStats(UploadScheduler.Lane.SMALL).getBytesPerSecond());
+
+        // idle from 1000 to 3000 ms
+        sut.finish(sut.take(UploadScheduler.Lane.SMALL), 2000, 3000, 4000);
+        UploadScheduler.LaneStats stats = sut.getStats(UploadScheduler.Lane.SMALL);
+        assertEquals(3, stats.getUploads());
+        assertEquals(2000, stats.getBytesPerSecond());
+    }
+
+    @Test
+    public void takeReturnsNullAfterShutdown() throws InterruptedException {
+        sut.enqueue("a1", "a", SMALL);
+        sut.shutdown();
+
+        assertNull(sut.take(UploadScheduler.Lane.SMALL));
+    }
+
+    @Test
+    public void oneWorkerForLargeFiles() {
+        assertEquals(Arrays.asList(UploadScheduler.Lane.LARGE, UploadScheduler.Lane.SMALL, UploadScheduler.Lane.SMALL),
+                     UploadScheduler.workerLanes(3));
+    }
+
+    private Thread startTake(UploadScheduler.Lane lane, AtomicReference<UploadScheduler.Task> result) {
+        Thread worker = new Thread(() -> {
+            try {
+                result.set(sut.take(lane));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        worker.start();
+        return worker;
+    }
+}
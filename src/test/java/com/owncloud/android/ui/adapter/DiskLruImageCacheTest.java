@@ -0,0 +1,74 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class DiskLruImageCacheTest {
+    private static final byte[] JPEG = new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 0, 16, 'J',
+        'F', 'I', 'F', 0, 1, 1, 0};
+
+    @Test
+    public void headerRoundTrip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DiskLruImageCache.writeHeader(out, 256, 128);
+        out.write(JPEG);
+
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertArrayEquals(new int[]{256, 128}, DiskLruImageCache.readHeader(in));
+
+        // image follows directly
+        byte[] image = new byte[JPEG.length];
+        assertEquals(JPEG.length, in.read(image));
+        assertArrayEquals(JPEG, image);
+    }
+
+    @Test
+    public void entryWithoutHeader() throws IOException {
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(JPEG));
+        assertNull(DiskLruImageCache.readHeader(in));
+
+        // stream is back at the start of the image
+        byte[] image = new byte[JPEG.length];
+        assertEquals(JPEG.length, in.read(image));
+        assertArrayEquals(JPEG, image);
+    }
+
+    @Test
+    public void entryShorterThanHeader() throws IOException {
+        byte[] entry = new byte[]{1, 2, 3};
+        InputStream in = new BufferedInputStream(new ByteArrayInputStream(entry));
+        assertNull(DiskLruImageCache.readHeader(in));
+
+        byte[] read = new byte[entry.length];
+        assertEquals(entry.length, in.read(read));
+        assertArrayEquals(entry, read);
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FileNameIndexTest {
+    private static final int FILES = 50_000;
+
+    private static OCFile file(long id, String path) {
+        OCFile file = new OCFile(path);
+        file.setFileId(id);
+        return file;
+    }
+
+    @Test
+    public void filtersDirectChildrenByName() {
+        OCFile report = file(1, "/dir/Report.pdf");
+        OCFile hidden = file(2, "/dir/.report");
+        OCFile nested = file(3, "/dir/sub/report.txt");
+        OCFile other = file(4, "/dir/image.jpg");
+        List<OCFile> files = Arrays.asList(report, hidden, nested, other, report);
+
+        FileNameIndex sut = new FileNameIndex(files, "/dir/", false);
+
+        assertEquals(Arrays.asList(report), sut.filter("REP", () -> false));
+        assertEquals(Arrays.asList(report, other), sut.filter("", () -> false));
+        assertEquals(Arrays.asList(report, hidden),
+                     new FileNameIndex(files, "/dir/", true).filter("rep", () -> false));
+    }
+
+    @Test
+    public void matchesDecomposedNames() {
+        // "Übersicht" as U followed by a combining diaeresis
+        OCFile file = file(1, "/U\u0308bersicht.odt");
+        FileNameIndex sut = new FileNameIndex(Arrays.asList(file), "/", false);
+
+        assertEquals(Arrays.asList(file), sut.filter("übersicht", () -> false));
+    }
+
+    @Test
+    public void cancelledFilterReturnsNull() {
+        FileNameIndex sut = new FileNameIndex(Arrays.asList(file(1, "/a.txt")), "/", false);
+
+        assertNull(sut.filter("a", () -> true));
+    }
+
+    @Test
+    public void isForSameListOnly() {
+        List<OCFile> files = new ArrayList<>(Arrays.asList(file(1, "/a.txt")));
+        FileNameIndex sut = new FileNameIndex(files, "/", false);
+
+        assertTrue(sut.isFor(files, "/", false));
+        assertFalse(sut.isFor(new ArrayList<>(files), "/", false));
+        assertFalse(sut.isFor(files, "/other/", false));
+        assertFalse(sut.isFor(files, "/", true));
+    }
+
+    @Test
+    public void filtersLargeDirectory() {
+        List<OCFile> files = new ArrayList<>(FILES);
+        for (int i = 0; i < FILES; i++) {
+            files.add(file(i + 1, "/photos/IMG_" + i + ".jpg"));
+        }
+        FileNameIndex sut = new FileNameIndex(files, "/photos/", false);
+
+        List<OCFile> result = sut.filter("img_4999", () -> false);
+
+        assertEquals(11, result.size());
+        assertEquals("/photos/IMG_4999.jpg", result.get(0).getRemotePath());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.ui.adapter;
+
+import com.owncloud.android.datamodel.OCFile;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OCFileListDiffCallbackTest {
+
+    private static OCFile file(long id, String path, String etag) {
+        OCFile file = new OCFile(path);
+        file.setFileId(id);
+        file.setEtag(etag);
+        return file;
+    }
+
+    @Test
+    public void itemsAreMatchedByFileId() {
+        OCFileListDiffCallback sut = new OCFileListDiffCallback(
+            Arrays.asList(file(1, "/a", "e1"), file(2, "/b", "e2")),
+            Arrays.asList(file(2, "/b", "e2"), file(3, "/c", "e3")));
+
+        assertTrue(sut.areItemsTheSame(1, 0));
+        assertFalse(sut.areItemsTheSame(0, 1));
+    }
+
+    @Test
+    public void contentsChangeWithShownAttributes() {
+        OCFile oldFile = file(1, "/a", "e1");
+
+        OCFile sameFile = file(1, "/a", "e1");
+        assertTrue(new OCFileListDiffCallback(Collections.singletonList(oldFile),
+                                              Collections.singletonList(sameFile)).areContentsTheSame(0, 0));
+
+        OCFile newEtag = file(1, "/a", "e2");
+        assertFalse(new OCFileListDiffCallback(Collections.singletonList(oldFile),
+                                               Collections.singletonList(newEtag)).areContentsTheSame(0, 0));
+
+        OCFile favorite = file(1, "/a", "e1");
+        favorite.setFavorite(true);
+        assertFalse(new OCFileListDiffCallback(Collections.singletonList(oldFile),
+                                               Collections.singletonList(favorite)).areContentsTheSame(0, 0));
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class EncryptionUtilsFileTest {
+    private static final int TAG_LENGTH = 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(42);
+    private final byte[] key = new byte[16];
+    private final byte[] iv = new byte[16];
+
+    private File createFile(int size) throws IOException {
+        byte[] content = new byte[size];
+        random.nextBytes(content);
+        File file = folder.newFile();
+        Files.write(file.toPath(), content);
+        return file;
+    }
+
+    private static byte[] readTag(File file) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        return Arrays.copyOfRange(content, content.length - TAG_LENGTH, content.length);
+    }
+
+    @Test
+    public void sameOutputAsCipher() throws Exception {
+        random.nextBytes(key);
+        random.nextBytes(iv);
+        // not a multiple of the buffer or block size
+        File file = createFile(3 * 64 * 1024 + 7);
+        File encrypted = folder.newFile();
+
+        EncryptionUtils.encryptFile(file, encrypted, key, iv);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new GCMParameterSpec(128, iv));
+        byte[] expected = cipher.doFinal(Files.readAllBytes(file.toPath()));
+
+        assertArrayEquals(expected, Files.readAllBytes(encrypted.toPath()));
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+        random.nextBytes(key);
+        random.nextBytes(iv);
+
+        for (int size : new int[]{0, 1, 64 * 1024, 1024 * 1024 + 13}) {
+            File file = createFile(size);
+            File encrypted = folder.newFile();
+            File decrypted = folder.newFile();
+
+            EncryptionUtils.encryptFile(file, encrypted, key, iv);
+            EncryptionUtils.decryptFile(encrypted, decrypted, key, iv, readTag(encrypted));
+
+            assertArrayEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(decrypted.toPath()));
+        }
+    }
+
+    @Test
+    public void wrongTag() throws Exception {
+        File encrypted = folder.newFile();
+        EncryptionUtils.encryptFile(createFile(1000), encrypted, key, iv);
+        File decrypted = new File(folder.getRoot(), "decrypted");
+
+        try {
+            EncryptionUtils.decryptFile(encrypted, decrypted, key, iv, new byte[TAG_LENGTH]);
+            fail("SecurityException expected");
+        } catch (SecurityException e) {
+            assertFalse(decrypted.exists());
+        }
+    }
+
+    @Test
+    public void tamperedContent() throws Exception {
+        File encrypted = folder.newFile();
+        EncryptionUtils.encryptFile(createFile(1000), encrypted, key, iv);
+        byte[] tag = readTag(encrypted);
+
+        try (RandomAccessFile file = new RandomAccessFile(encrypted, "rw")) {
+            file.seek(10);
+            int value = file.read();
+            file.seek(10);
+            file.write(value ^ 1);
+        }
+
+        File decrypted = new File(folder.getRoot(), "decrypted");
+        try {
+            EncryptionUtils.decryptFile(encrypted, decrypted, key, iv, tag);
+            fail("IOException expected");
+        } catch (IOException e) {
+            assertFalse(decrypted.exists());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Nextcloud Android client application
+ *
+ * Copyright (C) 2021 Nextcloud GmbH
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.owncloud.android.utils;
+
+import org.junit.Test;
+
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import third_parties.daveKoeller.AlphanumComparator;
+
+import static org.junit.Assert.assertEquals;
+
+public class NaturalSortKeyTest {
+    private static final String ALPHABET = "aAbBzZäÄöÜé0123456789 .-_[]()~";
+
+    @Test
+    public void comparesLikeAlphanumComparator() {
+        List<String> names = new ArrayList<>(Arrays.asList("[Test] Folder", "01 - January", "11 - November", "Ôle",
+                                                           "Test 1", "Test 01", "Test 04", "Üüü",
+                                                           "z.[Test], z. Test", "aaa", "AAA", "T 0 abc",
+                                                           "T 00 abc", "T 000 abc", "T 2 abc", "T 02 abc",
+                                                           "9999999999999999999999999999991.jpg", "2010.07.81260",
+                                                           "1231232.040.8933", ".bashrc", ".apache2", "Zeros 2"));
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            StringBuilder name = new StringBuilder();
+            int length = 1 + random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            names.add(name.toString());
+        }
+
+        Collator collator = Collator.getInstance();
+        AlphanumComparator<Object> comparator = new AlphanumComparator<>();
+
+        for (String name : names) {
+            NaturalSortKey key = new NaturalSortKey(name, collator);
+
+            for (String other : names) {
+                assertEquals(name + " vs. " + other,
+                             Integer.signum(comparator.compare(name, other)),
+                             Integer.signum(key.compareTo(new NaturalSortKey(other, collator))));
+            }
+        }
+    }
+}